@@ -0,0 +1,29 @@
+package cn.slibs.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * 基准测试入口：默认启用 GC profiler（分配速率 {@code gc.alloc.rate.norm}），结果以 JSON 格式输出到 {@code target/jmh-result.json}，
+ * 其余参数与 JMH 命令行相同，如：{@code java -jar target/benchmarks.jar batchSaveOrUpdate -p width=wide}
+ */
+public class BenchmarkRunner {
+    public static final String RESULT_FILE = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        new File(RESULT_FILE).getParentFile().mkdirs();
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULT_FILE)
+                .build();
+        new Runner(options).run();
+    }
+}
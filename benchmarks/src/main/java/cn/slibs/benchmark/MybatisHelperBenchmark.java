@@ -0,0 +1,145 @@
+package cn.slibs.benchmark;
+
+import cn.slibs.benchmark.RowMappers.NarrowRowMapper;
+import cn.slibs.benchmark.RowMappers.WideRowMapper;
+import cn.slibs.spring.dao.MybatisHelper;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MybatisHelper} 批量写入的基准测试（内存 H2 数据库）：
+ * <ul>
+ *     <li>{@code batchUpdate}：批量更新已存在的数据（所有数据都已存在，每条 UPDATE 都命中一行）；</li>
+ *     <li>{@code batchSaveOrUpdate}：一半数据已存在，比较判断是否存在的策略：
+ *     {@code selectSql}（每条数据执行一次 {@code selectById}）、{@code lambda}（{@code performInsertCondition}，不查询）、
+ *     {@code selectByIds}（{@code batchSaveOrUpdateByKey}，每批次查询一次）。</li>
+ * </ul>
+ * 每次调用写入 {@link #ROWS} 条数据，分别在窄表（3列）与宽表（19列）、不同的批次大小下执行
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MybatisHelperBenchmark {
+    /** 每次调用写入的数据量 */
+    public static final int ROWS = 5000;
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        @Param({"narrow", "wide"})
+        public String width;
+        @Param({"100", "1000"})
+        public int batchSize;
+
+        PooledDataSource dataSource;
+        MybatisHelper mybatisHelper;
+        boolean wide;
+        /** id 为 0 ~ 2 * ROWS - 1，初始化时全部插入；{@code batchSaveOrUpdate} 每次调用前删除奇数 id（fresh）的数据 */
+        List<Row> rows;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            wide = "wide".equals(width);
+            dataSource = new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:mybatis_helper_benchmark;DB_CLOSE_DELAY=-1", "sa", "");
+            Configuration configuration = new Configuration(new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+            configuration.addMapper(NarrowRowMapper.class);
+            configuration.addMapper(WideRowMapper.class);
+            SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+            mybatisHelper = MybatisHelper.build(batchSize, new SqlSessionTemplate(sqlSessionFactory));
+
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + RowMappers.NARROW_TABLE);
+                statement.execute("DROP TABLE IF EXISTS " + RowMappers.WIDE_TABLE);
+                statement.execute("CREATE TABLE " + RowMappers.NARROW_TABLE + " (id BIGINT PRIMARY KEY, name VARCHAR(64), age INT)");
+                statement.execute(RowMappers.WideSql.createTable());
+            }
+
+            rows = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                rows.add(new Row(i * 2L + (i % 2), i % 2 == 1));
+            }
+            // 全部插入：batchUpdate 的每条 UPDATE 都命中已存在的数据，batchSaveOrUpdate 每次调用前再删除 fresh 的数据
+            if (wide) {
+                mybatisHelper.batchUpdate(WideRowMapper.class, rows, WideRowMapper::insert);
+            } else {
+                mybatisHelper.batchUpdate(NarrowRowMapper.class, rows, NarrowRowMapper::insert);
+            }
+        }
+
+        /**
+         * 删除上次调用插入的数据，使每次调用都有一半数据需要插入
+         */
+        void deleteFreshRows() throws SQLException {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("DELETE FROM " + (wide ? RowMappers.WIDE_TABLE : RowMappers.NARROW_TABLE) + " WHERE MOD(id, 2) = 1");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            dataSource.forceCloseAll();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SaveOrUpdate {
+        @Param({"selectSql", "lambda", "selectByIds"})
+        public String strategy;
+
+        /** 每次调用前（不计入耗时）恢复为一半数据已存在 */
+        @Setup(Level.Invocation)
+        public void reset(Database database) throws SQLException {
+            database.deleteFreshRows();
+        }
+    }
+
+    @Benchmark
+    public void batchUpdate(Database database) {
+        if (database.wide) {
+            database.mybatisHelper.batchUpdate(WideRowMapper.class, database.rows, WideRowMapper::update);
+        } else {
+            database.mybatisHelper.batchUpdate(NarrowRowMapper.class, database.rows, NarrowRowMapper::update);
+        }
+    }
+
+    @Benchmark
+    public void batchSaveOrUpdate(Database database, SaveOrUpdate saveOrUpdate) {
+        Class<?> mapperClass = database.wide ? WideRowMapper.class : NarrowRowMapper.class;
+        switch (saveOrUpdate.strategy) {
+            case "lambda":
+                database.mybatisHelper.batchSaveOrUpdate(mapperClass, database.rows, (mapper, row) -> row.fresh);
+                break;
+            case "selectByIds":
+                database.mybatisHelper.batchSaveOrUpdateByKey(mapperClass, database.rows, (Row row) -> row.id);
+                break;
+            default:
+                database.mybatisHelper.batchSaveOrUpdate(mapperClass, database.rows);
+        }
+    }
+}
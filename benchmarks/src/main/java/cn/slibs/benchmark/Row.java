@@ -0,0 +1,28 @@
+package cn.slibs.benchmark;
+
+/**
+ * 基准测试的数据行：窄表只使用 {@code id}、{@code name}、{@code age}，宽表使用所有字段
+ */
+public class Row {
+    public static final int WIDE_COLUMNS = 16;
+
+    public Long id;
+    public String name;
+    public Integer age;
+    public String c01, c02, c03, c04, c05, c06, c07, c08, c09, c10, c11, c12, c13, c14, c15, c16;
+    /** 是否为新数据（用于 performInsertCondition 策略，不对应表中的列） */
+    public boolean fresh;
+
+    public Row() {
+    }
+
+    public Row(long id, boolean fresh) {
+        this.id = id;
+        this.name = "name-" + id;
+        this.age = (int) (id % 100);
+        String value = String.format("%032d", id);
+        this.c01 = this.c02 = this.c03 = this.c04 = this.c05 = this.c06 = this.c07 = this.c08 = value;
+        this.c09 = this.c10 = this.c11 = this.c12 = this.c13 = this.c14 = this.c15 = this.c16 = value;
+        this.fresh = fresh;
+    }
+}
@@ -0,0 +1,86 @@
+package cn.slibs.benchmark;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.InsertProvider;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.annotations.UpdateProvider;
+
+import java.util.List;
+
+/**
+ * 基准测试使用的 mapper：窄表（3列）与宽表（19列）
+ */
+public final class RowMappers {
+    public static final String NARROW_TABLE = "t_narrow";
+    public static final String WIDE_TABLE = "t_wide";
+
+    private RowMappers() {
+    }
+
+    public interface NarrowRowMapper {
+        @Select("SELECT * FROM t_narrow WHERE id = #{id}")
+        List<Row> selectById(Row row);
+
+        @Select("<script>SELECT * FROM t_narrow WHERE id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+        List<Row> selectByIds(List<Long> ids);
+
+        @Insert("INSERT INTO t_narrow (id, name, age) VALUES (#{id}, #{name}, #{age})")
+        int insert(Row row);
+
+        @Update("UPDATE t_narrow SET name = #{name}, age = #{age} WHERE id = #{id}")
+        int update(Row row);
+    }
+
+    public interface WideRowMapper {
+        @Select("SELECT * FROM t_wide WHERE id = #{id}")
+        List<Row> selectById(Row row);
+
+        @Select("<script>SELECT * FROM t_wide WHERE id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+        List<Row> selectByIds(List<Long> ids);
+
+        @InsertProvider(type = WideSql.class, method = "insert")
+        int insert(Row row);
+
+        @UpdateProvider(type = WideSql.class, method = "update")
+        int update(Row row);
+    }
+
+    /**
+     * 宽表的 DDL 及 SQL
+     */
+    public static final class WideSql {
+        private WideSql() {
+        }
+
+        public static String createTable() {
+            StringBuilder sql = new StringBuilder("CREATE TABLE ").append(WIDE_TABLE).append(" (id BIGINT PRIMARY KEY, name VARCHAR(64), age INT");
+            for (int i = 1; i <= Row.WIDE_COLUMNS; i++) {
+                sql.append(", ").append(column(i)).append(" VARCHAR(64)");
+            }
+            return sql.append(")").toString();
+        }
+
+        public static String insert() {
+            StringBuilder columns = new StringBuilder("id, name, age");
+            StringBuilder values = new StringBuilder("#{id}, #{name}, #{age}");
+            for (int i = 1; i <= Row.WIDE_COLUMNS; i++) {
+                columns.append(", ").append(column(i));
+                values.append(", #{").append(column(i)).append("}");
+            }
+            return "INSERT INTO " + WIDE_TABLE + " (" + columns + ") VALUES (" + values + ")";
+        }
+
+        public static String update() {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(WIDE_TABLE).append(" SET name = #{name}, age = #{age}");
+            for (int i = 1; i <= Row.WIDE_COLUMNS; i++) {
+                sql.append(", ").append(column(i)).append(" = #{").append(column(i)).append("}");
+            }
+            return sql.append(" WHERE id = #{id}").toString();
+        }
+
+        private static String column(int i) {
+            return String.format("c%02d", i);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cn.slibs.spring.dao;
+
+import lombok.Getter;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 自适应批次大小：根据每批次写入（{@code flushStatements}）的实际耗时，将下一批次的数量向目标耗时调整，并限制在 [最小值, 最大值] 之间<br>
+ * 行较窄的表会逐渐增大批次，含大字段（LOB）的宽表会逐渐减小批次。线程安全，可被多次调用共享，{@link #getBatchSize()} 即为当前调整到的批次大小
+ *
+ * @since 0.2.4
+ */
+@Getter
+public class AdaptiveBatchSize {
+    /** 每行平均耗时的平滑系数（指数加权移动平均） */
+    private static final double SMOOTHING = 0.3;
+
+    /** 最小批次大小 */
+    private final int minBatchSize;
+    /** 最大批次大小 */
+    private final int maxBatchSize;
+    /** 每批次写入的目标耗时（毫秒） */
+    private final long targetFlushMillis;
+    /** 当前批次大小 */
+    private volatile int batchSize;
+    /** 最近一批次的写入耗时（毫秒） */
+    private volatile double lastFlushMillis;
+    /** 平均每行写入耗时（纳秒），小于0表示还没有采样 */
+    private double nanosPerRow = -1;
+
+    public AdaptiveBatchSize(int initialBatchSize, int minBatchSize, int maxBatchSize, long targetFlushMillis) {
+        checkArgument(minBatchSize < 1, "最小批次大小必须大于0！");
+        checkArgument(maxBatchSize < minBatchSize, "最大批次大小不能小于最小批次大小！");
+        checkArgument(targetFlushMillis < 1, "目标耗时必须大于0！");
+
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetFlushMillis = targetFlushMillis;
+        this.batchSize = (int) clamp(initialBatchSize, minBatchSize, maxBatchSize);
+    }
+
+    public static AdaptiveBatchSize of(int initialBatchSize, int minBatchSize, int maxBatchSize, long targetFlushMillis) {
+        return new AdaptiveBatchSize(initialBatchSize, minBatchSize, maxBatchSize, targetFlushMillis);
+    }
+
+    public static AdaptiveBatchSize of(int minBatchSize, int maxBatchSize, long targetFlushMillis) {
+        return new AdaptiveBatchSize(MybatisHelper.getDefaultBatchSize(), minBatchSize, maxBatchSize, targetFlushMillis);
+    }
+
+    /**
+     * 记录一批次的写入耗时，并调整下一批次的大小
+     *
+     * @param rows       该批次的数据量
+     * @param flushNanos 该批次的写入耗时（纳秒）
+     */
+    public synchronized void record(int rows, long flushNanos) {
+        lastFlushMillis = flushNanos / 1e6;
+        // 数据源末尾不足半个批次的数据，固定开销占比过大，不参与调整
+        if (rows < 1 || rows < batchSize / 2) return;
+
+        double sample = (double) flushNanos / rows;
+        nanosPerRow = nanosPerRow < 0 ? sample : nanosPerRow * (1 - SMOOTHING) + sample * SMOOTHING;
+
+        long proposed = Math.round(targetFlushMillis * 1e6 / Math.max(nanosPerRow, 1));
+        // 每次最多放大或缩小一倍，避免抖动
+        proposed = clamp(proposed, batchSize / 2, batchSize * 2L);
+        batchSize = (int) clamp(proposed, minBatchSize, maxBatchSize);
+    }
+
+    /**
+     * 以相同的配置（及当前批次大小）创建一个新的实例，用于不同的表各自调整
+     *
+     * @return 新的实例
+     */
+    public AdaptiveBatchSize copy() {
+        return new AdaptiveBatchSize(batchSize, minBatchSize, maxBatchSize, targetFlushMillis);
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveBatchSize{" +
+                "batchSize=" + batchSize +
+                ", minBatchSize=" + minBatchSize +
+                ", maxBatchSize=" + maxBatchSize +
+                ", targetFlushMillis=" + targetFlushMillis +
+                ", lastFlushMillis=" + lastFlushMillis +
+                '}';
+    }
+}
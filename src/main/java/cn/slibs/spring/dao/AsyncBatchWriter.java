@@ -0,0 +1,346 @@
+package cn.slibs.spring.dao;
+
+import com.iofairy.except.GeneralException;
+import com.iofairy.lambda.RT2;
+import com.iofairy.tcf.Close;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 异步批量写入器（write-behind）：多个生产者线程通过 {@link #offer} 提交数据，由一个后台线程按批次合并写入（BATCH 执行器），
+ * 每批次单独提交一次事务<br>
+ * 攒够 {@link #getMaxBatchSize()} 条数据，或第一条数据等待超过 {@link #getMaxLingerMillis()} 毫秒时写入一批；
+ * 队列已满时 {@link #offer} 会阻塞（背压）；{@link #close()} 会写完队列中剩余的数据后再退出。<br>
+ * 每条数据的写入结果通过 {@link CompletableFuture} 返回：所在批次提交成功后完成，失败则异常完成（整批失败）。<br>
+ * 使用示例：
+ * <pre>{@code
+ * @Bean
+ * public AsyncBatchWriter<AuditMapper, Audit> auditWriter(MybatisHelper mybatisHelper) {
+ *     return mybatisHelper.asyncBatchWriter(AuditMapper.class, AuditMapper::insert)
+ *             .setMaxLingerMillis(50)
+ *             .setQueueCapacity(20000);
+ * }
+ * }</pre>
+ * <b>注：</b>写入在后台线程的独立事务中执行，不会加入调用方的事务；作为 {@code @Bean} 时，Spring 会在容器关闭时自动调用 {@link #close()}
+ *
+ * @param <MAPPER> mapper类型
+ * @param <MODEL>  实体类型
+ * @since 0.2.4
+ */
+@Slf4j
+public class AsyncBatchWriter<MAPPER, MODEL> implements AutoCloseable {
+    /** 默认第一条数据最多等待的时间（毫秒） */
+    public static final long DEFAULT_MAX_LINGER_MILLIS = 100;
+
+    private final SqlSessionFactory sqlSessionFactory;
+    @Getter
+    private final Class<MAPPER> mapperClass;
+    private final RT2<MAPPER, MODEL, Integer, Exception> updateAction;
+    private final BatchNotifier notifier;
+    /** 每批次最大数量 */
+    @Getter
+    private int maxBatchSize;
+    /** 队列容量，小于1时为 {@code maxBatchSize * 10} */
+    @Getter
+    private int queueCapacity;
+    /** 第一条数据最多等待的时间（毫秒） */
+    @Getter
+    private long maxLingerMillis = DEFAULT_MAX_LINGER_MILLIS;
+
+    /** 已写入成功的数据量 */
+    private final AtomicLong writtenCount = new AtomicLong();
+    /** 写入失败的数据量 */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final Queue<Entry<MODEL>> queue = new ConcurrentLinkedQueue<>();
+    /** 队列中的数据量 */
+    private final AtomicInteger pending = new AtomicInteger();
+    /** 正在执行 {@link #offer} 的线程数，关闭时需等待这些线程入队或放弃 */
+    private final AtomicInteger activeOffers = new AtomicInteger();
+    /** 队列剩余容量，在 {@link #flusher} 之前赋值 */
+    private Semaphore capacity;
+    /** 是否已关闭 */
+    @Getter
+    private volatile boolean closed;
+    /** 后台写入线程，不为 {@code null} 即已启动 */
+    private volatile Thread flusher;
+
+    AsyncBatchWriter(SqlSessionFactory sqlSessionFactory, Class<MAPPER> mapperClass, int maxBatchSize, RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.mapperClass = mapperClass;
+        this.maxBatchSize = maxBatchSize;
+        this.updateAction = updateAction;
+        this.notifier = BatchNotifier.of("asyncBatchWriter", mapperClass.getName(), null);
+    }
+
+    public static <MAPPER, MODEL> AsyncBatchWriter<MAPPER, MODEL> build(SqlSessionTemplate sqlSessionTemplate,
+                                                                        Class<MAPPER> mapperClass,
+                                                                        RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        return build(sqlSessionTemplate, mapperClass, MybatisHelper.getDefaultBatchSize(), updateAction);
+    }
+
+    public static <MAPPER, MODEL> AsyncBatchWriter<MAPPER, MODEL> build(SqlSessionTemplate sqlSessionTemplate,
+                                                                        Class<MAPPER> mapperClass,
+                                                                        int maxBatchSize,
+                                                                        RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkHasNullNPE(args(sqlSessionTemplate, mapperClass, updateAction), args("sqlSessionTemplate", "mapperClass", "updateAction"));
+        checkArgument(maxBatchSize < 1, "批量大小必须大于0！");
+        return new AsyncBatchWriter<>(sqlSessionTemplate.getSqlSessionFactory(), mapperClass, maxBatchSize, updateAction);
+    }
+
+    /**
+     * 提交一条数据，队列已满时阻塞等待（背压）。第一次调用时启动后台写入线程
+     *
+     * @param model 数据
+     * @return 写入结果，所在批次提交成功后完成
+     * @throws InterruptedException 等待时被中断
+     */
+    public CompletableFuture<Void> offer(MODEL model) throws InterruptedException {
+        return offer(model, -1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交一条数据，队列已满时最多等待 {@code timeout}（背压）。第一次调用时启动后台写入线程
+     *
+     * @param model   数据
+     * @param timeout 最多等待的时间，小于0时一直等待
+     * @param unit    时间单位
+     * @return 写入结果，所在批次提交成功后完成；等待超时返回 {@code null}
+     * @throws InterruptedException 等待时被中断
+     */
+    public CompletableFuture<Void> offer(MODEL model, long timeout, TimeUnit unit) throws InterruptedException {
+        checkHasNullNPE(args(model, unit), args("model", "unit"));
+        // 先检查是否已关闭，已关闭的 writer 不能再启动写入线程
+        checkState(closed, "[${mapperName}]AsyncBatchWriter 已关闭！", mapperClass.getSimpleName());
+        if (flusher == null) start();
+
+        activeOffers.incrementAndGet();
+        try {
+            checkState(closed, "[${mapperName}]AsyncBatchWriter 已关闭！", mapperClass.getSimpleName());
+            if (timeout < 0) {
+                capacity.acquire();
+            } else if (!capacity.tryAcquire(timeout, unit)) {
+                return null;
+            }
+            Entry<MODEL> entry = new Entry<>(model);
+            queue.add(entry);
+            // 攒够一批时唤醒写入线程，否则由写入线程按等待时间定时写入
+            if (pending.incrementAndGet() == maxBatchSize) LockSupport.unpark(flusher);
+            return entry.future;
+        } finally {
+            activeOffers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 启动后台写入线程（{@link #offer} 时会自动启动）
+     *
+     * @return AsyncBatchWriter
+     */
+    public synchronized AsyncBatchWriter<MAPPER, MODEL> start() {
+        checkState(closed, "[${mapperName}]AsyncBatchWriter 已关闭！", mapperClass.getSimpleName());
+        if (flusher == null) {
+            capacity = new Semaphore(queueCapacity < 1 ? maxBatchSize * 10 : queueCapacity);
+            Thread thread = new Thread(this::flushLoop, "AsyncBatchWriter-" + mapperClass.getSimpleName());
+            thread.setDaemon(true);
+            flusher = thread;
+            thread.start();
+        }
+        return this;
+    }
+
+    /**
+     * 关闭：不再接收新数据，写完队列中剩余的数据后返回
+     */
+    @Override
+    public void close() {
+        close(-1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭：不再接收新数据，最多等待 {@code timeout} 写完队列中剩余的数据
+     *
+     * @param timeout 最多等待的时间，小于0时一直等待
+     * @param unit    时间单位
+     * @return 剩余的数据是否已全部写完
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        Thread thread;
+        // 与 start() 互斥：关闭后不会再启动写入线程
+        synchronized (this) {
+            closed = true;
+            thread = flusher;
+        }
+        if (thread == null) return true;
+
+        LockSupport.unpark(thread);
+        try {
+            if (timeout < 0) {
+                thread.join();
+            } else {
+                thread.join(Math.max(unit.toMillis(timeout), 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
+    private void flushLoop() {
+        final long start = System.nanoTime();
+        notifier.start();
+        final long lingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        List<Entry<MODEL>> batch = new ArrayList<>(maxBatchSize);
+        long deadline = 0;
+        while (true) {
+            Entry<MODEL> entry;
+            while (batch.size() < maxBatchSize && (entry = queue.poll()) != null) {
+                if (batch.isEmpty()) deadline = System.nanoTime() + lingerNanos;
+                batch.add(entry);
+                pending.decrementAndGet();
+                capacity.release();
+            }
+
+            boolean closing = closed;
+            long now = System.nanoTime();
+            if (batch.size() >= maxBatchSize || (!batch.isEmpty() && (closing || now - deadline >= 0))) {
+                flush(batch);
+                batch.clear();
+                continue;
+            }
+            // 先判断 closed 再判断 activeOffers：之后开始的 offer 一定能看到 closed
+            if (closing && batch.isEmpty() && activeOffers.get() == 0 && queue.isEmpty()) break;
+
+            LockSupport.parkNanos(this, batch.isEmpty() ? lingerNanos : deadline - now);
+        }
+        notifier.complete(writtenCount.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.debug("AsyncBatchWriter，target：{}，已关闭。写入成功数据量：{}，写入失败数据量：{}", mapperClass.getSimpleName(), writtenCount, failedCount);
+    }
+
+    private void flush(List<Entry<MODEL>> batch) {
+        SqlSession sqlSession = null;
+        try {
+            sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false);
+            MAPPER mapper = sqlSession.getMapper(mapperClass);
+            long flushStart = System.nanoTime();
+            for (Entry<MODEL> entry : batch) {
+                updateAction.$(mapper, entry.model);
+            }
+            BatchUpdateResult<MODEL> batchResult = new BatchUpdateResult<>();
+            batchResult.addBatchResults(sqlSession.flushStatements());
+            notifier.flush(batch.size(), System.nanoTime() - flushStart, batchResult.getUpdateCounts());
+            sqlSession.commit(true);
+            notifier.commit(writtenCount.get() + batch.size());
+        } catch (Throwable e) {
+            log.debug("AsyncBatchWriter，target：{}，写入失败，失败原因：{}，失败数据量：{}", mapperClass.getSimpleName(), e.getMessage(), batch.size());
+            if (sqlSession != null) {
+                try {
+                    sqlSession.rollback(true);
+                } catch (Throwable ignored) {
+                }
+            }
+            notifier.rollback(e);
+            GeneralException exception = new GeneralException(e, "[${mapperName}]异步批量写入异常！", mapperClass.getSimpleName());
+            failedCount.addAndGet(batch.size());
+            for (Entry<MODEL> entry : batch) {
+                entry.future.completeExceptionally(exception);
+            }
+            return;
+        } finally {
+            Close.close(sqlSession);
+        }
+
+        writtenCount.addAndGet(batch.size());
+        for (Entry<MODEL> entry : batch) {
+            entry.future.complete(null);
+        }
+    }
+
+    /**
+     * 队列中剩余的数据量
+     *
+     * @return 队列中剩余的数据量
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * 已写入成功的数据量
+     *
+     * @return 已写入成功的数据量
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * 写入失败的数据量
+     *
+     * @return 写入失败的数据量
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public AsyncBatchWriter<MAPPER, MODEL> setMaxBatchSize(int maxBatchSize) {
+        checkState(flusher != null, "AsyncBatchWriter 已启动，不能再修改配置！");
+        checkArgument(maxBatchSize < 1, "批量大小必须大于0！");
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public AsyncBatchWriter<MAPPER, MODEL> setQueueCapacity(int queueCapacity) {
+        checkState(flusher != null, "AsyncBatchWriter 已启动，不能再修改配置！");
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public AsyncBatchWriter<MAPPER, MODEL> setMaxLingerMillis(long maxLingerMillis) {
+        checkState(flusher != null, "AsyncBatchWriter 已启动，不能再修改配置！");
+        checkArgument(maxLingerMillis < 1, "等待时间必须大于0！");
+        this.maxLingerMillis = maxLingerMillis;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncBatchWriter{" +
+                "mapperClass=" + mapperClass.getSimpleName() +
+                ", maxBatchSize=" + maxBatchSize +
+                ", queueCapacity=" + queueCapacity +
+                ", maxLingerMillis=" + maxLingerMillis +
+                ", pendingCount=" + pending +
+                ", writtenCount=" + writtenCount +
+                ", failedCount=" + failedCount +
+                ", closed=" + closed +
+                '}';
+    }
+
+    private static final class Entry<MODEL> {
+        final MODEL model;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Entry(MODEL model) {
+            this.model = model;
+        }
+    }
+
+}
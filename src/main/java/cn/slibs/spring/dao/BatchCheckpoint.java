@@ -0,0 +1,41 @@
+package cn.slibs.spring.dao;
+
+import lombok.Getter;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 批量操作的断点：已提交的数据量及最后一条已提交数据的主键<br>
+ * 每次提交后通过 {@link BatchOptions#setCheckpointListener} 回调，可持久化后通过 {@link BatchOptions#setResumeFrom} 续跑
+ *
+ * @since 0.2.4
+ */
+@Getter
+public class BatchCheckpoint {
+    /** 已提交的数据量（从数据源的第一条数据开始计算，包含续跑之前已提交的数据） */
+    private final long processedCount;
+    /** 最后一条已提交数据的主键（未设置 {@link BatchOptions#setCheckpointKey} 时为 {@code null}） */
+    private final Object lastKey;
+
+    BatchCheckpoint(long processedCount, Object lastKey) {
+        this.processedCount = processedCount;
+        this.lastKey = lastKey;
+    }
+
+    public static BatchCheckpoint of(long processedCount, Object lastKey) {
+        checkArgument(processedCount < 0, "已提交的数据量不能小于0！");
+        return new BatchCheckpoint(processedCount, lastKey);
+    }
+
+    public static BatchCheckpoint of(long processedCount) {
+        return of(processedCount, null);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchCheckpoint{" +
+                "processedCount=" + processedCount +
+                ", lastKey=" + lastKey +
+                '}';
+    }
+}
@@ -0,0 +1,362 @@
+package cn.slibs.spring.dao;
+
+import com.iofairy.except.GeneralException;
+import com.iofairy.id.TimedID;
+import com.iofairy.tcf.Close;
+import com.iofairy.time.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.SqlSession;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 批量操作的执行引擎：从数据源中逐批读取数据（复用同一个缓冲区，不复制数据源），每批执行完后 flush，全部执行完后提交<br>
+ * 设置了 {@link BatchOptions#setCommitEveryBatches} 时分段提交，每次提交后回调断点；存在 Spring 事务时加入该事务，由外层事务提交（详见 {@link BatchSqlSession}），
+ * 提交通知及断点在外层事务提交后回调，外层事务回滚时不回调
+ *
+ * @since 0.2.4
+ */
+@Slf4j
+final class BatchEngine {
+
+    private BatchEngine() {
+    }
+
+    /**
+     * 按批次执行
+     *
+     * @param operation          操作名称（用于日志）
+     * @param target             操作对象名称（用于日志），如：mapper名称、表名
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param mapperClass        mapper class，为 {@code null} 时不创建 mapper
+     * @param models             数据源
+     * @param batchSize          每批次数量（设置了自适应批次大小时忽略）
+     * @param options            可选项，可为 {@code null}
+     * @param batchAction        每批次的操作
+     * @param <MAPPER>           mapper类型
+     * @param <MODEL>            实体类型
+     * @return 批量操作的结果
+     */
+    static <MAPPER, MODEL> BatchUpdateResult<MODEL> execute(String operation,
+                                        String target,
+                                        SqlSessionTemplate sqlSessionTemplate,
+                                        Class<MAPPER> mapperClass,
+                                        Iterator<MODEL> models,
+                                        int batchSize,
+                                        BatchOptions<MODEL> options,
+                                        BatchAction<MAPPER, MODEL> batchAction) {
+        final AdaptiveBatchSize adaptiveBatchSize = options == null ? null : options.getAdaptiveBatchSize();
+        final BatchSqlSession batchSqlSession = BatchSqlSession.open(sqlSessionTemplate.getSqlSessionFactory());
+        final SqlSession sqlSession = batchSqlSession.getSqlSession();
+        // 加入了 Spring 事务时由外层事务提交、回滚，分段提交及死锁重试不生效
+        final DeadlockRetry deadlockRetry = options == null || batchSqlSession.isTransactional() ? null : options.getDeadlockRetry();
+        // 死锁重试的范围为单个批次，每批次提交一次
+        final int commitEveryBatches = options == null || batchSqlSession.isTransactional() ? 0 : deadlockRetry != null ? 1 : options.getCommitEveryBatches();
+        final Function<? super MODEL, ?> checkpointKey = options == null ? null : options.getCheckpointKey();
+        final Consumer<BatchCheckpoint> checkpointListener = options == null ? null : options.getCheckpointListener();
+        final BatchCheckpoint resumeFrom = options == null ? null : options.getResumeFrom();
+        final boolean isolateFailures = options != null && options.isIsolateFailures();
+        final Function<? super MODEL, ?> coalesceKey = options == null ? null : options.getCoalesceKey();
+        final BinaryOperator<MODEL> coalesceMerge = options == null ? null : options.getCoalesceMerge();
+        final BooleanSupplier cancelled = options == null ? null : options.getCancelled();
+        final Comparator<? super MODEL> lockOrder = options == null ? null : options.getLockOrder();
+        final BatchUpdateResult<MODEL> result = new BatchUpdateResult<>();
+        final BatchNotifier notifier = BatchNotifier.of(operation, target, options == null ? null : options.getListener());
+
+        final String logId = TimedID.getId();
+        Stopwatch stopwatch = Stopwatch.run();
+        final long start = System.nanoTime();
+        long processedCount = 0;
+        long printLogCount = 0;
+        Object lastKey = null;
+        int uncommittedBatches = 0;
+        // 最后一次提交的断点
+        BatchCheckpoint committed = resumeFrom;
+        notifier.start();
+        try {
+            if (resumeFrom != null) {
+                skip(models, resumeFrom, checkpointKey);
+                processedCount = resumeFrom.getProcessedCount();
+                lastKey = resumeFrom.getLastKey();
+                log.debug("{}_logId：{}，target：{}，从断点续跑，跳过数据量：{}，最后提交的主键：{}", operation, logId, target, processedCount, lastKey);
+            }
+
+            MAPPER mapper = mapperClass == null ? null : sqlSession.getMapper(mapperClass);
+            List<MODEL> modelList = new ArrayList<>(adaptiveBatchSize == null ? batchSize : adaptiveBatchSize.getBatchSize());
+            throwIfCancelled(cancelled);
+            while (nextBatch(models, adaptiveBatchSize == null ? batchSize : adaptiveBatchSize.getBatchSize(), modelList)) {
+                // 读取的数据量及最后一条数据（合并重复主键之前）
+                final int readCount = modelList.size();
+                final MODEL lastRead = modelList.get(readCount - 1);
+                if (coalesceKey != null) {
+                    coalesce(modelList, coalesceKey, coalesceMerge);
+                    result.addCoalescedCount(readCount - modelList.size());
+                }
+                if (lockOrder != null) {
+                    modelList.sort(lockOrder);
+                }
+
+                long flushStart;
+                BatchUpdateResult<MODEL> batchResult;
+                for (int attempt = 1; ; attempt++) {
+                    flushStart = System.nanoTime();
+                    // 先记录到当前批次的结果中，重试时丢弃
+                    batchResult = new BatchUpdateResult<>();
+                    try {
+                        if (isolateFailures) {
+                            executeIsolated(sqlSession, mapper, modelList, batchAction, batchResult, deadlockRetry);
+                        } else {
+                            batchAction.execute(sqlSession, mapper, modelList);
+                            batchResult.addBatchResults(sqlSession.flushStatements());
+                            batchResult.addSuccessCount(modelList.size());
+                        }
+                        break;
+                    } catch (Exception e) {
+                        if (deadlockRetry == null || attempt >= deadlockRetry.getMaxAttempts() || !deadlockRetry.isRetryable(e)) throw e;
+                        // 之前的批次均已提交，回滚的只有当前批次
+                        batchSqlSession.rollback();
+                        long backoffMillis = deadlockRetry.backoffMillis(attempt);
+                        log.debug("{}_logId：{}，target：{}，批次发生死锁或锁等待超时，{}ms后第{}次重试，原因：{}", operation, logId, target, backoffMillis, attempt, e.getMessage());
+                        backoff(backoffMillis);
+                    }
+                }
+                final long flushNanos = System.nanoTime() - flushStart;
+                result.merge(batchResult);
+                result.addProcessedCount(readCount);
+                if (adaptiveBatchSize != null) {
+                    adaptiveBatchSize.record(modelList.size(), flushNanos);
+                }
+                notifier.flush(modelList.size(), flushNanos, batchResult.getUpdateCounts());
+                sqlSession.clearCache();
+
+                processedCount += readCount;
+                printLogCount += readCount;
+                if (checkpointKey != null) {
+                    lastKey = checkpointKey.apply(lastRead);
+                }
+                if (commitEveryBatches > 0 && ++uncommittedBatches >= commitEveryBatches) {
+                    batchSqlSession.commit();
+                    notifier.commit(processedCount);
+                    uncommittedBatches = 0;
+                    committed = new BatchCheckpoint(processedCount, lastKey);
+                    if (checkpointListener != null) checkpointListener.accept(committed);
+                }
+                if (printLogCount >= MybatisHelper.getDefaultPrintLogBatchSize()) {
+                    printLogCount = 0;
+                    log.debug("{}_logId：{}，target：{}，正在处理……已处理数据量：{}", operation, logId, target, processedCount);
+                }
+                throwIfCancelled(cancelled);
+            }
+
+            batchSqlSession.commit();
+            BatchCheckpoint checkpoint = committed == null || committed.getProcessedCount() != processedCount ? new BatchCheckpoint(processedCount, lastKey) : null;
+            if (batchSqlSession.isTransactional()) {
+                // 加入了 Spring 事务时数据由外层事务提交，外层事务回滚后不能再从该断点续跑，提交通知及断点在外层事务提交后回调
+                afterTransactionCommit(operation, target, notifier, processedCount, checkpoint, checkpointListener);
+            } else {
+                notifier.commit(processedCount);
+                if (checkpoint != null) {
+                    committed = checkpoint;
+                    if (checkpointListener != null) checkpointListener.accept(committed);
+                }
+            }
+            if (adaptiveBatchSize == null) {
+                log.debug("{}_logId：{}，target：{}，处理完成。处理数据量：{}，失败数据量：{}。耗时：{}", operation, logId, target, processedCount, result.getFailures().size(), stopwatch);
+            } else {
+                log.debug("{}_logId：{}，target：{}，处理完成。处理数据量：{}，失败数据量：{}。耗时：{}。自适应批次大小：{}", operation, logId, target, processedCount, result.getFailures().size(), stopwatch, adaptiveBatchSize.getBatchSize());
+            }
+            result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            notifier.complete(processedCount, result.getElapsedMillis());
+            return result;
+        } catch (Throwable e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            log.debug("{}_logId：{}，target：{}，处理失败，失败原因：{}，已处理数据量：{}，最后一次提交的断点：{}", operation, logId, target, e.getMessage(), processedCount, committed);
+            batchSqlSession.rollback();
+            notifier.rollback(e);
+            if (commitEveryBatches > 0 || resumeFrom != null) {
+                throw new GeneralException(e, "[${mapperName}]批量更新（或插入）异常！最后一次提交的断点：${checkpoint}", target, committed);
+            }
+            throw new GeneralException(e, "[${mapperName}]批量更新（或插入）异常！", target);
+        } finally {
+            Close.close(batchSqlSession);
+        }
+    }
+
+    /**
+     * 外层 Spring 事务提交后通知提交及回调断点，外层事务回滚时不回调
+     */
+    private static void afterTransactionCommit(String operation,
+                                               String target,
+                                               BatchNotifier notifier,
+                                               long processedCount,
+                                               BatchCheckpoint checkpoint,
+                                               Consumer<BatchCheckpoint> checkpointListener) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            log.warn("{}，target：{}，当前 Spring 事务未开启事务同步，无法在事务提交后通知提交及回调断点", operation, target);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                notifier.commit(processedCount);
+                if (checkpoint == null || checkpointListener == null) return;
+                try {
+                    checkpointListener.accept(checkpoint);
+                } catch (Throwable e) {
+                    // 数据已提交，回调异常只记录日志
+                    log.warn("{}，target：{}，断点回调异常，断点：{}，原因：{}", operation, target, checkpoint, e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 死锁重试前等待，等待时被中断则恢复中断标记并按取消处理
+     */
+    private static void backoff(long backoffMillis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(backoffMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            CancellationException cancellation = new CancellationException("批量操作在死锁重试等待时被中断！");
+            cancellation.initCause(e);
+            throw cancellation;
+        }
+    }
+
+    private static void throwIfCancelled(BooleanSupplier cancelled) {
+        if (cancelled != null && cancelled.getAsBoolean()) {
+            throw new CancellationException("批量操作已取消！");
+        }
+    }
+
+    /**
+     * 合并批次中主键重复的数据：合并后的数据保留在该主键第一次出现的位置
+     *
+     * @param modelList     批次数据（原地合并）
+     * @param coalesceKey   主键提取器
+     * @param coalesceMerge 合并函数（参数依次为：已有的数据、后出现的数据），为 {@code null} 时后出现的数据覆盖已有的数据
+     * @param <MODEL>       实体类型
+     */
+    static <MODEL> void coalesce(List<MODEL> modelList, Function<? super MODEL, ?> coalesceKey, BinaryOperator<MODEL> coalesceMerge) {
+        Map<Object, MODEL> merged = new LinkedHashMap<>(Math.max(16, modelList.size() * 4 / 3 + 1));
+        for (MODEL model : modelList) {
+            merged.merge(coalesceKey.apply(model), model, coalesceMerge == null ? (oldModel, newModel) -> newModel : coalesceMerge);
+        }
+        if (merged.size() == modelList.size()) return;
+
+        modelList.clear();
+        modelList.addAll(merged.values());
+    }
+
+    /**
+     * 在保存点中执行一个批次，失败时回滚到保存点，将批次一分为二分别重试，直到定位出失败的单条数据
+     */
+    private static <MAPPER, MODEL> void executeIsolated(SqlSession sqlSession,
+                                                        MAPPER mapper,
+                                                        List<MODEL> modelList,
+                                                        BatchAction<MAPPER, MODEL> batchAction,
+                                                        BatchUpdateResult<MODEL> result,
+                                                        DeadlockRetry deadlockRetry) throws Exception {
+        Connection connection = sqlSession.getConnection();
+        Savepoint savepoint = connection.setSavepoint();
+        List<BatchResult> batchResults;
+        try {
+            batchAction.execute(sqlSession, mapper, modelList);
+            batchResults = sqlSession.flushStatements();
+        } catch (Exception e) {
+            // 死锁时数据库通常已回滚整个事务，交由外层重试整个批次
+            if (deadlockRetry != null && deadlockRetry.isRetryable(e)) throw e;
+            try {
+                // 每批次的操作本身抛出异常时，执行器中可能还有未 flush 的语句，flush 后随保存点一起回滚
+                sqlSession.flushStatements();
+            } catch (Exception ignored) {
+            }
+            connection.rollback(savepoint);
+            if (modelList.size() == 1) {
+                log.debug("batch isolateFailures，数据写入失败，失败原因：{}，数据：{}", e.getMessage(), modelList.get(0));
+                result.addFailure(modelList.get(0), e);
+                return;
+            }
+            int middle = modelList.size() / 2;
+            executeIsolated(sqlSession, mapper, modelList.subList(0, middle), batchAction, result, deadlockRetry);
+            executeIsolated(sqlSession, mapper, modelList.subList(middle, modelList.size()), batchAction, result, deadlockRetry);
+            return;
+        }
+
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException ignored) {
+            // 部分数据库（如：Oracle）不支持释放保存点，提交时会自动释放
+        }
+        result.addBatchResults(batchResults);
+        result.addSuccessCount(modelList.size());
+    }
+
+    /**
+     * 续跑时跳过数据源中已提交的数据
+     */
+    private static <MODEL> void skip(Iterator<MODEL> models, BatchCheckpoint resumeFrom, Function<? super MODEL, ?> checkpointKey) {
+        long skipped = 0;
+        MODEL last = null;
+        while (skipped < resumeFrom.getProcessedCount() && models.hasNext()) {
+            last = models.next();
+            skipped++;
+        }
+        checkState(skipped < resumeFrom.getProcessedCount(), "数据源的数据量（${skipped}）少于断点中已提交的数据量（${processedCount}），无法续跑！", skipped, resumeFrom.getProcessedCount());
+        if (checkpointKey != null && last != null && resumeFrom.getLastKey() != null) {
+            Object key = checkpointKey.apply(last);
+            checkState(!Objects.equals(key, resumeFrom.getLastKey()), "数据源跳过的最后一条数据的主键（${key}）与断点中的主键（${lastKey}）不一致，数据源的顺序可能已改变，无法续跑！", key, resumeFrom.getLastKey());
+        }
+    }
+
+    /**
+     * 从数据源中读取下一批数据到缓冲区（会先清空缓冲区）
+     *
+     * @param models    数据源
+     * @param batchSize 每批次数量
+     * @param buffer    缓冲区
+     * @param <MODEL>   实体类型
+     * @return 是否读取到数据
+     */
+    static <MODEL> boolean nextBatch(Iterator<MODEL> models, int batchSize, List<MODEL> buffer) {
+        buffer.clear();
+        while (buffer.size() < batchSize && models.hasNext()) {
+            buffer.add(models.next());
+        }
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * 每批次的操作
+     *
+     * @param <MAPPER> mapper类型
+     * @param <MODEL>  实体类型
+     */
+    @FunctionalInterface
+    interface BatchAction<MAPPER, MODEL> {
+        void execute(SqlSession sqlSession, MAPPER mapper, List<MODEL> modelList) throws Exception;
+    }
+
+}
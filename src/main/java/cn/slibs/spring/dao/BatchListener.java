@@ -0,0 +1,67 @@
+package cn.slibs.spring.dao;
+
+import java.util.Map;
+
+/**
+ * 批量操作的监听器（用于监控、指标统计），所有方法默认为空实现，按需覆盖<br>
+ * 通过 {@link MybatisHelper#addBatchListener(BatchListener)} 全局注册，或通过 {@link BatchOptions#setListener(BatchListener)} 按调用指定；
+ * 内置的内存指标统计见 {@link BatchMetrics}<br>
+ * <b>注：</b>回调在执行批量操作的线程中同步执行（并行、分片、异步写入时可能并发回调），实现需线程安全且尽量轻量；
+ * 回调抛出的异常只记录日志，不影响批量操作
+ *
+ * @since 0.2.4
+ */
+public interface BatchListener {
+
+    /**
+     * 批量操作开始
+     *
+     * @param operation 操作名称，如：{@code batchUpdate}、{@code batchUpsert}
+     * @param target    操作对象，如：mapper 全限定类名（{@link Class#getName()}）、表名
+     */
+    default void onStart(String operation, String target) {
+    }
+
+    /**
+     * 一个批次写入（flush）完成
+     *
+     * @param operation    操作名称
+     * @param target       操作对象
+     * @param rows         该批次的数据量
+     * @param flushNanos   该批次的写入耗时（纳秒）
+     * @param updateCounts 该批次每条SQL语句影响的行数（key 为 MappedStatement 的 id），原生SQL为空
+     */
+    default void onFlush(String operation, String target, int rows, long flushNanos, Map<String, Long> updateCounts) {
+    }
+
+    /**
+     * 提交（分段提交时每次提交都会回调）
+     *
+     * @param operation      操作名称
+     * @param target         操作对象
+     * @param processedCount 截至本次提交已处理的数据量
+     */
+    default void onCommit(String operation, String target, long processedCount) {
+    }
+
+    /**
+     * 批量操作失败，未提交的数据已回滚（加入了 Spring 事务时由外层事务回滚）
+     *
+     * @param operation 操作名称
+     * @param target    操作对象
+     * @param cause     失败原因
+     */
+    default void onRollback(String operation, String target, Throwable cause) {
+    }
+
+    /**
+     * 批量操作成功完成
+     *
+     * @param operation      操作名称
+     * @param target         操作对象
+     * @param processedCount 处理的数据量
+     * @param elapsedMillis  耗时（毫秒）
+     */
+    default void onComplete(String operation, String target, long processedCount, long elapsedMillis) {
+    }
+}
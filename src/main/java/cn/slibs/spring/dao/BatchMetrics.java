@@ -0,0 +1,292 @@
+package cn.slibs.spring.dao;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 内置的内存指标统计：按操作对象（mapper 全限定类名或表名）累计吞吐量计数及批次写入耗时的分布（直方图），可定时采集后上报到监控系统<br>
+ * 使用示例：
+ * <pre>{@code
+ * BatchMetrics batchMetrics = new BatchMetrics();
+ * MybatisHelper.addBatchListener(batchMetrics);
+ * ...
+ * BatchMetrics.TargetMetrics userMetrics = batchMetrics.getMetrics(UserMapper.class);
+ * double rowsPerSecond = userMetrics.getRowsPerSecond();
+ * double p99 = userMetrics.getFlushLatency().percentileMillis(0.99);
+ * }</pre>
+ *
+ * @since 0.2.4
+ */
+public class BatchMetrics implements BatchListener {
+    /** 操作对象 → 指标 */
+    private final Map<String, TargetMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStart(String operation, String target) {
+        metrics(target).started.increment();
+    }
+
+    @Override
+    public void onFlush(String operation, String target, int rows, long flushNanos, Map<String, Long> updateCounts) {
+        TargetMetrics targetMetrics = metrics(target);
+        targetMetrics.flushes.increment();
+        targetMetrics.rows.add(rows);
+        targetMetrics.flushNanos.add(flushNanos);
+        for (Long updateCount : updateCounts.values()) {
+            targetMetrics.updateCount.add(updateCount);
+        }
+        targetMetrics.flushLatency.record(flushNanos);
+    }
+
+    @Override
+    public void onCommit(String operation, String target, long processedCount) {
+        metrics(target).commits.increment();
+    }
+
+    @Override
+    public void onRollback(String operation, String target, Throwable cause) {
+        metrics(target).rollbacks.increment();
+    }
+
+    @Override
+    public void onComplete(String operation, String target, long processedCount, long elapsedMillis) {
+        metrics(target).completed.increment();
+    }
+
+    private TargetMetrics metrics(String target) {
+        return metrics.computeIfAbsent(target, TargetMetrics::new);
+    }
+
+    /**
+     * 获取 mapper 的指标
+     *
+     * @param mapperClass mapper class
+     * @return 指标，还未执行过批量操作时返回 {@code null}
+     */
+    public TargetMetrics getMetrics(Class<?> mapperClass) {
+        checkNullNPE(mapperClass, args("mapperClass"));
+        return metrics.get(mapperClass.getName());
+    }
+
+    /**
+     * 获取操作对象的指标
+     *
+     * @param target 操作对象（mapper 全限定类名或表名）
+     * @return 指标，还未执行过批量操作时返回 {@code null}
+     */
+    public TargetMetrics getMetrics(String target) {
+        return metrics.get(target);
+    }
+
+    /**
+     * 获取所有操作对象的指标
+     *
+     * @return key 为操作对象（mapper 全限定类名或表名），value 为指标
+     */
+    public Map<String, TargetMetrics> getAllMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * 清空所有指标
+     */
+    public void reset() {
+        metrics.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchMetrics{" +
+                "metrics=" + metrics.values() +
+                '}';
+    }
+
+    /**
+     * 单个操作对象的指标（累计值）
+     */
+    public static class TargetMetrics {
+        /** 操作对象（mapper 全限定类名或表名） */
+        @Getter
+        private final String target;
+        private final LongAdder started = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rollbacks = new LongAdder();
+        private final LongAdder commits = new LongAdder();
+        private final LongAdder flushes = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder updateCount = new LongAdder();
+        private final LongAdder flushNanos = new LongAdder();
+        /** 批次写入耗时的分布 */
+        @Getter
+        private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+        TargetMetrics(String target) {
+            this.target = target;
+        }
+
+        /** 开始的批量操作次数 */
+        public long getStarted() {
+            return started.sum();
+        }
+
+        /** 成功完成的批量操作次数 */
+        public long getCompleted() {
+            return completed.sum();
+        }
+
+        /** 失败回滚的批量操作次数 */
+        public long getRollbacks() {
+            return rollbacks.sum();
+        }
+
+        /** 提交次数 */
+        public long getCommits() {
+            return commits.sum();
+        }
+
+        /** 写入的批次数 */
+        public long getFlushes() {
+            return flushes.sum();
+        }
+
+        /** 写入的数据量 */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /** SQL语句影响的总行数（不包含原生SQL） */
+        public long getUpdateCount() {
+            return updateCount.sum();
+        }
+
+        /** 写入的总耗时（毫秒） */
+        public long getFlushMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(flushNanos.sum());
+        }
+
+        /**
+         * 写入吞吐量：写入的数据量 / 写入的总耗时
+         *
+         * @return 每秒写入的数据量，还未写入时返回 0
+         */
+        public double getRowsPerSecond() {
+            long nanos = flushNanos.sum();
+            return nanos <= 0 ? 0 : rows.sum() * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "TargetMetrics{" +
+                    "target='" + target + '\'' +
+                    ", started=" + getStarted() +
+                    ", completed=" + getCompleted() +
+                    ", rollbacks=" + getRollbacks() +
+                    ", commits=" + getCommits() +
+                    ", flushes=" + getFlushes() +
+                    ", rows=" + getRows() +
+                    ", updateCount=" + getUpdateCount() +
+                    ", rowsPerSecond=" + Math.round(getRowsPerSecond()) +
+                    ", flushLatency=" + flushLatency +
+                    '}';
+        }
+    }
+
+    /**
+     * 耗时直方图（微秒精度）：每个2的幂区间再分为4个子区间，分位数的相对误差不超过25%，占用固定内存，线程安全
+     */
+    public static class LatencyHistogram {
+        /** 每个2的幂区间的子区间数（2^SUB_BITS） */
+        private static final int SUB_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+
+        /**
+         * 记录一次耗时
+         *
+         * @param nanos 耗时（纳秒）
+         */
+        public void record(long nanos) {
+            long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+            counts.incrementAndGet(bucket(micros));
+            count.increment();
+            totalMicros.add(micros);
+        }
+
+        /** 记录的次数 */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * 平均耗时
+         *
+         * @return 平均耗时（毫秒），没有记录时返回 0
+         */
+        public double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalMicros.sum() / 1000.0 / n;
+        }
+
+        /**
+         * 分位数耗时（所在子区间的上界）
+         *
+         * @param quantile 分位数，如：{@code 0.99}
+         * @return 耗时（毫秒），没有记录时返回 0
+         */
+        public double percentileMillis(double quantile) {
+            checkArgument(quantile < 0 || quantile > 1, "分位数必须在 [0, 1] 之间！");
+
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) return lowerBound(i + 1) / 1000.0;
+            }
+            return lowerBound(BUCKETS) / 1000.0;
+        }
+
+        static int bucket(long micros) {
+            if (micros < SUB_BUCKETS) return (int) micros;
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            return exponent >= 62 ? Long.MAX_VALUE : (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        }
+
+        @Override
+        public String toString() {
+            return "LatencyHistogram{" +
+                    "count=" + getCount() +
+                    ", meanMillis=" + meanMillis() +
+                    ", p50Millis=" + percentileMillis(0.5) +
+                    ", p99Millis=" + percentileMillis(0.99) +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package cn.slibs.spring.dao;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 一次批量操作的监听器通知：全局注册的监听器（{@link MybatisHelper#addBatchListener}）及调用时指定的监听器，
+ * 回调抛出的异常只记录日志
+ *
+ * @since 0.2.4
+ */
+@Slf4j
+final class BatchNotifier {
+    private final String operation;
+    private final String target;
+    private final List<BatchListener> listeners;
+
+    private BatchNotifier(String operation, String target, List<BatchListener> listeners) {
+        this.operation = operation;
+        this.target = target;
+        this.listeners = listeners;
+    }
+
+    static BatchNotifier of(String operation, String target, BatchListener listener) {
+        List<BatchListener> globalListeners = MybatisHelper.getBatchListeners();
+        if (listener == null) return new BatchNotifier(operation, target, globalListeners);
+
+        List<BatchListener> listeners = new ArrayList<>(globalListeners.size() + 1);
+        listeners.addAll(globalListeners);
+        listeners.add(listener);
+        return new BatchNotifier(operation, target, Collections.unmodifiableList(listeners));
+    }
+
+    void start() {
+        fire(listener -> listener.onStart(operation, target));
+    }
+
+    void flush(int rows, long flushNanos, Map<String, Long> updateCounts) {
+        fire(listener -> listener.onFlush(operation, target, rows, flushNanos, updateCounts));
+    }
+
+    void commit(long processedCount) {
+        fire(listener -> listener.onCommit(operation, target, processedCount));
+    }
+
+    void rollback(Throwable cause) {
+        fire(listener -> listener.onRollback(operation, target, cause));
+    }
+
+    void complete(long processedCount, long elapsedMillis) {
+        fire(listener -> listener.onComplete(operation, target, processedCount, elapsedMillis));
+    }
+
+    private void fire(Consumer<BatchListener> event) {
+        for (BatchListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (Throwable e) {
+                log.warn("{}，target：{}，监听器[{}]回调异常：{}", operation, target, listener, e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package cn.slibs.spring.dao;
+
+import lombok.Getter;
+
+import java.util.Comparator;
+import java.util.function.BinaryOperator;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 批量操作的可选项（按调用传入，未设置的选项保持默认行为）<br>
+ * 使用示例：
+ * <pre>{@code
+ * BatchOptions<User> options = BatchOptions.<User>create()
+ *         .setAdaptiveBatchSize(AdaptiveBatchSize.of(100, 5000, 200))
+ *         .setCommitEveryBatches(10)
+ *         .setCheckpointKey(User::getId)
+ *         .setCheckpointListener(checkpoint -> saveProgress(checkpoint))
+ *         .setResumeFrom(loadProgress());
+ * mybatisHelper.batchUpdate(UserMapper.class, users, options, UserMapper::insert);
+ * }</pre>
+ *
+ * @param <MODEL> 实体类型
+ * @since 0.2.4
+ */
+@Getter
+public class BatchOptions<MODEL> {
+    /** 自适应批次大小，设置后忽略固定的批次大小 */
+    private AdaptiveBatchSize adaptiveBatchSize;
+    /** 每执行多少个批次提交一次，小于1时只在全部执行完后提交一次（默认） */
+    private int commitEveryBatches;
+    /** 断点中记录的主键提取器，如：（{@code User::getId}） */
+    private Function<? super MODEL, ?> checkpointKey;
+    /** 每次提交后的断点回调 */
+    private Consumer<BatchCheckpoint> checkpointListener;
+    /** 续跑的断点：跳过数据源中前 {@link BatchCheckpoint#getProcessedCount()} 条已提交的数据 */
+    private BatchCheckpoint resumeFrom;
+    /** 是否隔离失败的数据：批次失败时回滚到保存点，将批次二分后重试，直到定位出失败的数据，其余数据照常写入 */
+    private boolean isolateFailures;
+    /** 合并重复数据的主键提取器，设置后每批次写入前先合并主键重复的数据 */
+    private Function<? super MODEL, ?> coalesceKey;
+    /** 合并函数（参数依次为：已有的数据、后出现的数据），为 {@code null} 时后出现的数据覆盖已有的数据 */
+    private BinaryOperator<MODEL> coalesceMerge;
+    /** 取消信号，每批次开始前检查，返回 {@code true} 时停止执行并回滚未提交的批次 */
+    private BooleanSupplier cancelled;
+    /** 加锁顺序，设置后每批次写入前按此排序，使并发的批量操作以相同的顺序获取行锁 */
+    private Comparator<? super MODEL> lockOrder;
+    /** 死锁（或锁等待超时）重试策略 */
+    private DeadlockRetry deadlockRetry;
+    /** 本次调用的监听器（与全局注册的监听器同时生效） */
+    private BatchListener listener;
+
+    BatchOptions() {
+    }
+
+    public static <MODEL> BatchOptions<MODEL> create() {
+        return new BatchOptions<>();
+    }
+
+    public BatchOptions<MODEL> setAdaptiveBatchSize(AdaptiveBatchSize adaptiveBatchSize) {
+        this.adaptiveBatchSize = adaptiveBatchSize;
+        return this;
+    }
+
+    /**
+     * 设置每执行多少个批次提交一次。分段提交后，失败时只回滚最后一次提交之后的批次，
+     * 已提交的进度通过异常信息及 {@link #setCheckpointListener} 获取
+     *
+     * @param commitEveryBatches 每执行多少个批次提交一次，小于1时只在全部执行完后提交一次
+     * @return BatchOptions
+     */
+    public BatchOptions<MODEL> setCommitEveryBatches(int commitEveryBatches) {
+        this.commitEveryBatches = commitEveryBatches;
+        return this;
+    }
+
+    public BatchOptions<MODEL> setCheckpointKey(Function<? super MODEL, ?> checkpointKey) {
+        this.checkpointKey = checkpointKey;
+        return this;
+    }
+
+    public BatchOptions<MODEL> setCheckpointListener(Consumer<BatchCheckpoint> checkpointListener) {
+        this.checkpointListener = checkpointListener;
+        return this;
+    }
+
+    /**
+     * 设置续跑的断点：跳过数据源中前 {@link BatchCheckpoint#getProcessedCount()} 条数据（数据源的顺序必须与上次执行时一致），
+     * 设置了 {@link #setCheckpointKey} 时会校验跳过的最后一条数据的主键与断点中的主键是否一致<br>
+     * <b>注：</b>若数据源本身已按断点过滤（如：{@code WHERE id > #{lastKey}}），则不需要设置此项
+     *
+     * @param resumeFrom 续跑的断点，为 {@code null} 时从头开始
+     * @return BatchOptions
+     */
+    public BatchOptions<MODEL> setResumeFrom(BatchCheckpoint resumeFrom) {
+        this.resumeFrom = resumeFrom;
+        return this;
+    }
+
+    /**
+     * 设置是否隔离失败的数据。开启后，批次失败时回滚到该批次之前的保存点（{@link java.sql.Savepoint}），将批次一分为二分别重试，
+     * 递归直到定位出失败的单条数据；失败的数据记录在返回的 {@link BatchUpdateResult#getFailures()} 中，不再抛出异常，其余数据照常写入<br>
+     * <b>注：</b>需要数据库驱动支持保存点；每条失败的数据约需要额外 {@code log2(批次大小)} 次重试
+     *
+     * @param isolateFailures 是否隔离失败的数据
+     * @return BatchOptions
+     */
+    public BatchOptions<MODEL> setIsolateFailures(boolean isolateFailures) {
+        this.isolateFailures = isolateFailures;
+        return this;
+    }
+
+    /**
+     * 设置每批次写入前合并主键重复的数据（后出现的数据覆盖已有的数据），如：同一批次中对同一主键的多次更新只写入最后一次
+     *
+     * @param coalesceKey 主键提取器，如：（{@code User::getId}），为 {@code null} 时不合并
+     * @return BatchOptions
+     * @see #setCoalesce(Function, BinaryOperator)
+     */
+    public BatchOptions<MODEL> setCoalesce(Function<? super MODEL, ?> coalesceKey) {
+        return setCoalesce(coalesceKey, null);
+    }
+
+    /**
+     * 设置每批次写入前合并主键重复的数据。合并后的数据保留在该主键第一次出现的位置，
+     * 可避免同一批次中同一主键的多次写入，以及 {@code batchSaveOrUpdate} 中同一主键在同一批次中重复插入的问题<br>
+     * <b>注：</b>只合并同一批次中的数据；断点（{@link BatchCheckpoint}）中的数据量为合并前读取的数据量
+     *
+     * @param coalesceKey   主键提取器，如：（{@code User::getId}），为 {@code null} 时不合并
+     * @param coalesceMerge 合并函数（参数依次为：已有的数据、后出现的数据），为 {@code null} 时后出现的数据覆盖已有的数据
+     * @return BatchOptions
+     */
+    public BatchOptions<MODEL> setCoalesce(Function<? super MODEL, ?> coalesceKey, BinaryOperator<MODEL> coalesceMerge) {
+        this.coalesceKey = coalesceKey;
+        this.coalesceMerge = coalesceMerge;
+        return this;
+    }
+
+    /**
+     * 设置取消信号：每批次开始前检查，返回 {@code true} 时停止执行，回滚未提交的批次并抛出异常（cause 为 {@link java.util.concurrent.CancellationException}）<br>
+     * <b>注：</b>开启分段提交（{@link #setCommitEveryBatches}）时，取消前已提交的批次不会回滚
+     *
+     * @param cancelled 取消信号，如：（{@code future::isCancelled}），为 {@code null} 时不检查
+     * @return BatchOptions
+     */
+    public BatchOptions<MODEL> setCancelled(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+        return this;
+    }
+
+    /**
+     * 设置加锁顺序：每批次写入前（合并重复数据之后）按此排序，并发的批量操作处理重叠的数据时以相同的顺序获取行锁，避免互相等待形成死锁<br>
+     * <b>注：</b>只对同一批次中的数据排序；断点（{@link BatchCheckpoint}）仍按数据源的读取顺序记录
+     *
+     * @param lockOrder 加锁顺序，如：（{@code Comparator.comparing(User::getId)}），为 {@code null} 时按数据源的顺序写入
+     * @return BatchOptions
+     */
+    public BatchOptions<MODEL> setLockOrder(Comparator<? super MODEL> lockOrder) {
+        this.lockOrder = lockOrder;
+        return this;
+    }
+
+    /**
+     * 设置死锁（或锁等待超时）重试策略：批次因死锁失败时回滚该批次，退避后重新执行，超过最大执行次数后抛出异常<br>
+     * <b>注：</b>数据库检测到死锁时通常会回滚整个事务，因此开启后每批次提交一次（忽略 {@link #setCommitEveryBatches}），
+     * 重试的范围即为单个批次；加入了 Spring 事务时由外层事务处理，不重试
+     *
+     * @param deadlockRetry 重试策略，如：（{@code DeadlockRetry.of(3)}），为 {@code null} 时不重试
+     * @return BatchOptions
+     */
+    public BatchOptions<MODEL> setDeadlockRetry(DeadlockRetry deadlockRetry) {
+        this.deadlockRetry = deadlockRetry;
+        return this;
+    }
+
+    /**
+     * 设置本次调用的监听器，与全局注册的监听器（{@link MybatisHelper#addBatchListener}）同时生效
+     *
+     * @param listener 监听器，为 {@code null} 时只使用全局注册的监听器
+     * @return BatchOptions
+     */
+    public BatchOptions<MODEL> setListener(BatchListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * 复制当前可选项
+     *
+     * @return 新的可选项
+     */
+    BatchOptions<MODEL> copy() {
+        return BatchOptions.<MODEL>create()
+                .setAdaptiveBatchSize(adaptiveBatchSize)
+                .setCommitEveryBatches(commitEveryBatches)
+                .setCheckpointKey(checkpointKey)
+                .setCheckpointListener(checkpointListener)
+                .setResumeFrom(resumeFrom)
+                .setIsolateFailures(isolateFailures)
+                .setCoalesce(coalesceKey, coalesceMerge)
+                .setCancelled(cancelled)
+                .setLockOrder(lockOrder)
+                .setDeadlockRetry(deadlockRetry)
+                .setListener(listener);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOptions{" +
+                "adaptiveBatchSize=" + adaptiveBatchSize +
+                ", commitEveryBatches=" + commitEveryBatches +
+                ", resumeFrom=" + resumeFrom +
+                ", isolateFailures=" + isolateFailures +
+                ", deadlockRetry=" + deadlockRetry +
+                '}';
+    }
+}
@@ -0,0 +1,87 @@
+package cn.slibs.spring.dao;
+
+import com.iofairy.tcf.Close;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.mybatis.spring.SqlSessionHolder;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 批量操作使用的 SqlSession：
+ * <ul>
+ *     <li>存在 Spring 事务时加入该事务：事务中已绑定 BATCH 执行器的 SqlSession 则直接复用，否则在事务绑定的连接上打开 BATCH 执行器的 SqlSession
+ *     （需使用 {@link SpringManagedTransactionFactory}，{@code SqlSessionFactoryBean} 默认即是），提交、回滚由外层事务负责；</li>
+ *     <li>不存在 Spring 事务时，打开独立的 BATCH 执行器 SqlSession，由批量操作自行提交、回滚。</li>
+ * </ul>
+ *
+ * @since 0.2.4
+ */
+@Slf4j
+@Getter
+final class BatchSqlSession implements AutoCloseable {
+    private final SqlSession sqlSession;
+    /** 是否加入了 Spring 事务（提交、回滚由外层事务负责） */
+    private final boolean transactional;
+    /** 是否由本对象打开（需要关闭） */
+    private final boolean owned;
+    /** 事务中已绑定的非 BATCH 执行器 SqlSession，批量写入后需清空其一级缓存 */
+    private final SqlSession boundSqlSession;
+
+    private BatchSqlSession(SqlSession sqlSession, boolean transactional, boolean owned, SqlSession boundSqlSession) {
+        this.sqlSession = sqlSession;
+        this.transactional = transactional;
+        this.owned = owned;
+        this.boundSqlSession = boundSqlSession;
+    }
+
+    static BatchSqlSession open(SqlSessionFactory sqlSessionFactory) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            SqlSessionHolder sqlSessionHolder = (SqlSessionHolder) TransactionSynchronizationManager.getResource(sqlSessionFactory);
+            if (sqlSessionHolder != null && sqlSessionHolder.getExecutorType() == ExecutorType.BATCH) {
+                return new BatchSqlSession(sqlSessionHolder.getSqlSession(), true, false, null);
+            }
+
+            TransactionFactory transactionFactory = sqlSessionFactory.getConfiguration().getEnvironment().getTransactionFactory();
+            if (transactionFactory instanceof SpringManagedTransactionFactory) {
+                // SpringManagedTransaction 通过 DataSourceUtils 获取连接，即事务绑定的连接
+                SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+                return new BatchSqlSession(sqlSession, true, true, sqlSessionHolder == null ? null : sqlSessionHolder.getSqlSession());
+            }
+            log.warn("TransactionFactory [{}] 不是 SpringManagedTransactionFactory，无法加入当前的 Spring 事务，批量操作将使用独立的连接及事务", transactionFactory);
+        }
+        return new BatchSqlSession(sqlSessionFactory.openSession(ExecutorType.BATCH, false), false, true, null);
+    }
+
+    /**
+     * 提交：加入了 Spring 事务时只 flush，由外层事务提交
+     */
+    void commit() {
+        if (transactional) {
+            sqlSession.flushStatements();
+        } else {
+            // 强制提交：原生SQL（如：batchUpsert）不经过 MyBatis 的 update，SqlSession 不会被标记为 dirty
+            sqlSession.commit(true);
+        }
+    }
+
+    /**
+     * 回滚：加入了 Spring 事务时由外层事务回滚（异常抛出后由 Spring 处理）
+     */
+    void rollback() {
+        if (!transactional) {
+            sqlSession.rollback(true);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (owned) Close.close(sqlSession);
+        if (boundSqlSession != null) boundSqlSession.clearCache();
+    }
+
+}
@@ -0,0 +1,212 @@
+package cn.slibs.spring.dao;
+
+import lombok.Getter;
+import org.apache.ibatis.executor.BatchResult;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量操作的结果：每条SQL语句（MappedStatement）影响的行数、未影响任何行的数据（按执行顺序），及开启 {@link BatchOptions#setIsolateFailures} 时定位到的失败数据<br>
+ * <b>注：</b>影响的行数来自 {@code sqlSession.flushStatements()} 的返回值，不包含原生SQL（如：{@code batchUpsert}）及查询时隐式 flush 的语句；
+ * 驱动返回 {@link Statement#SUCCESS_NO_INFO}（如：Oracle、开启了 {@code rewriteBatchedStatements} 的 MySQL）时影响的行数未知，
+ * 不计入影响的行数，而是计入 {@link #getUnknownCounts()}
+ *
+ * @param <MODEL> 实体类型
+ * @since 0.2.4
+ */
+@Getter
+public class BatchUpdateResult<MODEL> {
+    /** 本次调用处理的数据量（不包含续跑时跳过的数据） */
+    private long processedCount;
+    /** 写入成功的数据量 */
+    private long successCount;
+    /** 合并掉的重复数据量（{@link BatchOptions#setCoalesce}） */
+    private long coalescedCount;
+    /** 耗时（毫秒） */
+    private long elapsedMillis;
+    /** key 为 MappedStatement 的 id，value 为该语句影响的总行数（不包含影响行数未知的数据） */
+    private final Map<String, Long> updateCounts = new LinkedHashMap<>();
+    /** key 为 MappedStatement 的 id，value 为驱动未返回影响行数（{@link Statement#SUCCESS_NO_INFO}）的数据量 */
+    private final Map<String, Long> unknownCounts = new LinkedHashMap<>();
+    /** 未影响任何行的数据（按执行顺序），如：更新时主键不存在 */
+    private final List<ZeroCountRow> zeroCountRows = new ArrayList<>();
+    /** 失败的数据 */
+    private final List<Failure<MODEL>> failures = new ArrayList<>();
+
+    BatchUpdateResult() {
+    }
+
+    void addBatchResults(List<BatchResult> batchResults) {
+        for (BatchResult batchResult : batchResults) {
+            String statementId = batchResult.getMappedStatement().getId();
+            int[] statementCounts = batchResult.getUpdateCounts();
+            List<Object> parameterObjects = batchResult.getParameterObjects();
+            long count = 0;
+            long unknownCount = 0;
+            for (int i = 0; i < statementCounts.length; i++) {
+                int updateCount = statementCounts[i];
+                if (updateCount > 0) {
+                    count += updateCount;
+                } else if (updateCount == 0) {
+                    // 每条数据对应一个参数对象，参数对象与影响的行数一一对应
+                    zeroCountRows.add(new ZeroCountRow(statementId, i < parameterObjects.size() ? parameterObjects.get(i) : null));
+                } else if (updateCount == Statement.SUCCESS_NO_INFO) {
+                    unknownCount++;
+                }
+            }
+            updateCounts.merge(statementId, count, Long::sum);
+            if (unknownCount > 0) unknownCounts.merge(statementId, unknownCount, Long::sum);
+        }
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    void addProcessedCount(long count) {
+        processedCount += count;
+    }
+
+    void addCoalescedCount(long count) {
+        coalescedCount += count;
+    }
+
+    void addSuccessCount(long count) {
+        successCount += count;
+    }
+
+    void addFailure(MODEL model, Throwable cause) {
+        failures.add(new Failure<>(model, cause));
+    }
+
+    /**
+     * 合并另一个结果的写入行数、成功数据量及失败的数据（不包含处理数据量）
+     */
+    void merge(BatchUpdateResult<MODEL> other) {
+        other.updateCounts.forEach((statementId, count) -> updateCounts.merge(statementId, count, Long::sum));
+        other.unknownCounts.forEach((statementId, count) -> unknownCounts.merge(statementId, count, Long::sum));
+        zeroCountRows.addAll(other.zeroCountRows);
+        successCount += other.successCount;
+        failures.addAll(other.failures);
+    }
+
+    /**
+     * 所有语句影响的总行数
+     *
+     * @return 总行数
+     */
+    public long getUpdateCount() {
+        long count = 0;
+        for (Long updateCount : updateCounts.values()) {
+            count += updateCount;
+        }
+        return count;
+    }
+
+    /**
+     * 驱动未返回影响行数（{@link Statement#SUCCESS_NO_INFO}）的数据量
+     *
+     * @return 影响行数未知的数据量，为 0 时所有语句的影响行数均已知
+     */
+    public long getUnknownCount() {
+        long count = 0;
+        for (Long unknownCount : unknownCounts.values()) {
+            count += unknownCount;
+        }
+        return count;
+    }
+
+    public Map<String, Long> getUpdateCounts() {
+        return Collections.unmodifiableMap(updateCounts);
+    }
+
+    public Map<String, Long> getUnknownCounts() {
+        return Collections.unmodifiableMap(unknownCounts);
+    }
+
+    public List<ZeroCountRow> getZeroCountRows() {
+        return Collections.unmodifiableList(zeroCountRows);
+    }
+
+    public List<Failure<MODEL>> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * 是否全部写入成功
+     *
+     * @return 没有失败的数据时返回 {@code true}
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchUpdateResult{" +
+                "processedCount=" + processedCount +
+                ", successCount=" + successCount +
+                ", coalescedCount=" + coalescedCount +
+                ", failureCount=" + failures.size() +
+                ", updateCounts=" + updateCounts +
+                ", unknownCounts=" + unknownCounts +
+                ", zeroCountRows=" + zeroCountRows.size() +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+
+    /**
+     * 未影响任何行的数据
+     */
+    @Getter
+    public static class ZeroCountRow {
+        /** MappedStatement 的 id */
+        private final String statementId;
+        /** 该条数据的参数对象（mapper 方法只有一个参数时为该参数，如：实体类） */
+        private final Object parameter;
+
+        ZeroCountRow(String statementId, Object parameter) {
+            this.statementId = statementId;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public String toString() {
+            return "ZeroCountRow{" +
+                    "statementId='" + statementId + '\'' +
+                    ", parameter=" + parameter +
+                    '}';
+        }
+    }
+
+    /**
+     * 失败的数据及失败原因
+     *
+     * @param <MODEL> 实体类型
+     */
+    @Getter
+    public static class Failure<MODEL> {
+        /** 失败的数据 */
+        private final MODEL model;
+        /** 失败原因 */
+        private final Throwable cause;
+
+        Failure(MODEL model, Throwable cause) {
+            this.model = model;
+            this.cause = cause;
+        }
+
+        @Override
+        public String toString() {
+            return "Failure{" +
+                    "model=" + model +
+                    ", cause=" + cause +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package cn.slibs.spring.dao;
+
+/**
+ * 并行分区批量写入的提交策略
+ *
+ * @since 0.2.4
+ */
+public enum CommitPolicy {
+    /**
+     * 全部成功或全部回滚：所有分区都执行成功后才依次提交，任一分区失败则回滚所有分区<br>
+     * <b>注：</b>各分区使用各自的连接，并非分布式事务（两阶段提交），提交阶段本身失败时无法保证原子性
+     */
+    ALL_OR_NOTHING,
+    /**
+     * 分区独立提交：所有分区都执行完成后依次提交各个分区，执行或提交失败的分区只回滚自己，不影响其他分区的提交
+     */
+    PER_PARTITION,
+}
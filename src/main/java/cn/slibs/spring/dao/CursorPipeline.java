@@ -0,0 +1,339 @@
+package cn.slibs.spring.dao;
+
+import com.iofairy.except.GeneralException;
+import com.iofairy.lambda.RT2;
+import com.iofairy.tcf.Close;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.jdbc.ConnectionLogger;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.mybatis.spring.SqlSessionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 流式 ETL 管道：通过 MyBatis {@link Cursor} 按 {@code fetchSize} 流式读取源查询，转换后通过批量写入（BATCH 执行器）写入目标 mapper<br>
+ * 读取（含转换）与写入在不同的线程中并行执行，中间通过有界缓冲区（{@link #getBufferBatches()} 个批次）连接，
+ * 内存中最多只保留 {@code bufferBatches + 2} 个批次的数据，与表的大小无关。<br>
+ * 使用示例：
+ * <pre>{@code
+ * BatchUpdateResult<UserBak> result = mybatisHelper.<User>cursorPipeline(UserMapper.class, "selectAll")
+ *         .setFetchSize(1000)
+ *         .execute(UserBakMapper.class, user -> new UserBak(user), UserBakMapper::insert);
+ * }</pre>
+ * <b>注：</b>读取使用独立的连接，写入的提交方式与 {@link MybatisHelper#batchUpdate} 相同；
+ * MySQL 需设置 {@code fetchSize} 为 {@link Integer#MIN_VALUE}（或开启 {@code useCursorFetch}）才会流式读取
+ *
+ * @param <SOURCE> 源数据类型
+ * @since 0.2.4
+ */
+@Slf4j
+@Getter
+public class CursorPipeline<SOURCE> {
+    /** 默认缓冲区的批次数 */
+    public static final int DEFAULT_BUFFER_BATCHES = 2;
+
+    private final SqlSessionTemplate sqlSessionTemplate;
+    /** 源查询的 statement id，如：{@code com.example.mapper.UserMapper.selectAll} */
+    private final String sourceStatement;
+    /** 源查询的参数 */
+    private Object parameter;
+    /** 读取时每次从数据库获取的行数（只设置到本次读取的 JDBC Statement 上），为 {@code null} 时使用源查询的配置 */
+    private Integer fetchSize;
+    /** 每批次数量 */
+    private int batchSize;
+    /** 读取与写入之间的缓冲区大小（批次数） */
+    private int bufferBatches = DEFAULT_BUFFER_BATCHES;
+    /** 执行读取的线程池，为 {@code null} 时为每次执行创建一个新线程 */
+    private Executor executor;
+
+    CursorPipeline(SqlSessionTemplate sqlSessionTemplate, String sourceStatement, int batchSize) {
+        this.sqlSessionTemplate = sqlSessionTemplate;
+        this.sourceStatement = sourceStatement;
+        this.batchSize = batchSize;
+    }
+
+    public static <SOURCE> CursorPipeline<SOURCE> build(SqlSessionTemplate sqlSessionTemplate, String sourceStatement) {
+        checkNullNPE(sqlSessionTemplate, args("sqlSessionTemplate"));
+        checkBlank(sourceStatement, args("sourceStatement"));
+        return new CursorPipeline<>(sqlSessionTemplate, sourceStatement, MybatisHelper.getDefaultBatchSize());
+    }
+
+    public static <SOURCE> CursorPipeline<SOURCE> build(SqlSessionTemplate sqlSessionTemplate, Class<?> sourceMapperClass, String sourceMethodName) {
+        checkHasNullNPE(args(sqlSessionTemplate, sourceMapperClass), args("sqlSessionTemplate", "sourceMapperClass"));
+        checkBlank(sourceMethodName, args("sourceMethodName"));
+        return build(sqlSessionTemplate, MapperStatements.of(sqlSessionTemplate.getConfiguration(), sourceMapperClass).id(sourceMethodName));
+    }
+
+    /**
+     * 执行管道：读取 → 转换 → 批量写入
+     *
+     * @param targetMapperClass 目标 mapper class
+     * @param transform         转换函数，返回 {@code null} 时跳过该行
+     * @param updateAction      写入操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>          mapper类型
+     * @param <MODEL>           目标实体类型
+     * @return 批量操作的结果（{@link BatchUpdateResult#getProcessedCount()} 为转换后写入的数据量）
+     */
+    public <MAPPER, MODEL> BatchUpdateResult<MODEL> execute(Class<MAPPER> targetMapperClass,
+                                                           Function<? super SOURCE, ? extends MODEL> transform,
+                                                           RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        return execute(targetMapperClass, transform, null, updateAction);
+    }
+
+    /**
+     * 执行管道：读取 → 转换 → 批量写入
+     *
+     * @param targetMapperClass 目标 mapper class
+     * @param transform         转换函数，返回 {@code null} 时跳过该行
+     * @param options           写入的可选项，可为 {@code null}
+     * @param updateAction      写入操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>          mapper类型
+     * @param <MODEL>           目标实体类型
+     * @return 批量操作的结果（{@link BatchUpdateResult#getProcessedCount()} 为转换后写入的数据量）
+     */
+    public <MAPPER, MODEL> BatchUpdateResult<MODEL> execute(Class<MAPPER> targetMapperClass,
+                                                           Function<? super SOURCE, ? extends MODEL> transform,
+                                                           BatchOptions<MODEL> options,
+                                                           RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkHasNullNPE(args(targetMapperClass, transform, updateAction), args("targetMapperClass", "transform", "updateAction"));
+
+        final Reader<MODEL> reader = new Reader<>(transform);
+        start(reader);
+        try {
+            return BatchEngine.execute("cursorPipeline", sourceStatement + " -> " + targetMapperClass.getName(), sqlSessionTemplate, targetMapperClass, reader, batchSize, options, (sqlSession, mapper, modelList) -> {
+                for (MODEL model : modelList) {
+                    updateAction.$(mapper, model);
+                }
+            });
+        } finally {
+            // 写入失败时通知读取线程停止，并等待其关闭游标及连接
+            reader.cancel();
+            reader.awaitDone();
+        }
+    }
+
+    private void start(Runnable reader) {
+        if (executor != null) {
+            try {
+                executor.execute(reader);
+                return;
+            } catch (RejectedExecutionException e) {
+                log.warn("CursorPipeline，source：{}，线程池拒绝执行，改为创建新线程读取", sourceStatement);
+            }
+        }
+        Thread thread = new Thread(reader, "CursorPipeline-" + sourceStatement.substring(sourceStatement.lastIndexOf('.', sourceStatement.lastIndexOf('.') - 1) + 1));
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 打开源查询的游标：通过 StatementHandler 创建语句，设置本次调用的 {@code fetchSize} 后再执行查询，不修改 Configuration 中的 MappedStatement
+     *
+     * @param queryExecutor 执行查询的 Executor（持有读取使用的连接）
+     * @param statement     源查询
+     * @param parameter     源查询的参数
+     * @param fetchSize     fetchSize，为 {@code null} 时使用源查询的配置
+     * @param <E>           源数据类型
+     * @return 游标（关闭时同时关闭 Statement）
+     * @throws SQLException 创建或执行语句失败
+     */
+    static <E> Cursor<E> openCursor(org.apache.ibatis.executor.Executor queryExecutor, MappedStatement statement, Object parameter, Integer fetchSize) throws SQLException {
+        Object parameterObject = ParamNameResolver.wrapToMapIfCollection(parameter, null);
+        BoundSql boundSql = statement.getBoundSql(parameterObject);
+        StatementHandler handler = statement.getConfiguration().newStatementHandler(queryExecutor, statement, parameterObject, RowBounds.DEFAULT, null, boundSql);
+        Connection connection = queryExecutor.getTransaction().getConnection();
+        if (statement.getStatementLog().isDebugEnabled()) {
+            connection = ConnectionLogger.newInstance(connection, statement.getStatementLog(), 0);
+        }
+        Statement jdbcStatement = handler.prepare(connection, queryExecutor.getTransaction().getTimeout());
+        try {
+            if (fetchSize != null) jdbcStatement.setFetchSize(fetchSize);
+            handler.parameterize(jdbcStatement);
+            return handler.queryCursor(jdbcStatement);
+        } catch (SQLException | RuntimeException e) {
+            Close.close(jdbcStatement);
+            throw e;
+        }
+    }
+
+    public CursorPipeline<SOURCE> setParameter(Object parameter) {
+        this.parameter = parameter;
+        return this;
+    }
+
+    public CursorPipeline<SOURCE> setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public CursorPipeline<SOURCE> setBatchSize(int batchSize) {
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public CursorPipeline<SOURCE> setBufferBatches(int bufferBatches) {
+        checkArgument(bufferBatches < 1, "缓冲区大小必须大于0！");
+        this.bufferBatches = bufferBatches;
+        return this;
+    }
+
+    public CursorPipeline<SOURCE> setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CursorPipeline{" +
+                "sourceStatement='" + sourceStatement + '\'' +
+                ", fetchSize=" + fetchSize +
+                ", batchSize=" + batchSize +
+                ", bufferBatches=" + bufferBatches +
+                '}';
+    }
+
+    /**
+     * 读取线程：按批次将转换后的数据放入缓冲区；同时作为写入端的数据源（{@link Iterator}），从缓冲区中逐批取出
+     *
+     * @param <MODEL> 目标实体类型
+     */
+    private final class Reader<MODEL> implements Runnable, Iterator<MODEL> {
+        /** 读取结束的标记 */
+        private final List<MODEL> end = Collections.emptyList();
+        private final BlockingQueue<List<MODEL>> buffer = new ArrayBlockingQueue<>(bufferBatches);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final Function<? super SOURCE, ? extends MODEL> transform;
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+        /** 以下字段只在写入线程中访问 */
+        private Iterator<MODEL> current;
+        private boolean finished;
+
+        Reader(Function<? super SOURCE, ? extends MODEL> transform) {
+            this.transform = transform;
+        }
+
+        @Override
+        public void run() {
+            org.apache.ibatis.executor.Executor queryExecutor = null;
+            Cursor<SOURCE> cursor = null;
+            try {
+                Configuration configuration = sqlSessionTemplate.getConfiguration();
+                Environment environment = configuration.getEnvironment();
+                Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, false);
+                queryExecutor = configuration.newExecutor(transaction, ExecutorType.SIMPLE);
+                cursor = openCursor(queryExecutor, configuration.getMappedStatement(sourceStatement), parameter, fetchSize);
+                List<MODEL> chunk = new ArrayList<>(batchSize);
+                for (SOURCE source : cursor) {
+                    if (cancelled) return;
+                    MODEL model = transform.apply(source);
+                    if (model == null) continue;
+                    chunk.add(model);
+                    if (chunk.size() >= batchSize) {
+                        put(chunk);
+                        chunk = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!chunk.isEmpty()) put(chunk);
+            } catch (Throwable e) {
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                failure = e;
+            } finally {
+                Close.close(cursor);
+                if (queryExecutor != null) {
+                    try {
+                        queryExecutor.close(false);
+                    } catch (Throwable e) {
+                        log.debug("CursorPipeline，source：{}，关闭连接失败，失败原因：{}", sourceStatement, e.getMessage());
+                    }
+                }
+                try {
+                    put(end);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                }
+                done.countDown();
+            }
+        }
+
+        private void put(List<MODEL> chunk) throws InterruptedException {
+            while (!cancelled && !buffer.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                // 缓冲区已满，等待写入端取出（背压）
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (finished) return false;
+                List<MODEL> chunk;
+                try {
+                    chunk = buffer.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new GeneralException(e, "[${sourceStatement}]等待读取数据时被中断！", sourceStatement);
+                }
+                if (chunk == end) {
+                    finished = true;
+                    if (failure != null) throw new GeneralException(failure, "[${sourceStatement}]流式读取异常！", sourceStatement);
+                    return false;
+                }
+                current = chunk.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public MODEL next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+
+        void cancel() {
+            cancelled = true;
+            buffer.clear();
+        }
+
+        void awaitDone() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package cn.slibs.spring.dao;
+
+import lombok.Getter;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 死锁（或锁等待超时）重试策略：批次因死锁失败时，回滚该批次，等待一段时间（带随机抖动的指数退避）后重新执行该批次<br>
+ * 默认识别的 SQLState：{@code 40001}（死锁/序列化失败，MySQL、SQL Server、H2 等）、{@code 40P01}（PostgreSQL 死锁）、
+ * {@code 55P03}（PostgreSQL 获取锁失败）、{@code HYT00}（H2 等锁等待超时），以及 MySQL 的锁等待超时（错误码 {@code 1205}）
+ *
+ * @since 0.2.4
+ */
+@Getter
+public class DeadlockRetry {
+    /** 默认识别的 SQLState */
+    private static final Set<String> DEFAULT_SQL_STATES = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList("40001", "40P01", "55P03", "HYT00")));
+    /** MySQL 锁等待超时的错误码（SQLState 为通用的 HY000） */
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+
+    /** 最大执行次数（包含第一次执行） */
+    private final int maxAttempts;
+    /** 第一次重试前的等待时间（毫秒），之后每次翻倍 */
+    private final long initialBackoffMillis;
+    /** 最大等待时间（毫秒） */
+    private final long maxBackoffMillis;
+    /** 需要重试的 SQLState */
+    private final Set<String> sqlStates = new LinkedHashSet<>(DEFAULT_SQL_STATES);
+
+    public DeadlockRetry(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        checkArgument(maxAttempts < 2, "最大执行次数必须大于1！");
+        checkArgument(initialBackoffMillis < 0, "等待时间不能小于0！");
+        checkArgument(maxBackoffMillis < initialBackoffMillis, "最大等待时间不能小于第一次重试前的等待时间！");
+
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public static DeadlockRetry of(int maxAttempts) {
+        return new DeadlockRetry(maxAttempts, 50, 2000);
+    }
+
+    public static DeadlockRetry of(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        return new DeadlockRetry(maxAttempts, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * 添加需要重试的 SQLState
+     *
+     * @param sqlStates SQLState
+     * @return DeadlockRetry
+     */
+    public DeadlockRetry addSqlStates(String... sqlStates) {
+        checkHasNullNPE(sqlStates, args("sqlStates"));
+        this.sqlStates.addAll(Arrays.asList(sqlStates));
+        return this;
+    }
+
+    public Set<String> getSqlStates() {
+        return Collections.unmodifiableSet(sqlStates);
+    }
+
+    /**
+     * 异常（及其 cause 链）是否为死锁或锁等待超时
+     *
+     * @param e 异常
+     * @return 是死锁或锁等待超时时返回 {@code true}
+     */
+    public boolean isRetryable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof SQLTransactionRollbackException) return true;
+            if (cause instanceof SQLException) {
+                SQLException sqlException = (SQLException) cause;
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    if (next.getSQLState() != null && sqlStates.contains(next.getSQLState())) return true;
+                    if (next.getErrorCode() == MYSQL_LOCK_WAIT_TIMEOUT && "HY000".equals(next.getSQLState())) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 第 {@code retry} 次重试前的等待时间：{@code min(最大等待时间, 初始等待时间 * 2^(retry-1))} 的 50% ~ 100% 之间的随机值，
+     * 避免互相死锁的多个调用同时重试后再次死锁
+     *
+     * @param retry 第几次重试（从1开始）
+     * @return 等待时间（毫秒）
+     */
+    public long backoffMillis(int retry) {
+        long backoff = initialBackoffMillis << Math.min(Math.max(retry - 1, 0), 30);
+        backoff = Math.min(maxBackoffMillis, backoff < 0 ? maxBackoffMillis : backoff);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "DeadlockRetry{" +
+                "maxAttempts=" + maxAttempts +
+                ", initialBackoffMillis=" + initialBackoffMillis +
+                ", maxBackoffMillis=" + maxBackoffMillis +
+                ", sqlStates=" + sqlStates +
+                '}';
+    }
+}
@@ -0,0 +1,245 @@
+package cn.slibs.spring.dao;
+
+import com.iofairy.top.G;
+import lombok.Getter;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 数据库方言，用于生成多行 upsert（有则更新，无则插入）的原生SQL
+ *
+ * @since 0.2.4
+ */
+public enum Dialect {
+    /**
+     * {@code INSERT INTO ... VALUES (...), (...) ON DUPLICATE KEY UPDATE ...}
+     */
+    MYSQL(65535) {
+        @Override
+        public String upsertSql(TableMapping<?> tableMapping, int rows) {
+            List<String> nonKeyColumns = tableMapping.getNonKeyColumns();
+            StringBuilder sql = insertValuesSql(tableMapping, rows).append(" ON DUPLICATE KEY UPDATE ");
+            if (nonKeyColumns.isEmpty()) {
+                String keyColumn = tableMapping.getKeyColumns().get(0);
+                return sql.append(keyColumn).append(" = ").append(keyColumn).toString();
+            }
+            for (int i = 0; i < nonKeyColumns.size(); i++) {
+                if (i > 0) sql.append(", ");
+                sql.append(nonKeyColumns.get(i)).append(" = VALUES(").append(nonKeyColumns.get(i)).append(")");
+            }
+            return sql.toString();
+        }
+    },
+    /**
+     * {@code INSERT INTO ... VALUES (...), (...) ON CONFLICT (...) DO UPDATE SET ...}
+     */
+    POSTGRESQL(32767) {
+        @Override
+        public String upsertSql(TableMapping<?> tableMapping, int rows) {
+            List<String> nonKeyColumns = tableMapping.getNonKeyColumns();
+            StringBuilder sql = insertValuesSql(tableMapping, rows)
+                    .append(" ON CONFLICT (").append(String.join(", ", tableMapping.getKeyColumns())).append(")");
+            if (nonKeyColumns.isEmpty()) {
+                return sql.append(" DO NOTHING").toString();
+            }
+            sql.append(" DO UPDATE SET ");
+            for (int i = 0; i < nonKeyColumns.size(); i++) {
+                if (i > 0) sql.append(", ");
+                sql.append(nonKeyColumns.get(i)).append(" = EXCLUDED.").append(nonKeyColumns.get(i));
+            }
+            return sql.toString();
+        }
+    },
+    /**
+     * {@code MERGE INTO ... (...) KEY (...) VALUES (...), (...)}
+     */
+    H2(65535) {
+        @Override
+        public String upsertSql(TableMapping<?> tableMapping, int rows) {
+            StringBuilder sql = new StringBuilder("MERGE INTO ").append(tableMapping.getTable())
+                    .append(" (").append(String.join(", ", tableMapping.getColumns().keySet())).append(")")
+                    .append(" KEY (").append(String.join(", ", tableMapping.getKeyColumns())).append(")")
+                    .append(" VALUES ");
+            appendValues(sql, tableMapping.getColumns().size(), rows);
+            return sql.toString();
+        }
+    },
+    /**
+     * {@code MERGE INTO ... USING (SELECT ... FROM DUAL UNION ALL ...) ON (...) WHEN MATCHED ... WHEN NOT MATCHED ...}
+     */
+    ORACLE(65535) {
+        @Override
+        public String upsertSql(TableMapping<?> tableMapping, int rows) {
+            List<String> columns = new ArrayList<>(tableMapping.getColumns().keySet());
+            List<String> nonKeyColumns = tableMapping.getNonKeyColumns();
+
+            StringBuilder sql = new StringBuilder("MERGE INTO ").append(tableMapping.getTable()).append(" t USING (");
+            for (int r = 0; r < rows; r++) {
+                if (r > 0) sql.append(" UNION ALL ");
+                sql.append("SELECT ");
+                for (int i = 0; i < columns.size(); i++) {
+                    if (i > 0) sql.append(", ");
+                    sql.append("?");
+                    if (r == 0) sql.append(" ").append(columns.get(i));
+                }
+                sql.append(" FROM DUAL");
+            }
+            sql.append(") s ON (");
+            List<String> keyColumns = tableMapping.getKeyColumns();
+            for (int i = 0; i < keyColumns.size(); i++) {
+                if (i > 0) sql.append(" AND ");
+                sql.append("t.").append(keyColumns.get(i)).append(" = s.").append(keyColumns.get(i));
+            }
+            sql.append(")");
+            if (!nonKeyColumns.isEmpty()) {
+                sql.append(" WHEN MATCHED THEN UPDATE SET ");
+                for (int i = 0; i < nonKeyColumns.size(); i++) {
+                    if (i > 0) sql.append(", ");
+                    sql.append("t.").append(nonKeyColumns.get(i)).append(" = s.").append(nonKeyColumns.get(i));
+                }
+            }
+            sql.append(" WHEN NOT MATCHED THEN INSERT (").append(String.join(", ", columns)).append(") VALUES (");
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) sql.append(", ");
+                sql.append("s.").append(columns.get(i));
+            }
+            return sql.append(")").toString();
+        }
+
+        /**
+         * 每条 MERGE 最多 {@link #MAX_ORACLE_ROWS} 行，不足时按 2 的幂拆分：{@code UNION ALL} 分支过多时解析开销很大，
+         * 且不同行数生成不同的SQL文本，固定行数可复用共享池中已解析的SQL
+         */
+        @Override
+        public int rowsPerStatement(TableMapping<?> tableMapping, int remainingRows) {
+            int maxRows = Math.min(MAX_ORACLE_ROWS, maxRowsPerStatement(tableMapping));
+            return remainingRows >= maxRows ? maxRows : Integer.highestOneBit(remainingRows);
+        }
+    },
+    ;
+
+    /**
+     * 各方言中单条SQL语句最多的绑定参数个数的最小值（与方言无关的原生SQL使用），超过时需拆成多条SQL
+     */
+    public static final int MAX_PARAMETERS = 32767;
+    /**
+     * Oracle 每条 MERGE 语句最多的行数
+     */
+    public static final int MAX_ORACLE_ROWS = 100;
+
+    /**
+     * 单条SQL语句最多的绑定参数个数（MySQL 等驱动的上限为 65535；PostgreSQL 旧版本驱动（pgjdbc 42.4.0 之前）的上限为 32767）
+     */
+    @Getter
+    private final int maxParameters;
+
+    /** SqlSessionFactory（弱引用，不再使用后可被回收）→ 方言 */
+    private static final Map<SqlSessionFactory, Dialect> DIALECT_CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+    Dialect(int maxParameters) {
+        this.maxParameters = maxParameters;
+    }
+
+    /**
+     * 生成 {@code rows} 行数据的 upsert SQL，参数按 {@link TableMapping#values(Object)} 的顺序逐行绑定
+     *
+     * @param tableMapping 表映射
+     * @param rows         行数
+     * @return upsert SQL
+     */
+    public abstract String upsertSql(TableMapping<?> tableMapping, int rows);
+
+    /**
+     * 每条 upsert SQL 最多包含的行数
+     *
+     * @param tableMapping 表映射
+     * @return 最多行数
+     */
+    public int maxRowsPerStatement(TableMapping<?> tableMapping) {
+        return Math.max(1, maxParameters / tableMapping.getColumns().size());
+    }
+
+    /**
+     * 下一条 upsert SQL 包含的行数
+     *
+     * @param tableMapping  表映射
+     * @param remainingRows 剩余的行数（大于0）
+     * @return 行数
+     */
+    public int rowsPerStatement(TableMapping<?> tableMapping, int remainingRows) {
+        return Math.min(remainingRows, maxRowsPerStatement(tableMapping));
+    }
+
+    /**
+     * 根据数据库产品名称（{@link java.sql.DatabaseMetaData#getDatabaseProductName()}）获取方言
+     *
+     * @param databaseProductName 数据库产品名称
+     * @return 方言，不支持时返回 {@code null}
+     */
+    public static Dialect of(String databaseProductName) {
+        if (G.isBlank(databaseProductName)) return null;
+
+        String name = databaseProductName.toLowerCase(Locale.ROOT);
+        if (name.contains("mysql") || name.contains("mariadb")) return MYSQL;
+        if (name.contains("postgresql")) return POSTGRESQL;
+        if (name.contains("h2")) return H2;
+        if (name.contains("oracle")) return ORACLE;
+        return null;
+    }
+
+    /**
+     * 根据连接的元数据获取方言
+     *
+     * @param connection 数据库连接
+     * @return 方言，不支持时返回 {@code null}
+     * @throws SQLException 获取元数据失败
+     */
+    public static Dialect of(Connection connection) throws SQLException {
+        return of(connection.getMetaData().getDatabaseProductName());
+    }
+
+    /**
+     * 获取 {@code SqlSessionFactory} 对应数据源的方言（按 {@code SqlSessionFactory} 缓存，只在第一次调用时读取元数据）
+     *
+     * @param sqlSessionFactory sqlSessionFactory
+     * @param connection        该 {@code SqlSessionFactory} 数据源的连接，用于读取元数据
+     * @return 方言，不支持时返回 {@code null}
+     * @throws SQLException 获取元数据失败
+     */
+    static Dialect of(SqlSessionFactory sqlSessionFactory, Connection connection) throws SQLException {
+        Dialect dialect = DIALECT_CACHE.get(sqlSessionFactory);
+        if (dialect == null) {
+            dialect = of(connection);
+            if (dialect != null) DIALECT_CACHE.put(sqlSessionFactory, dialect);
+        }
+        return dialect;
+    }
+
+    private static StringBuilder insertValuesSql(TableMapping<?> tableMapping, int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableMapping.getTable())
+                .append(" (").append(String.join(", ", tableMapping.getColumns().keySet())).append(") VALUES ");
+        appendValues(sql, tableMapping.getColumns().size(), rows);
+        return sql;
+    }
+
+    private static void appendValues(StringBuilder sql, int columns, int rows) {
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) sql.append(", ");
+            sql.append("(");
+            for (int i = 0; i < columns; i++) {
+                if (i > 0) sql.append(", ");
+                sql.append("?");
+            }
+            sql.append(")");
+        }
+    }
+
+}
@@ -0,0 +1,287 @@
+package cn.slibs.spring.dao;
+
+import com.iofairy.except.GeneralException;
+import com.iofairy.id.TimedID;
+import com.iofairy.tcf.Close;
+import com.iofairy.top.G;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.mybatis.spring.SqlSessionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 按主键范围分段删除（在线清理历史数据）：沿单调递增的整数主键，每次删除 {@code [key, key + rangeSize - 1]} 范围内的数据并提交，
+ * 避免一条大 {@code DELETE} 长时间锁表及产生大量 undo 日志。范围内没有数据时直接跳到下一条满足条件的主键，
+ * 每个范围之间可暂停一段时间（{@link #setPauseMillis}）以降低对前台业务的影响。<br>
+ * 使用示例：
+ * <pre>{@code
+ * PurgeResult result = mybatisHelper.keyRangePurge("t_order_log", "id")
+ *         .setWhere("create_time < ?", deadline)
+ *         .setRangeSize(5000)
+ *         .setPauseMillis(50)
+ *         .execute();
+ * }</pre>
+ * <b>注：</b>使用独立的 SqlSession（独立连接及事务），不加入当前的 Spring 事务；
+ * 失败时已提交的范围不会回滚，可从异常信息或 {@link PurgeResult#getNextKey()} 中的主键继续（{@link #setFromKey}）
+ *
+ * @since 0.2.4
+ */
+@Slf4j
+@Getter
+public class KeyRangePurge {
+    /** 默认每个范围的主键跨度 */
+    public static final long DEFAULT_RANGE_SIZE = 10000;
+
+    private final SqlSessionTemplate sqlSessionTemplate;
+    /** 表名 */
+    private final String table;
+    /** 单调递增的整数主键列 */
+    private final String keyColumn;
+    /** 附加的删除条件（不含 {@code WHERE}），如：{@code create_time < ?}，为 {@code null} 时删除范围内的所有数据 */
+    private String where;
+    /** 附加的删除条件的参数 */
+    private Object[] whereParams = new Object[0];
+    /** 起始主键（包含），为 {@code null} 时从满足条件的最小主键开始 */
+    private Long fromKey;
+    /** 结束主键（不包含），为 {@code null} 时到满足条件的最大主键为止 */
+    private Long toKey;
+    /** 每个范围的主键跨度 */
+    private long rangeSize = DEFAULT_RANGE_SIZE;
+    /** 每个范围提交后暂停的时间（毫秒） */
+    private long pauseMillis;
+    /** 取消信号，每个范围开始前检查 */
+    private BooleanSupplier cancelled;
+
+    KeyRangePurge(SqlSessionTemplate sqlSessionTemplate, String table, String keyColumn) {
+        this.sqlSessionTemplate = sqlSessionTemplate;
+        this.table = table;
+        this.keyColumn = keyColumn;
+    }
+
+    public static KeyRangePurge build(SqlSessionTemplate sqlSessionTemplate, String table, String keyColumn) {
+        checkNullNPE(sqlSessionTemplate, args("sqlSessionTemplate"));
+        checkHasBlank(args(table, keyColumn), args("table", "keyColumn"));
+        return new KeyRangePurge(sqlSessionTemplate, table, keyColumn);
+    }
+
+    /**
+     * 执行删除
+     *
+     * @return 删除的结果
+     */
+    public PurgeResult execute() {
+        checkArgument(fromKey != null && toKey != null && fromKey > toKey, "起始主键（${fromKey}）不能大于结束主键（${toKey}）！", fromKey, toKey);
+
+        final String logId = TimedID.getId();
+        final long start = System.nanoTime();
+        final String deleteSql = "DELETE FROM " + table + " WHERE " + keyColumn + " >= ? AND " + keyColumn + " <= ?" + whereSql(" AND ");
+        long deletedCount = 0;
+        long rangeCount = 0;
+        long printLogCount = 0;
+        // 已提交的进度：小于该主键的数据均已处理
+        Long nextKey = fromKey;
+        final BatchNotifier notifier = BatchNotifier.of("keyRangePurge", table, null);
+        final SqlSession sqlSession = sqlSessionTemplate.getSqlSessionFactory().openSession(ExecutorType.SIMPLE, false);
+        notifier.start();
+        try {
+            Connection connection = sqlSession.getConnection();
+            Long first = fromKey == null ? minKey(connection, null) : fromKey;
+            // 结束主键（包含），未指定结束主键时为满足条件的最大主键；使用包含的上界，最大主键为 Long.MAX_VALUE 时不会溢出
+            Long last = toKey == null ? maxKey(connection) : toKey == Long.MIN_VALUE ? null : toKey - 1;
+            if (first == null || last == null || first > last) {
+                log.debug("keyRangePurge_logId：{}，target：{}，没有需要删除的数据", logId, table);
+                notifier.complete(0, elapsedMillis(start));
+                return new PurgeResult(0, 0, nextKey, elapsedMillis(start));
+            }
+            final long lastKey = last;
+            long current = first;
+
+            while (true) {
+                if (cancelled != null && cancelled.getAsBoolean()) {
+                    log.debug("keyRangePurge_logId：{}，target：{}，已取消。已删除数据量：{}，下次可从主键 {} 继续", logId, table, deletedCount, nextKey);
+                    notifier.complete(deletedCount, elapsedMillis(start));
+                    return new PurgeResult(deletedCount, rangeCount, nextKey, elapsedMillis(start));
+                }
+
+                // 按无符号数比较：负数主键时 lastKey - current 可能超过 Long.MAX_VALUE
+                long rangeLast = Long.compareUnsigned(lastKey - current, rangeSize) < 0 ? lastKey : current + rangeSize - 1;
+                int count;
+                long rangeStart = System.nanoTime();
+                try (PreparedStatement statement = connection.prepareStatement(deleteSql)) {
+                    statement.setLong(1, current);
+                    statement.setLong(2, rangeLast);
+                    setWhereParams(statement, 3);
+                    count = statement.executeUpdate();
+                }
+                // 原生SQL不经过 MyBatis 的 update，需强制提交
+                sqlSession.commit(true);
+                deletedCount += count;
+                printLogCount += count;
+                rangeCount++;
+                notifier.flush(count, System.nanoTime() - rangeStart, Collections.emptyMap());
+                notifier.commit(deletedCount);
+
+                if (rangeLast == lastKey) {
+                    nextKey = afterLast(lastKey);
+                    break;
+                }
+                current = rangeLast + 1;
+                if (count == 0) {
+                    // 范围内没有数据（主键不连续），直接跳到下一条满足条件的主键
+                    Long next = minKey(connection, current);
+                    if (next == null || next > lastKey) {
+                        nextKey = afterLast(lastKey);
+                        break;
+                    }
+                    current = next;
+                }
+                nextKey = current;
+                if (printLogCount >= MybatisHelper.getDefaultPrintLogBatchSize()) {
+                    printLogCount = 0;
+                    log.debug("keyRangePurge_logId：{}，target：{}，正在处理……已删除数据量：{}，当前主键：{}", logId, table, deletedCount, current);
+                }
+                if (pauseMillis > 0) {
+                    TimeUnit.MILLISECONDS.sleep(pauseMillis);
+                }
+            }
+
+            PurgeResult result = new PurgeResult(deletedCount, rangeCount, nextKey, elapsedMillis(start));
+            log.debug("keyRangePurge_logId：{}，target：{}，处理完成。删除数据量：{}，范围数：{}。耗时：{}ms", logId, table, deletedCount, rangeCount, result.getElapsedMillis());
+            notifier.complete(deletedCount, result.getElapsedMillis());
+            return result;
+        } catch (Throwable e) {
+            log.debug("keyRangePurge_logId：{}，target：{}，处理失败，失败原因：{}，已删除数据量：{}，下次可从主键 {} 继续", logId, table, e.getMessage(), deletedCount, nextKey);
+            sqlSession.rollback(true);
+            notifier.rollback(e);
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            throw new GeneralException(e, "[${table}]按主键范围删除异常！已删除数据量：${deletedCount}，下次可从主键 ${nextKey} 继续", table, deletedCount, nextKey);
+        } finally {
+            Close.close(sqlSession);
+        }
+    }
+
+    /**
+     * 满足条件的最小主键
+     *
+     * @param fromKey 起始主键（包含），为 {@code null} 时不限制
+     */
+    private Long minKey(Connection connection, Long fromKey) throws SQLException {
+        String sql = "SELECT MIN(" + keyColumn + ") FROM " + table;
+        if (fromKey == null) {
+            sql += whereSql(" WHERE ");
+        } else {
+            sql += " WHERE " + keyColumn + " >= ?" + whereSql(" AND ");
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (fromKey != null) statement.setLong(index++, fromKey);
+            setWhereParams(statement, index);
+            return queryKey(statement);
+        }
+    }
+
+    /**
+     * 满足条件的最大主键
+     */
+    private Long maxKey(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT MAX(" + keyColumn + ") FROM " + table + whereSql(" WHERE "))) {
+            setWhereParams(statement, 1);
+            return queryKey(statement);
+        }
+    }
+
+    /**
+     * 处理完结束主键后的进度，结束主键为 {@link Long#MAX_VALUE} 时为 {@code null}
+     */
+    private static Long afterLast(long lastKey) {
+        return lastKey == Long.MAX_VALUE ? null : lastKey + 1;
+    }
+
+    private static Long queryKey(PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) return null;
+            Object key = resultSet.getObject(1);
+            return key == null ? null : ((Number) key).longValue();
+        }
+    }
+
+    private String whereSql(String prefix) {
+        return where == null ? "" : prefix + "(" + where + ")";
+    }
+
+    private void setWhereParams(PreparedStatement statement, int index) throws SQLException {
+        for (Object whereParam : whereParams) {
+            statement.setObject(index++, whereParam);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 设置附加的删除条件，与主键范围条件之间为 {@code AND} 关系
+     *
+     * @param where       删除条件（不含 {@code WHERE}），如：{@code create_time < ?}，为 {@code null} 时删除范围内的所有数据
+     * @param whereParams 删除条件的参数
+     * @return KeyRangePurge
+     */
+    public KeyRangePurge setWhere(String where, Object... whereParams) {
+        this.where = G.isBlank(where) ? null : where;
+        this.whereParams = whereParams == null ? new Object[0] : whereParams;
+        return this;
+    }
+
+    public KeyRangePurge setFromKey(Long fromKey) {
+        this.fromKey = fromKey;
+        return this;
+    }
+
+    public KeyRangePurge setToKey(Long toKey) {
+        this.toKey = toKey;
+        return this;
+    }
+
+    public KeyRangePurge setRangeSize(long rangeSize) {
+        checkArgument(rangeSize < 1, "范围大小必须大于0！");
+        this.rangeSize = rangeSize;
+        return this;
+    }
+
+    public KeyRangePurge setPauseMillis(long pauseMillis) {
+        checkArgument(pauseMillis < 0, "暂停时间不能小于0！");
+        this.pauseMillis = pauseMillis;
+        return this;
+    }
+
+    public KeyRangePurge setCancelled(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyRangePurge{" +
+                "table='" + table + '\'' +
+                ", keyColumn='" + keyColumn + '\'' +
+                ", where='" + where + '\'' +
+                ", whereParams=" + Arrays.toString(whereParams) +
+                ", fromKey=" + fromKey +
+                ", toKey=" + toKey +
+                ", rangeSize=" + rangeSize +
+                ", pauseMillis=" + pauseMillis +
+                '}';
+    }
+}
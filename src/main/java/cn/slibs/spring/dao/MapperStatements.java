@@ -0,0 +1,125 @@
+package cn.slibs.spring.dao;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * mapper 的SQL语句注册表：每个 mapper 方法名对应的 {@link MappedStatement} 只解析、校验一次并缓存，
+ * 之后的批量操作不再拼接 statement id 及查找语句；SQL方法名错误时在执行第一条SQL之前（或启动时通过
+ * {@link MybatisHelper#registerMappers} 注册）即抛出异常，而不是写入了部分数据之后才失败<br>
+ * 注册表按 {@link Configuration} 区分，弱引用 Configuration（只缓存 statement id，不持有 MappedStatement），
+ * Configuration（如：刷新上下文、分片创建的 SqlSessionFactory）不再使用后可被回收
+ *
+ * @since 0.2.4
+ */
+public final class MapperStatements {
+    /** Configuration（弱引用）→ mapper class → 注册表 */
+    private static final Map<Configuration, Map<Class<?>, MapperStatements>> REGISTRY = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** 弱引用：MappedStatement 及注册表都不能强引用 Configuration，否则 {@link #REGISTRY} 中的 Configuration 不会被回收 */
+    private final WeakReference<Configuration> configuration;
+    private final Class<?> mapperClass;
+    /** 方法名 → 已校验存在的 statement id */
+    private final Map<String, String> statements = new ConcurrentHashMap<>();
+
+    private MapperStatements(Configuration configuration, Class<?> mapperClass) {
+        this.configuration = new WeakReference<>(configuration);
+        this.mapperClass = mapperClass;
+    }
+
+    /**
+     * 获取 mapper 的SQL语句注册表（不存在则创建）
+     *
+     * @param configuration Configuration
+     * @param mapperClass   mapper class
+     * @return 注册表
+     */
+    public static MapperStatements of(Configuration configuration, Class<?> mapperClass) {
+        checkHasNullNPE(args(configuration, mapperClass), args("configuration", "mapperClass"));
+        return REGISTRY.computeIfAbsent(configuration, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(mapperClass, m -> new MapperStatements(configuration, mapperClass));
+    }
+
+    /**
+     * 校验SQL方法名对应的语句都存在（并缓存），不存在时一次性列出所有缺失的语句
+     *
+     * @param methodNames SQL方法名
+     * @return 注册表
+     * @throws IllegalStateException SQL语句不存在
+     */
+    public MapperStatements require(String... methodNames) {
+        checkEmpty(methodNames, args("methodNames"));
+
+        List<String> missing = new ArrayList<>();
+        for (String methodName : methodNames) {
+            checkBlank(methodName, args("methodName"));
+            if (resolve(methodName) == null) missing.add(mapperClass.getName() + "." + methodName);
+        }
+        checkState(!missing.isEmpty(), "[${mapperName}]未找到SQL语句：${statements}，请检查SQL方法名或 mapper 的配置！", mapperClass.getSimpleName(), missing);
+        return this;
+    }
+
+    /**
+     * 获取SQL方法名对应的语句
+     *
+     * @param methodName SQL方法名
+     * @return MappedStatement
+     * @throws IllegalStateException SQL语句不存在
+     */
+    public MappedStatement get(String methodName) {
+        return configuration().getMappedStatement(id(methodName));
+    }
+
+    /**
+     * 获取SQL方法名对应的 statement id
+     *
+     * @param methodName SQL方法名
+     * @return statement id
+     * @throws IllegalStateException SQL语句不存在
+     */
+    public String id(String methodName) {
+        String id = statements.get(methodName);
+        if (id != null) return id;
+
+        require(methodName);
+        return statements.get(methodName);
+    }
+
+    public Class<?> getMapperClass() {
+        return mapperClass;
+    }
+
+    private String resolve(String methodName) {
+        String id = statements.get(methodName);
+        if (id != null) return id;
+
+        id = mapperClass.getName() + "." + methodName;
+        if (!configuration().hasStatement(id)) return null;
+        statements.put(methodName, id);
+        return id;
+    }
+
+    private Configuration configuration() {
+        Configuration configuration = this.configuration.get();
+        checkState(configuration == null, "[${mapperName}]Configuration 已被回收！", mapperClass.getSimpleName());
+        return configuration;
+    }
+
+    @Override
+    public String toString() {
+        return "MapperStatements{" +
+                "mapperClass=" + mapperClass.getName() +
+                ", statements=" + statements.keySet() +
+                '}';
+    }
+}
@@ -1,25 +1,38 @@
 package cn.slibs.spring.dao;
 
 import com.iofairy.except.GeneralException;
-import com.iofairy.id.TimedID;
-import com.iofairy.falcon.iterable.CollectionKit;
 import com.iofairy.lambda.PT2;
 import com.iofairy.lambda.RT2;
-import com.iofairy.tcf.Close;
-import com.iofairy.time.Stopwatch;
 import com.iofairy.top.G;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
-import org.mybatis.spring.SqlSessionHolder;
 import org.mybatis.spring.SqlSessionTemplate;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static com.iofairy.validator.Preconditions.*;
 
@@ -31,12 +44,17 @@ import static com.iofairy.validator.Preconditions.*;
 @Slf4j
 @Getter
 public class MybatisHelper {
+    /** 每条批量删除SQL最多包含的行数（Oracle 的 IN 列表最多 1000 个元素） */
+    public static final int MAX_DELETE_ROWS_PER_STATEMENT = 1000;
     /** 默认每批次数量 */
     @Getter
     private static int defaultBatchSize = 1000;
     /** 默认用于判断更新或者插入SQL名称 */
     @Getter
     private static String defaultSelectSqlMethodName = "selectById";
+    /** 默认按主键集合批量查询（用于批量判断更新或者插入）的SQL名称 */
+    @Getter
+    private static String defaultSelectByIdsSqlMethodName = "selectByIds";
     /** 默认更新的SQL名称 */
     @Getter
     private static String defaultInsertSqlMethodName = "insert";
@@ -46,6 +64,8 @@ public class MybatisHelper {
     /** 默认输出日志的每批次数量 */
     @Getter
     private static int defaultPrintLogBatchSize = 1000;
+    /** 全局注册的批量操作监听器 */
+    private static final List<BatchListener> batchListeners = new CopyOnWriteArrayList<>();
 
     /*======================
      ******* 实例属性 *******
@@ -55,10 +75,18 @@ public class MybatisHelper {
     private int batchSize;
     /** 用于判断更新或者插入SQL名称 */
     private String selectSqlMethodName;
+    /** 按主键集合批量查询（用于批量判断更新或者插入）的SQL名称 */
+    private String selectByIdsSqlMethodName = defaultSelectByIdsSqlMethodName;
     /** 更新的SQL名称 */
     private String insertSqlMethodName;
     /** 插入的SQL名称 */
     private String updateSqlMethodName;
+    /** 数据库方言（用于 batchUpsert），为 {@code null} 时根据数据源的元数据自动识别 */
+    private Dialect dialect;
+    /** 自适应批次大小的配置模板，不为 {@code null} 时，未显式指定批次大小的批量操作按 mapper（或表）各自调整批次大小 */
+    private AdaptiveBatchSize adaptiveBatchSize;
+    /** 每个 mapper（或表）当前的自适应批次大小 */
+    private final Map<String, AdaptiveBatchSize> adaptiveBatchSizes = new ConcurrentHashMap<>();
 
 
     MybatisHelper(SqlSessionTemplate sqlSessionTemplate) {
@@ -138,7 +166,136 @@ public class MybatisHelper {
     public <MAPPER, MODEL> void batchUpdate(Class<MAPPER> mapperClass,
                                             Collection<MODEL> models,
                                             RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
-        batchUpdate(this.sqlSessionTemplate, mapperClass, models, this.batchSize, updateAction);
+        checkEmpty(models, args("models"));
+        batchUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), updateAction);
+    }
+
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>MyBatis 的 {@link Cursor} 实现了 {@link Iterable}，也可直接传入
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param batchSize    每批次数量
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchUpdate(Class<MAPPER> mapperClass,
+                                            Iterable<MODEL> models,
+                                            int batchSize,
+                                            RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        batchUpdate(this.sqlSessionTemplate, mapperClass, models, batchSize, updateAction);
+    }
+
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>MyBatis 的 {@link Cursor} 实现了 {@link Iterable}，也可直接传入
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchUpdate(Class<MAPPER> mapperClass,
+                                            Iterable<MODEL> models,
+                                            RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkNullNPE(models, args("models"));
+        batchUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), updateAction);
+    }
+
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param options      可选项，可为 {@code null}（传入可选项时不使用本实例的自适应批次大小）
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @return 批量操作的结果（开启 {@link BatchOptions#setIsolateFailures} 时包含失败的数据）
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> BatchUpdateResult<MODEL> batchUpdate(Class<MAPPER> mapperClass,
+                                                                Iterable<MODEL> models,
+                                                                BatchOptions<MODEL> options,
+                                                                RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkNullNPE(models, args("models"));
+        return batchUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, options, updateAction);
+    }
+
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param batchSize    每批次数量
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchUpdate(Class<MAPPER> mapperClass,
+                                            Iterator<MODEL> models,
+                                            int batchSize,
+                                            RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        batchUpdate(this.sqlSessionTemplate, mapperClass, models, batchSize, updateAction);
+    }
+
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchUpdate(Class<MAPPER> mapperClass,
+                                            Iterator<MODEL> models,
+                                            RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        batchUpdate(this.sqlSessionTemplate, mapperClass, models, this.batchSize, batchOptions(mapperClass.getName()), updateAction);
+    }
+
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>不会关闭传入的 {@link Stream}，由调用方负责关闭
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param batchSize    每批次数量
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchUpdate(Class<MAPPER> mapperClass,
+                                            Stream<MODEL> models,
+                                            int batchSize,
+                                            RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        batchUpdate(this.sqlSessionTemplate, mapperClass, models, batchSize, updateAction);
+    }
+
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>不会关闭传入的 {@link Stream}，由调用方负责关闭
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchUpdate(Class<MAPPER> mapperClass,
+                                            Stream<MODEL> models,
+                                            RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkNullNPE(models, args("models"));
+        batchUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), updateAction);
     }
 
     /*==================================================
@@ -178,46 +335,229 @@ public class MybatisHelper {
                                                    Collection<MODEL> models,
                                                    int batchSize,
                                                    RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
-        checkHasNullNPE(args(sqlSessionTemplate, mapperClass, updateAction), args("sqlSessionTemplate", "mapperClass", "updateAction"));
         checkEmpty(models, args("models"));
-        checkArgument(defaultBatchSize < 1, "批量大小必须大于0！");
+        batchUpdate(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, updateAction);
+    }
 
-        SqlSession sqlSession = getSqlSession(sqlSessionTemplate.getSqlSessionFactory());
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>MyBatis 的 {@link Cursor} 实现了 {@link Iterable}，也可直接传入
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param mapperClass        mapper class
+     * @param models             需要更新或插入的实体类
+     * @param batchSize          每批次数量
+     * @param updateAction       更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>           mapper类型
+     * @param <MODEL>            实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                   Class<MAPPER> mapperClass,
+                                                   Iterable<MODEL> models,
+                                                   int batchSize,
+                                                   RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkNullNPE(models, args("models"));
+        batchUpdate(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, updateAction);
+    }
 
-        final String logId = TimedID.getId();
-        Stopwatch stopwatch = Stopwatch.run();
-        long processedCount = 0;
-        long printLogCount = 0;
-        try {
-            MAPPER mapper = sqlSession.getMapper(mapperClass);
-            List<List<MODEL>> modelLists = CollectionKit.divide(new ArrayList<>(models), batchSize);
-            for (List<MODEL> modelList : modelLists) {
-                for (MODEL model : modelList) {
-                    updateAction.$(mapper, model);
-                }
-                sqlSession.flushStatements();
-                sqlSession.clearCache();
-
-                processedCount += modelList.size();
-                printLogCount += modelList.size();
-                if (printLogCount >= defaultPrintLogBatchSize) {
-                    printLogCount = 0;
-                    log.debug("batchUpdate_logId：{}，mapperClass：{}，正在处理……已处理数据量：{}", logId, mapperClass.getSimpleName(), processedCount);
-                }
-            }
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>不会关闭传入的 {@link Stream}，由调用方负责关闭
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param mapperClass        mapper class
+     * @param models             需要更新或插入的实体类
+     * @param batchSize          每批次数量
+     * @param updateAction       更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>           mapper类型
+     * @param <MODEL>            实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                   Class<MAPPER> mapperClass,
+                                                   Stream<MODEL> models,
+                                                   int batchSize,
+                                                   RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkNullNPE(models, args("models"));
+        batchUpdate(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, updateAction);
+    }
+
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param mapperClass        mapper class
+     * @param models             需要更新或插入的实体类
+     * @param batchSize          每批次数量
+     * @param updateAction       更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>           mapper类型
+     * @param <MODEL>            实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                   Class<MAPPER> mapperClass,
+                                                   Iterator<MODEL> models,
+                                                   int batchSize,
+                                                   RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        batchUpdate(sqlSessionTemplate, mapperClass, models, batchSize, null, updateAction);
+    }
+
+    /**
+     * 批量更新、插入、删除（流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param mapperClass        mapper class
+     * @param models             需要更新或插入的实体类
+     * @param batchSize          每批次数量
+     * @param options            可选项，可为 {@code null}
+     * @param updateAction       更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>           mapper类型
+     * @param <MODEL>            实体类型
+     * @return 批量操作的结果（开启 {@link BatchOptions#setIsolateFailures} 时包含失败的数据）
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> BatchUpdateResult<MODEL> batchUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                                       Class<MAPPER> mapperClass,
+                                                                       Iterator<MODEL> models,
+                                                                       int batchSize,
+                                                                       BatchOptions<MODEL> options,
+                                                                       RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkHasNullNPE(args(sqlSessionTemplate, mapperClass, models, updateAction), args("sqlSessionTemplate", "mapperClass", "models", "updateAction"));
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
 
-            sqlSession.commit();
-            log.debug("batchUpdate_logId：{}，mapperClass：{}，处理完成。处理数据量：{}。耗时：{}", logId, mapperClass.getSimpleName(), processedCount, stopwatch);
-        } catch (Throwable e) {
-            log.debug("batchUpdate_logId：{}，mapperClass：{}，处理失败，失败原因：{}，已处理数据量：{}", logId, mapperClass.getSimpleName(), e.getMessage(), processedCount);
-            if (sqlSession != null) {
-                sqlSession.rollback();
+        return BatchEngine.execute("batchUpdate", mapperClass.getName(), sqlSessionTemplate, mapperClass, models, batchSize, options, (sqlSession, mapper, modelList) -> {
+            for (MODEL model : modelList) {
+                updateAction.$(mapper, model);
             }
-            throw new GeneralException(e, "[${mapperName}]批量更新（或插入）异常！", mapperClass.getSimpleName());
-        } finally {
-            Close.close(sqlSession);
-        }
+        });
+    }
+
+
+    /*=====================================================================
+     **********************************************************************
+     ======================================================================
+     ******************   并行分区批量更新、插入、删除（多连接）  ******************
+     ======================================================================
+     **********************************************************************
+     =====================================================================*/
+
+    /**
+     * 并行分区批量更新、插入、删除（轮询分区，全部成功才提交）<br>
+     * 将数据轮询分配到 {@code partitions} 个分区，每个分区使用独立的 BATCH 执行器 SqlSession（独立连接），在 {@code executor} 上并行执行<br>
+     * <b>注：</b>各分区使用独立的连接及事务，不能加入调用方的 Spring 事务，在 Spring 事务中调用时抛出 {@link IllegalStateException}
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param partitions   分区数（即同时占用的连接数，不应超过连接池大小）
+     * @param executor     执行各分区的线程池
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchUpdateParallel(Class<MAPPER> mapperClass,
+                                                    Iterable<MODEL> models,
+                                                    int partitions,
+                                                    Executor executor,
+                                                    RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        batchUpdateParallel(this.sqlSessionTemplate, mapperClass, models, this.batchSize, partitions, null, executor, CommitPolicy.ALL_OR_NOTHING, updateAction);
+    }
+
+    /**
+     * 并行分区批量更新、插入、删除<br>
+     * 将数据分配到 {@code partitions} 个分区，每个分区使用独立的 BATCH 执行器 SqlSession（独立连接），在 {@code executor} 上并行执行；
+     * 同一分区内的数据按原顺序执行<br>
+     * <b>注：</b>各分区在 {@code executor} 的线程中使用独立的连接及事务，不能加入调用方的 Spring 事务（外层事务回滚时已提交的分区不会回滚），
+     * 因此在 Spring 事务中调用时抛出 {@link IllegalStateException}；需要与其他操作在同一事务中时使用 {@link #batchUpdate(Class, Iterable, RT2)}
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param partitions   分区数（即同时占用的连接数，不应超过连接池大小）
+     * @param partitionKey 分区键提取器，分区键相同的数据总是分配到同一个分区；为 {@code null} 时轮询分区
+     * @param executor     执行各分区的线程池
+     * @param commitPolicy 提交策略
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchUpdateParallel(Class<MAPPER> mapperClass,
+                                                    Iterable<MODEL> models,
+                                                    int partitions,
+                                                    Function<? super MODEL, ?> partitionKey,
+                                                    Executor executor,
+                                                    CommitPolicy commitPolicy,
+                                                    RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        batchUpdateParallel(this.sqlSessionTemplate, mapperClass, models, this.batchSize, partitions, partitionKey, executor, commitPolicy, updateAction);
+    }
+
+    /*==================================================
+     ******************   静态方法调用  ******************
+     ==================================================*/
+
+    /**
+     * 并行分区批量更新、插入、删除，详见 {@link #batchUpdateParallel(Class, Iterable, int, Function, Executor, CommitPolicy, RT2)}
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param mapperClass        mapper class
+     * @param models             需要更新或插入的实体类
+     * @param batchSize          每批次数量
+     * @param partitions         分区数（即同时占用的连接数，不应超过连接池大小）
+     * @param partitionKey       分区键提取器，分区键相同的数据总是分配到同一个分区；为 {@code null} 时轮询分区
+     * @param executor           执行各分区的线程池
+     * @param commitPolicy       提交策略
+     * @param updateAction       更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>           mapper类型
+     * @param <MODEL>            实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchUpdateParallel(SqlSessionTemplate sqlSessionTemplate,
+                                                           Class<MAPPER> mapperClass,
+                                                           Iterable<MODEL> models,
+                                                           int batchSize,
+                                                           int partitions,
+                                                           Function<? super MODEL, ?> partitionKey,
+                                                           Executor executor,
+                                                           CommitPolicy commitPolicy,
+                                                           RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkNullNPE(models, args("models"));
+        batchUpdateParallel(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, partitions, partitionKey, executor, commitPolicy, updateAction);
+    }
+
+    /**
+     * 并行分区批量更新、插入、删除，详见 {@link #batchUpdateParallel(Class, Iterable, int, Function, Executor, CommitPolicy, RT2)}
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param mapperClass        mapper class
+     * @param models             需要更新或插入的实体类
+     * @param batchSize          每批次数量
+     * @param partitions         分区数（即同时占用的连接数，不应超过连接池大小）
+     * @param partitionKey       分区键提取器，分区键相同的数据总是分配到同一个分区；为 {@code null} 时轮询分区
+     * @param executor           执行各分区的线程池
+     * @param commitPolicy       提交策略
+     * @param updateAction       更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>           mapper类型
+     * @param <MODEL>            实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchUpdateParallel(SqlSessionTemplate sqlSessionTemplate,
+                                                           Class<MAPPER> mapperClass,
+                                                           Iterator<MODEL> models,
+                                                           int batchSize,
+                                                           int partitions,
+                                                           Function<? super MODEL, ?> partitionKey,
+                                                           Executor executor,
+                                                           CommitPolicy commitPolicy,
+                                                           RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkHasNullNPE(args(sqlSessionTemplate, mapperClass, models, executor, commitPolicy, updateAction),
+                args("sqlSessionTemplate", "mapperClass", "models", "executor", "commitPolicy", "updateAction"));
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
+        checkArgument(partitions < 1, "分区数必须大于0！");
+        checkState(TransactionSynchronizationManager.isActualTransactionActive(), "[${mapperName}]并行分区批量写入使用独立的连接及事务，不能在 Spring 事务中调用！", mapperClass.getSimpleName());
 
+        new PartitionedBatch<>(sqlSessionTemplate.getSqlSessionFactory(), mapperClass, partitions, partitionKey, executor, commitPolicy, updateAction)
+                .execute(models, batchSize);
     }
 
 
@@ -239,7 +579,8 @@ public class MybatisHelper {
      */
     public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
                                                   Collection<MODEL> models) {
-        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models, this.batchSize, this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
+        checkEmpty(models, args("models"));
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
     }
 
     /**
@@ -269,7 +610,8 @@ public class MybatisHelper {
     public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
                                                   Collection<MODEL> models,
                                                   PT2<MAPPER, MODEL, Exception> performInsertCondition) {
-        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models, this.batchSize, performInsertCondition, this.insertSqlMethodName, this.updateSqlMethodName);
+        checkEmpty(models, args("models"));
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), performInsertCondition, this.insertSqlMethodName, this.updateSqlMethodName);
     }
 
     /**
@@ -313,38 +655,204 @@ public class MybatisHelper {
                                                   String updateSqlMethodName) {
         batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models, batchSize, selectSqlMethodName, insertSqlMethodName, updateSqlMethodName);
     }
-    /*==================================================
-     ******************   静态方法调用  ******************
-     ==================================================*/
 
     /**
-     * 批量更新或插入（不存在即插入，存在则更新）
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>MyBatis 的 {@link Cursor} 实现了 {@link Iterable}，也可直接传入
      *
-     * @param sqlSessionTemplate sqlSessionTemplate
-     * @param mapperClass        mapper class
-     * @param models             需要更新或插入的数据
-     * @param <MAPPER>           mapper类型
-     * @param <MODEL>            实体类型
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @since 0.2.4
      */
-    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
-                                                         Class<MAPPER> mapperClass,
-                                                         Collection<MODEL> models) {
-        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models, defaultBatchSize, defaultSelectSqlMethodName, defaultInsertSqlMethodName, defaultUpdateSqlMethodName);
+    public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                  Iterable<MODEL> models) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
     }
 
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据
+     * @param options     可选项，可为 {@code null}（传入可选项时不使用本实例的自适应批次大小）
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @return 批量操作的结果（开启 {@link BatchOptions#setIsolateFailures} 时包含失败的数据）
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> BatchUpdateResult<MODEL> batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                                      Iterable<MODEL> models,
+                                                                      BatchOptions<MODEL> options) {
+        checkNullNPE(models, args("models"));
+        return batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, options, this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
 
     /**
-     * 批量更新或插入（不存在即插入，存在则更新）
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>MyBatis 的 {@link Cursor} 实现了 {@link Iterable}，也可直接传入
+     *
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据
+     * @param batchSize   每批次数量
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                  Iterable<MODEL> models,
+                                                  int batchSize) {
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models, batchSize, this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>MyBatis 的 {@link Cursor} 实现了 {@link Iterable}，也可直接传入
      *
-     * @param sqlSessionTemplate     sqlSessionTemplate
      * @param mapperClass            mapper class
      * @param models                 需要更新或插入的数据
      * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
      * @param <MAPPER>               mapper类型
      * @param <MODEL>                实体类型
+     * @since 0.2.4
      */
-    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
-                                                         Class<MAPPER> mapperClass,
+    public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                  Iterable<MODEL> models,
+                                                  PT2<MAPPER, MODEL, Exception> performInsertCondition) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), performInsertCondition, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                  Iterator<MODEL> models) {
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models, this.batchSize, batchOptions(mapperClass.getName()), this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据
+     * @param batchSize   每批次数量
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                  Iterator<MODEL> models,
+                                                  int batchSize) {
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models, batchSize, this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                  Iterator<MODEL> models,
+                                                  PT2<MAPPER, MODEL, Exception> performInsertCondition) {
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models, this.batchSize, batchOptions(mapperClass.getName()), performInsertCondition, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>不会关闭传入的 {@link Stream}，由调用方负责关闭
+     *
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                  Stream<MODEL> models) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>不会关闭传入的 {@link Stream}，由调用方负责关闭
+     *
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据
+     * @param batchSize   每批次数量
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                  Stream<MODEL> models,
+                                                  int batchSize) {
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models, batchSize, this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>不会关闭传入的 {@link Stream}，由调用方负责关闭
+     *
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                  Stream<MODEL> models,
+                                                  PT2<MAPPER, MODEL, Exception> performInsertCondition) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), performInsertCondition, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+    /*==================================================
+     ******************   静态方法调用  ******************
+     ==================================================*/
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新）
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param mapperClass        mapper class
+     * @param models             需要更新或插入的数据
+     * @param <MAPPER>           mapper类型
+     * @param <MODEL>            实体类型
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
+                                                         Collection<MODEL> models) {
+        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models, defaultBatchSize, defaultSelectSqlMethodName, defaultInsertSqlMethodName, defaultUpdateSqlMethodName);
+    }
+
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新）
+     *
+     * @param sqlSessionTemplate     sqlSessionTemplate
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
                                                          Collection<MODEL> models,
                                                          PT2<MAPPER, MODEL, Exception> performInsertCondition) {
         batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models, defaultBatchSize, performInsertCondition, defaultInsertSqlMethodName, defaultUpdateSqlMethodName);
@@ -352,141 +860,1109 @@ public class MybatisHelper {
 
 
     /**
-     * 批量更新或插入（不存在即插入，存在则更新）
+     * 批量更新或插入（不存在即插入，存在则更新）
+     *
+     * @param sqlSessionTemplate     sqlSessionTemplate
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param batchSize              每批次数量
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param insertSqlMethodName    插入SQL方法名
+     * @param updateSqlMethodName    更新SQL方法名
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
+                                                         Collection<MODEL> models,
+                                                         int batchSize,
+                                                         PT2<MAPPER, MODEL, Exception> performInsertCondition,
+                                                         String insertSqlMethodName,
+                                                         String updateSqlMethodName) {
+        checkEmpty(models, args("models"));
+        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, performInsertCondition, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新）
+     *
+     * @param sqlSessionTemplate  sqlSessionTemplate
+     * @param mapperClass         mapper class
+     * @param models              需要更新或插入的数据
+     * @param batchSize           每批次数量
+     * @param selectSqlMethodName 按条件查询的SQL方法名
+     * @param insertSqlMethodName 插入SQL方法名
+     * @param updateSqlMethodName 更新SQL方法名
+     * @param <MAPPER>            mapper类型
+     * @param <MODEL>             实体类型
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
+                                                         Collection<MODEL> models,
+                                                         int batchSize,
+                                                         String selectSqlMethodName,
+                                                         String insertSqlMethodName,
+                                                         String updateSqlMethodName) {
+        checkEmpty(models, args("models"));
+        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, selectSqlMethodName, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>MyBatis 的 {@link Cursor} 实现了 {@link Iterable}，也可直接传入
+     *
+     * @param sqlSessionTemplate     sqlSessionTemplate
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param batchSize              每批次数量
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param insertSqlMethodName    插入SQL方法名
+     * @param updateSqlMethodName    更新SQL方法名
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
+                                                         Iterable<MODEL> models,
+                                                         int batchSize,
+                                                         PT2<MAPPER, MODEL, Exception> performInsertCondition,
+                                                         String insertSqlMethodName,
+                                                         String updateSqlMethodName) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, performInsertCondition, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>MyBatis 的 {@link Cursor} 实现了 {@link Iterable}，也可直接传入
+     *
+     * @param sqlSessionTemplate  sqlSessionTemplate
+     * @param mapperClass         mapper class
+     * @param models              需要更新或插入的数据
+     * @param batchSize           每批次数量
+     * @param selectSqlMethodName 按条件查询的SQL方法名
+     * @param insertSqlMethodName 插入SQL方法名
+     * @param updateSqlMethodName 更新SQL方法名
+     * @param <MAPPER>            mapper类型
+     * @param <MODEL>             实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
+                                                         Iterable<MODEL> models,
+                                                         int batchSize,
+                                                         String selectSqlMethodName,
+                                                         String insertSqlMethodName,
+                                                         String updateSqlMethodName) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, selectSqlMethodName, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>不会关闭传入的 {@link Stream}，由调用方负责关闭
+     *
+     * @param sqlSessionTemplate     sqlSessionTemplate
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param batchSize              每批次数量
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param insertSqlMethodName    插入SQL方法名
+     * @param updateSqlMethodName    更新SQL方法名
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
+                                                         Stream<MODEL> models,
+                                                         int batchSize,
+                                                         PT2<MAPPER, MODEL, Exception> performInsertCondition,
+                                                         String insertSqlMethodName,
+                                                         String updateSqlMethodName) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, performInsertCondition, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）<br>
+     * <b>注：</b>不会关闭传入的 {@link Stream}，由调用方负责关闭
+     *
+     * @param sqlSessionTemplate  sqlSessionTemplate
+     * @param mapperClass         mapper class
+     * @param models              需要更新或插入的数据
+     * @param batchSize           每批次数量
+     * @param selectSqlMethodName 按条件查询的SQL方法名
+     * @param insertSqlMethodName 插入SQL方法名
+     * @param updateSqlMethodName 更新SQL方法名
+     * @param <MAPPER>            mapper类型
+     * @param <MODEL>             实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
+                                                         Stream<MODEL> models,
+                                                         int batchSize,
+                                                         String selectSqlMethodName,
+                                                         String insertSqlMethodName,
+                                                         String updateSqlMethodName) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, selectSqlMethodName, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param sqlSessionTemplate     sqlSessionTemplate
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param batchSize              每批次数量
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param insertSqlMethodName    插入SQL方法名
+     * @param updateSqlMethodName    更新SQL方法名
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
+                                                         Iterator<MODEL> models,
+                                                         int batchSize,
+                                                         PT2<MAPPER, MODEL, Exception> performInsertCondition,
+                                                         String insertSqlMethodName,
+                                                         String updateSqlMethodName) {
+        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models, batchSize, null, performInsertCondition, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param sqlSessionTemplate     sqlSessionTemplate
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param batchSize              每批次数量
+     * @param options                可选项，可为 {@code null}
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param insertSqlMethodName    插入SQL方法名
+     * @param updateSqlMethodName    更新SQL方法名
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     * @return 批量操作的结果（开启 {@link BatchOptions#setIsolateFailures} 时包含失败的数据）
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> BatchUpdateResult<MODEL> batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                                             Class<MAPPER> mapperClass,
+                                                                             Iterator<MODEL> models,
+                                                                             int batchSize,
+                                                                             BatchOptions<MODEL> options,
+                                                                             PT2<MAPPER, MODEL, Exception> performInsertCondition,
+                                                                             String insertSqlMethodName,
+                                                                             String updateSqlMethodName) {
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
+        checkHasBlank(args(insertSqlMethodName, updateSqlMethodName), args("insertSqlMethodName", "updateSqlMethodName"));
+        checkHasNullNPE(args(sqlSessionTemplate, mapperClass, models, performInsertCondition), args("sqlSessionTemplate", "mapperClass", "models", "performInsertCondition"));
+
+        return _batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models, batchSize, options, performInsertCondition, null, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param sqlSessionTemplate  sqlSessionTemplate
+     * @param mapperClass         mapper class
+     * @param models              需要更新或插入的数据
+     * @param batchSize           每批次数量
+     * @param selectSqlMethodName 按条件查询的SQL方法名
+     * @param insertSqlMethodName 插入SQL方法名
+     * @param updateSqlMethodName 更新SQL方法名
+     * @param <MAPPER>            mapper类型
+     * @param <MODEL>             实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                         Class<MAPPER> mapperClass,
+                                                         Iterator<MODEL> models,
+                                                         int batchSize,
+                                                         String selectSqlMethodName,
+                                                         String insertSqlMethodName,
+                                                         String updateSqlMethodName) {
+        batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models, batchSize, null, selectSqlMethodName, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新。流式分批，不复制数据源，内存中最多只保留一个批次的数据）
+     *
+     * @param sqlSessionTemplate  sqlSessionTemplate
+     * @param mapperClass         mapper class
+     * @param models              需要更新或插入的数据
+     * @param batchSize           每批次数量
+     * @param options             可选项，可为 {@code null}
+     * @param selectSqlMethodName 按条件查询的SQL方法名
+     * @param insertSqlMethodName 插入SQL方法名
+     * @param updateSqlMethodName 更新SQL方法名
+     * @param <MAPPER>            mapper类型
+     * @param <MODEL>             实体类型
+     * @return 批量操作的结果（开启 {@link BatchOptions#setIsolateFailures} 时包含失败的数据）
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> BatchUpdateResult<MODEL> batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                                             Class<MAPPER> mapperClass,
+                                                                             Iterator<MODEL> models,
+                                                                             int batchSize,
+                                                                             BatchOptions<MODEL> options,
+                                                                             String selectSqlMethodName,
+                                                                             String insertSqlMethodName,
+                                                                             String updateSqlMethodName) {
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
+        checkHasNullNPE(args(sqlSessionTemplate, mapperClass, models), args("sqlSessionTemplate", "mapperClass", "models"));
+        checkHasBlank(args(selectSqlMethodName, insertSqlMethodName, updateSqlMethodName), args("selectSqlMethodName", "insertSqlMethodName", "updateSqlMethodName"));
+
+        return _batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models, batchSize, options, null, selectSqlMethodName, insertSqlMethodName, updateSqlMethodName);
+    }
+
+
+    private static <MAPPER, MODEL> BatchUpdateResult<MODEL> _batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
+                                                                               Class<MAPPER> mapperClass,
+                                                                               Iterator<MODEL> models,
+                                                                               int batchSize,
+                                                                               BatchOptions<MODEL> options,
+                                                                               PT2<MAPPER, MODEL, Exception> performInsertCondition,
+                                                                               String selectSqlMethodName,
+                                                                               String insertSqlMethodName,
+                                                                               String updateSqlMethodName) {
+        // 执行第一条SQL之前即校验所有SQL语句，不再逐批拼接 statement id
+        final MapperStatements statements = MapperStatements.of(sqlSessionTemplate.getConfiguration(), mapperClass);
+        final String selectSql = performInsertCondition == null ? statements.id(selectSqlMethodName) : null;
+        final String updateSql = statements.id(updateSqlMethodName);
+        final String insertSql = statements.id(insertSqlMethodName);
+
+        return BatchEngine.execute("batchSaveOrUpdate", mapperClass.getName(), sqlSessionTemplate, mapperClass, models, batchSize, options, (sqlSession, mapper, modelList) -> {
+            PT2<MAPPER, MODEL, Exception> insertCondition = performInsertCondition == null ?
+                    (m, model) -> G.isEmpty(sqlSession.selectList(selectSql, model))
+                    : performInsertCondition;
+
+            for (MODEL model : modelList) {
+                boolean notExists = insertCondition.$(mapper, model);
+                if (notExists) {
+                    sqlSession.insert(insertSql, model);
+                } else {
+                    sqlSession.update(updateSql, model);
+                }
+            }
+        });
+    }
+
+    /*===========================================================================
+     ****************************************************************************
+     ============================================================================
+     ******************   批量更新或插入（按主键集合批量判断是否存在）  ******************
+     ============================================================================
+     ****************************************************************************
+     ===========================================================================*/
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新）<br>
+     * 每批次只执行一次按主键集合查询的SQL（默认：{@code selectByIds}）来判断哪些数据已存在，而不是每条数据执行一次查询。<br>
+     * 查询SQL的参数为主键集合，可通过 {@code list}、{@code collection} 或 {@code ids} 引用，如：
+     * {@code <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>}，
+     * 查询结果需能通过 {@code keyExtractor} 提取出主键
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的数据
+     * @param keyExtractor 主键提取器，如：（{@code User::getId}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchSaveOrUpdateByKey(Class<MAPPER> mapperClass,
+                                                       Iterable<MODEL> models,
+                                                       Function<? super MODEL, ?> keyExtractor) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdateByKey(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, batchOptions(mapperClass.getName()), keyExtractor, this.selectByIdsSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新）<br>
+     * 每批次只执行一次按主键集合查询的SQL（默认：{@code selectByIds}）来判断哪些数据已存在，而不是每条数据执行一次查询。<br>
+     * 查询SQL的参数为主键集合，可通过 {@code list}、{@code collection} 或 {@code ids} 引用，如：
+     * {@code <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>}，
+     * 查询结果需能通过 {@code keyExtractor} 提取出主键
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的数据
+     * @param batchSize    每批次数量
+     * @param keyExtractor 主键提取器，如：（{@code User::getId}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> void batchSaveOrUpdateByKey(Class<MAPPER> mapperClass,
+                                                       Iterable<MODEL> models,
+                                                       int batchSize,
+                                                       Function<? super MODEL, ?> keyExtractor) {
+        batchSaveOrUpdateByKey(this.sqlSessionTemplate, mapperClass, models, batchSize, keyExtractor, this.selectByIdsSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
+    }
+
+    /*==================================================
+     ******************   静态方法调用  ******************
+     ==================================================*/
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新）<br>
+     * 每批次只执行一次按主键集合查询的SQL来判断哪些数据已存在，详见 {@link #batchSaveOrUpdateByKey(Class, Iterable, Function)}
+     *
+     * @param sqlSessionTemplate       sqlSessionTemplate
+     * @param mapperClass              mapper class
+     * @param models                   需要更新或插入的数据
+     * @param batchSize                每批次数量
+     * @param keyExtractor             主键提取器，如：（{@code User::getId}）
+     * @param selectByIdsSqlMethodName 按主键集合查询的SQL方法名
+     * @param insertSqlMethodName      插入SQL方法名
+     * @param updateSqlMethodName      更新SQL方法名
+     * @param <MAPPER>                 mapper类型
+     * @param <MODEL>                  实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdateByKey(SqlSessionTemplate sqlSessionTemplate,
+                                                              Class<MAPPER> mapperClass,
+                                                              Iterable<MODEL> models,
+                                                              int batchSize,
+                                                              Function<? super MODEL, ?> keyExtractor,
+                                                              String selectByIdsSqlMethodName,
+                                                              String insertSqlMethodName,
+                                                              String updateSqlMethodName) {
+        checkNullNPE(models, args("models"));
+        batchSaveOrUpdateByKey(sqlSessionTemplate, mapperClass, models.iterator(), batchSize, keyExtractor, selectByIdsSqlMethodName, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新）<br>
+     * 每批次只执行一次按主键集合查询的SQL来判断哪些数据已存在，详见 {@link #batchSaveOrUpdateByKey(Class, Iterable, Function)}
+     *
+     * @param sqlSessionTemplate       sqlSessionTemplate
+     * @param mapperClass              mapper class
+     * @param models                   需要更新或插入的数据
+     * @param batchSize                每批次数量
+     * @param keyExtractor             主键提取器，如：（{@code User::getId}）
+     * @param selectByIdsSqlMethodName 按主键集合查询的SQL方法名
+     * @param insertSqlMethodName      插入SQL方法名
+     * @param updateSqlMethodName      更新SQL方法名
+     * @param <MAPPER>                 mapper类型
+     * @param <MODEL>                  实体类型
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> void batchSaveOrUpdateByKey(SqlSessionTemplate sqlSessionTemplate,
+                                                              Class<MAPPER> mapperClass,
+                                                              Iterator<MODEL> models,
+                                                              int batchSize,
+                                                              Function<? super MODEL, ?> keyExtractor,
+                                                              String selectByIdsSqlMethodName,
+                                                              String insertSqlMethodName,
+                                                              String updateSqlMethodName) {
+        batchSaveOrUpdateByKey(sqlSessionTemplate, mapperClass, models, batchSize, null, keyExtractor, selectByIdsSqlMethodName, insertSqlMethodName, updateSqlMethodName);
+    }
+
+    /**
+     * 批量更新或插入（不存在即插入，存在则更新）<br>
+     * 每批次只执行一次按主键集合查询的SQL来判断哪些数据已存在，详见 {@link #batchSaveOrUpdateByKey(Class, Iterable, Function)}
+     *
+     * @param sqlSessionTemplate       sqlSessionTemplate
+     * @param mapperClass              mapper class
+     * @param models                   需要更新或插入的数据
+     * @param batchSize                每批次数量
+     * @param options                  可选项，可为 {@code null}
+     * @param keyExtractor             主键提取器，如：（{@code User::getId}）
+     * @param selectByIdsSqlMethodName 按主键集合查询的SQL方法名
+     * @param insertSqlMethodName      插入SQL方法名
+     * @param updateSqlMethodName      更新SQL方法名
+     * @param <MAPPER>                 mapper类型
+     * @param <MODEL>                  实体类型
+     * @return 批量操作的结果（开启 {@link BatchOptions#setIsolateFailures} 时包含失败的数据）
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> BatchUpdateResult<MODEL> batchSaveOrUpdateByKey(SqlSessionTemplate sqlSessionTemplate,
+                                                                                  Class<MAPPER> mapperClass,
+                                                                                  Iterator<MODEL> models,
+                                                                                  int batchSize,
+                                                                                  BatchOptions<MODEL> options,
+                                                                                  Function<? super MODEL, ?> keyExtractor,
+                                                                                  String selectByIdsSqlMethodName,
+                                                                                  String insertSqlMethodName,
+                                                                                  String updateSqlMethodName) {
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
+        checkHasNullNPE(args(sqlSessionTemplate, mapperClass, models, keyExtractor), args("sqlSessionTemplate", "mapperClass", "models", "keyExtractor"));
+        checkHasBlank(args(selectByIdsSqlMethodName, insertSqlMethodName, updateSqlMethodName), args("selectByIdsSqlMethodName", "insertSqlMethodName", "updateSqlMethodName"));
+
+        final MapperStatements statements = MapperStatements.of(sqlSessionTemplate.getConfiguration(), mapperClass);
+        final String selectByIdsSql = statements.id(selectByIdsSqlMethodName);
+        final String updateSql = statements.id(updateSqlMethodName);
+        final String insertSql = statements.id(insertSqlMethodName);
+
+        return BatchEngine.execute("batchSaveOrUpdateByKey", mapperClass.getName(), sqlSessionTemplate, mapperClass, models, batchSize, options, (sqlSession, mapper, modelList) -> {
+            List<Object> keys = new ArrayList<>(modelList.size());
+            for (MODEL model : modelList) {
+                Object key = keyExtractor.apply(model);
+                if (key != null) keys.add(key);
+            }
+
+            Set<Object> existingKeys = new HashSet<>();
+            if (!keys.isEmpty()) {
+                List<MODEL> existingModels = sqlSession.selectList(selectByIdsSql, keysParam(keys));
+                for (MODEL existingModel : existingModels) {
+                    existingKeys.add(keyExtractor.apply(existingModel));
+                }
+            }
+
+            for (MODEL model : modelList) {
+                Object key = keyExtractor.apply(model);
+                // 插入后即将主键标记为已存在，同一批次中重复的主键会走更新，避免重复插入
+                if (key == null || existingKeys.add(key)) {
+                    sqlSession.insert(insertSql, model);
+                } else {
+                    sqlSession.update(updateSql, model);
+                }
+            }
+        });
+    }
+
+    /**
+     * 构建按主键集合查询SQL的参数，可通过 {@code list}、{@code collection} 或 {@code ids} 引用主键集合
+     *
+     * @param keys 主键集合
+     * @return 查询参数
+     */
+    private static MapperMethod.ParamMap<Object> keysParam(List<Object> keys) {
+        MapperMethod.ParamMap<Object> paramMap = new MapperMethod.ParamMap<>();
+        paramMap.put("ids", keys);
+        paramMap.put("list", keys);
+        paramMap.put("collection", keys);
+        paramMap.put("param1", keys);
+        return paramMap;
+    }
+
+    /*==================================================================================
+     ***********************************************************************************
+     ===================================================================================
+     ******************   批量 upsert（原生多行SQL，有则更新，无则插入，无需查询）  ******************
+     ===================================================================================
+     ***********************************************************************************
+     ==================================================================================*/
+
+    /**
+     * 批量 upsert（有则更新，无则插入）<br>
+     * 每批次只执行一条多行SQL（MySQL：{@code INSERT ... ON DUPLICATE KEY UPDATE}；PostgreSQL：{@code INSERT ... ON CONFLICT}；
+     * H2/Oracle：{@code MERGE}），不需要先查询数据是否存在。方言未指定时根据数据源的元数据自动识别。<br>
+     * <b>注：</b>PostgreSQL、Oracle 不允许同一条语句多次更新同一行，同一批次中主键重复的数据只保留最后出现的一条
+     *
+     * @param tableMapping 表映射
+     * @param models       需要更新或插入的数据
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MODEL> void batchUpsert(TableMapping<MODEL> tableMapping,
+                                    Iterable<MODEL> models) {
+        checkNullNPE(models, args("models"));
+        batchUpsert(this.sqlSessionTemplate, tableMapping, models.iterator(), this.batchSize, batchOptions(tableMapping.getTable()), this.dialect);
+    }
+
+    /**
+     * 批量 upsert（有则更新，无则插入），详见 {@link #batchUpsert(TableMapping, Iterable)}
+     *
+     * @param tableMapping 表映射
+     * @param models       需要更新或插入的数据
+     * @param batchSize    每批次数量
+     * @param <MODEL>      实体类型
+     * @since 0.2.4
+     */
+    public <MODEL> void batchUpsert(TableMapping<MODEL> tableMapping,
+                                    Iterable<MODEL> models,
+                                    int batchSize) {
+        batchUpsert(this.sqlSessionTemplate, tableMapping, models, batchSize, this.dialect);
+    }
+
+    /*==================================================
+     ******************   静态方法调用  ******************
+     ==================================================*/
+
+    /**
+     * 批量 upsert（有则更新，无则插入），详见 {@link #batchUpsert(TableMapping, Iterable)}
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param tableMapping       表映射
+     * @param models             需要更新或插入的数据
+     * @param batchSize          每批次数量
+     * @param dialect            数据库方言，为 {@code null} 时根据数据源的元数据自动识别
+     * @param <MODEL>            实体类型
+     * @since 0.2.4
+     */
+    public static <MODEL> void batchUpsert(SqlSessionTemplate sqlSessionTemplate,
+                                           TableMapping<MODEL> tableMapping,
+                                           Iterable<MODEL> models,
+                                           int batchSize,
+                                           Dialect dialect) {
+        checkNullNPE(models, args("models"));
+        batchUpsert(sqlSessionTemplate, tableMapping, models.iterator(), batchSize, dialect);
+    }
+
+    /**
+     * 批量 upsert（有则更新，无则插入），详见 {@link #batchUpsert(TableMapping, Iterable)}
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param tableMapping       表映射
+     * @param models             需要更新或插入的数据
+     * @param batchSize          每批次数量
+     * @param dialect            数据库方言，为 {@code null} 时根据数据源的元数据自动识别
+     * @param <MODEL>            实体类型
+     * @since 0.2.4
+     */
+    public static <MODEL> void batchUpsert(SqlSessionTemplate sqlSessionTemplate,
+                                           TableMapping<MODEL> tableMapping,
+                                           Iterator<MODEL> models,
+                                           int batchSize,
+                                           Dialect dialect) {
+        batchUpsert(sqlSessionTemplate, tableMapping, models, batchSize, null, dialect);
+    }
+
+    /**
+     * 批量 upsert（有则更新，无则插入），详见 {@link #batchUpsert(TableMapping, Iterable)}
      *
-     * @param sqlSessionTemplate     sqlSessionTemplate
-     * @param mapperClass            mapper class
-     * @param models                 需要更新或插入的数据
-     * @param batchSize              每批次数量
-     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
-     * @param insertSqlMethodName    插入SQL方法名
-     * @param updateSqlMethodName    更新SQL方法名
-     * @param <MAPPER>               mapper类型
-     * @param <MODEL>                实体类型
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param tableMapping       表映射
+     * @param models             需要更新或插入的数据
+     * @param batchSize          每批次数量
+     * @param options            可选项，可为 {@code null}
+     * @param dialect            数据库方言，为 {@code null} 时根据数据源的元数据自动识别
+     * @param <MODEL>            实体类型
+     * @return 批量操作的结果（开启 {@link BatchOptions#setIsolateFailures} 时包含失败的数据）
+     * @since 0.2.4
      */
-    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
-                                                         Class<MAPPER> mapperClass,
-                                                         Collection<MODEL> models,
-                                                         int batchSize,
-                                                         PT2<MAPPER, MODEL, Exception> performInsertCondition,
-                                                         String insertSqlMethodName,
-                                                         String updateSqlMethodName) {
-        checkEmpty(models, args("models"));
-        checkArgument(defaultBatchSize < 1, "批量大小必须大于0！");
-        checkHasBlank(args(insertSqlMethodName, updateSqlMethodName), args("insertSqlMethodName", "updateSqlMethodName"));
-        checkHasNullNPE(args(sqlSessionTemplate, mapperClass, performInsertCondition), args("sqlSessionTemplate", "mapperClass", "performInsertCondition"));
+    public static <MODEL> BatchUpdateResult<MODEL> batchUpsert(SqlSessionTemplate sqlSessionTemplate,
+                                                               TableMapping<MODEL> tableMapping,
+                                                               Iterator<MODEL> models,
+                                                               int batchSize,
+                                                               BatchOptions<MODEL> options,
+                                                               Dialect dialect) {
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
+        checkHasNullNPE(args(sqlSessionTemplate, tableMapping, models), args("sqlSessionTemplate", "tableMapping", "models"));
+        checkEmpty(tableMapping.getKeyColumns(), args("tableMapping.keyColumns"));
 
-        _batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models, batchSize, performInsertCondition, null, insertSqlMethodName, updateSqlMethodName);
+        final SqlSessionFactory sqlSessionFactory = sqlSessionTemplate.getSqlSessionFactory();
+        return BatchEngine.execute("batchUpsert", tableMapping.getTable(), sqlSessionTemplate, null, models, batchSize, options, (sqlSession, mapper, modelList) -> {
+            Connection connection = sqlSession.getConnection();
+            Dialect upsertDialect = dialect == null ? Dialect.of(sqlSessionFactory, connection) : dialect;
+            if (upsertDialect == null) {
+                throw new GeneralException("不支持的数据库：[${databaseProductName}]，请指定方言！", connection.getMetaData().getDatabaseProductName());
+            }
+
+            List<MODEL> upsertList = new ArrayList<>(modelList);
+            BatchEngine.coalesce(upsertList, tableMapping::key, null);
+            for (int from = 0, size; from < upsertList.size(); from += size) {
+                size = upsertDialect.rowsPerStatement(tableMapping, upsertList.size() - from);
+                List<MODEL> rows = upsertList.subList(from, from + size);
+                try (PreparedStatement statement = connection.prepareStatement(upsertDialect.upsertSql(tableMapping, size))) {
+                    int index = 1;
+                    for (MODEL model : rows) {
+                        for (Object value : tableMapping.values(model)) {
+                            statement.setObject(index++, value);
+                        }
+                    }
+                    statement.executeUpdate();
+                }
+            }
+        });
     }
 
+    /*=====================================================================
+     **********************************************************************
+     ======================================================================
+     ******************   批量更新变化的字段（只更新与快照相比变化的列）  ******************
+     ======================================================================
+     **********************************************************************
+     =====================================================================*/
+
     /**
-     * 批量更新或插入（不存在即插入，存在则更新）
+     * 批量更新变化的字段：将每条数据与快照（修改前的数据）逐列比较，只生成更新变化列的 UPDATE SQL（{@link TableMapping#updateSql(List)}），
+     * 变化的列相同的数据使用同一条预编译SQL批量执行，没有变化的数据不更新<br>
+     * 适用于宽表中只修改了少数字段的场景，可减少 redo/binlog、主从复制的数据量及触发器的开销<br>
+     * <b>注：</b>快照为 {@code null} 时更新所有非主键列；列值通过 {@link java.util.Objects#equals} 比较，快照与实体的字段类型需一致
      *
-     * @param sqlSessionTemplate  sqlSessionTemplate
-     * @param mapperClass         mapper class
-     * @param models              需要更新或插入的数据
-     * @param batchSize           每批次数量
-     * @param selectSqlMethodName 按条件查询的SQL方法名
-     * @param insertSqlMethodName 插入SQL方法名
-     * @param updateSqlMethodName 更新SQL方法名
-     * @param <MAPPER>            mapper类型
-     * @param <MODEL>             实体类型
+     * @param tableMapping 表映射（需指定主键列）
+     * @param models       需要更新的数据
+     * @param snapshots    快照提取器，返回数据修改前的快照，如：（{@code user -> originals.get(user.getId())}）
+     * @param <MODEL>      实体类型
+     * @return 批量操作的结果
+     * @since 0.2.4
      */
-    public static <MAPPER, MODEL> void batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
-                                                         Class<MAPPER> mapperClass,
-                                                         Collection<MODEL> models,
-                                                         int batchSize,
-                                                         String selectSqlMethodName,
-                                                         String insertSqlMethodName,
-                                                         String updateSqlMethodName) {
-        checkEmpty(models, args("models"));
-        checkArgument(defaultBatchSize < 1, "批量大小必须大于0！");
+    public <MODEL> BatchUpdateResult<MODEL> batchUpdateChanged(TableMapping<MODEL> tableMapping,
+                                                               Iterable<MODEL> models,
+                                                               Function<? super MODEL, ? extends MODEL> snapshots) {
+        checkHasNullNPE(args(tableMapping, models), args("tableMapping", "models"));
+        return batchUpdateChanged(this.sqlSessionTemplate, tableMapping, models.iterator(), this.batchSize, batchOptions(tableMapping.getTable()), snapshots);
+    }
+
+    /**
+     * 批量更新变化的字段：每批次执行一次按主键集合查询的SQL（{@link #getSelectByIdsSqlMethodName()}）获取快照，
+     * 只更新与快照相比变化的列，详见 {@link #batchUpdateChanged(TableMapping, Iterable, Function)}<br>
+     * 单列主键时查询参数为主键值的集合，联合主键时为按主键列顺序组成的 {@link List} 的集合，可通过 {@code list}、{@code collection} 或 {@code ids} 引用
+     *
+     * @param mapperClass  mapper class
+     * @param tableMapping 表映射（需指定主键列）
+     * @param models       需要更新的数据
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @return 批量操作的结果
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> BatchUpdateResult<MODEL> batchUpdateChanged(Class<MAPPER> mapperClass,
+                                                                       TableMapping<MODEL> tableMapping,
+                                                                       Iterable<MODEL> models) {
+        checkHasNullNPE(args(tableMapping, models), args("tableMapping", "models"));
+        return batchUpdateChanged(this.sqlSessionTemplate, mapperClass, tableMapping, models.iterator(), this.batchSize, batchOptions(tableMapping.getTable()), this.selectByIdsSqlMethodName);
+    }
+
+    /*==================================================
+     ******************   静态方法调用  ******************
+     ==================================================*/
+
+    /**
+     * 批量更新变化的字段，详见 {@link #batchUpdateChanged(TableMapping, Iterable, Function)}
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param tableMapping       表映射（需指定主键列）
+     * @param models             需要更新的数据
+     * @param batchSize          每批次数量
+     * @param options            可选项，可为 {@code null}
+     * @param snapshots          快照提取器，返回数据修改前的快照
+     * @param <MODEL>            实体类型
+     * @return 批量操作的结果
+     * @since 0.2.4
+     */
+    public static <MODEL> BatchUpdateResult<MODEL> batchUpdateChanged(SqlSessionTemplate sqlSessionTemplate,
+                                                                      TableMapping<MODEL> tableMapping,
+                                                                      Iterator<MODEL> models,
+                                                                      int batchSize,
+                                                                      BatchOptions<MODEL> options,
+                                                                      Function<? super MODEL, ? extends MODEL> snapshots) {
+        checkNullNPE(snapshots, args("snapshots"));
+        return _batchUpdateChanged(sqlSessionTemplate, tableMapping, models, batchSize, options, (sqlSession, modelList) -> snapshots);
+    }
+
+    /**
+     * 批量更新变化的字段（每批次按主键集合查询快照），详见 {@link #batchUpdateChanged(Class, TableMapping, Iterable)}
+     *
+     * @param sqlSessionTemplate       sqlSessionTemplate
+     * @param mapperClass              mapper class
+     * @param tableMapping             表映射（需指定主键列）
+     * @param models                   需要更新的数据
+     * @param batchSize                每批次数量
+     * @param options                  可选项，可为 {@code null}
+     * @param selectByIdsSqlMethodName 按主键集合查询的SQL方法名
+     * @param <MAPPER>                 mapper类型
+     * @param <MODEL>                  实体类型
+     * @return 批量操作的结果
+     * @since 0.2.4
+     */
+    public static <MAPPER, MODEL> BatchUpdateResult<MODEL> batchUpdateChanged(SqlSessionTemplate sqlSessionTemplate,
+                                                                              Class<MAPPER> mapperClass,
+                                                                              TableMapping<MODEL> tableMapping,
+                                                                              Iterator<MODEL> models,
+                                                                              int batchSize,
+                                                                              BatchOptions<MODEL> options,
+                                                                              String selectByIdsSqlMethodName) {
         checkHasNullNPE(args(sqlSessionTemplate, mapperClass), args("sqlSessionTemplate", "mapperClass"));
-        checkHasBlank(args(selectSqlMethodName, insertSqlMethodName, updateSqlMethodName), args("selectSqlMethodName", "insertSqlMethodName", "updateSqlMethodName"));
+        checkBlank(selectByIdsSqlMethodName, args("selectByIdsSqlMethodName"));
 
-        _batchSaveOrUpdate(sqlSessionTemplate, mapperClass, models, batchSize, null, selectSqlMethodName, insertSqlMethodName, updateSqlMethodName);
+        final String selectByIdsSql = MapperStatements.of(sqlSessionTemplate.getConfiguration(), mapperClass).id(selectByIdsSqlMethodName);
+        return _batchUpdateChanged(sqlSessionTemplate, tableMapping, models, batchSize, options, (sqlSession, modelList) -> {
+            List<Object> keys = new ArrayList<>(modelList.size());
+            for (MODEL model : modelList) {
+                keys.add(tableMapping.key(model));
+            }
+
+            Map<Object, MODEL> snapshots = new HashMap<>();
+            List<MODEL> existingModels = sqlSession.selectList(selectByIdsSql, keysParam(keys));
+            for (MODEL existingModel : existingModels) {
+                snapshots.put(tableMapping.key(existingModel), existingModel);
+            }
+            return model -> snapshots.get(tableMapping.key(model));
+        });
     }
 
+    private static <MODEL> BatchUpdateResult<MODEL> _batchUpdateChanged(SqlSessionTemplate sqlSessionTemplate,
+                                                                        TableMapping<MODEL> tableMapping,
+                                                                        Iterator<MODEL> models,
+                                                                        int batchSize,
+                                                                        BatchOptions<MODEL> options,
+                                                                        RT2<SqlSession, List<MODEL>, Function<? super MODEL, ? extends MODEL>, Exception> snapshotLoader) {
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
+        checkHasNullNPE(args(sqlSessionTemplate, tableMapping, models), args("sqlSessionTemplate", "tableMapping", "models"));
+        checkEmpty(tableMapping.getKeyColumns(), args("tableMapping.keyColumns"));
 
-    private static <MAPPER, MODEL> void _batchSaveOrUpdate(SqlSessionTemplate sqlSessionTemplate,
-                                                           Class<MAPPER> mapperClass,
-                                                           Collection<MODEL> models,
-                                                           int batchSize,
-                                                           PT2<MAPPER, MODEL, Exception> performInsertCondition,
-                                                           String selectSqlMethodName,
-                                                           String insertSqlMethodName,
-                                                           String updateSqlMethodName) {
-        final String selectSql = mapperClass.getName() + "." + selectSqlMethodName;
-        final String updateSql = mapperClass.getName() + "." + updateSqlMethodName;
-        final String insertSql = mapperClass.getName() + "." + insertSqlMethodName;
-        final SqlSession sqlSession = getSqlSession(sqlSessionTemplate.getSqlSessionFactory());
-
-        PT2<MAPPER, MODEL, Exception> insertCondition = performInsertCondition == null ?
-                (mapper, model) -> G.isEmpty(sqlSession.selectList(selectSql, model))
-                : performInsertCondition;
-
-        final String logId = TimedID.getId();
-        Stopwatch stopwatch = Stopwatch.run();
-        long processedCount = 0;
-        long printLogCount = 0;
-        try {
-            MAPPER mapper = sqlSession.getMapper(mapperClass);
-            List<List<MODEL>> modelLists = CollectionKit.divide(new ArrayList<>(models), batchSize);
-            for (List<MODEL> modelList : modelLists) {
-                for (MODEL model : modelList) {
-                    boolean notExists = insertCondition.$(mapper, model);
-                    if (notExists) {
-                        sqlSession.insert(insertSql, model);
-                    } else {
-                        sqlSession.update(updateSql, model);
-                    }
-                }
-                sqlSession.flushStatements();
-                sqlSession.clearCache();
-
-                processedCount += modelList.size();
-                printLogCount += modelList.size();
-                if (printLogCount >= defaultPrintLogBatchSize) {
-                    printLogCount = 0;
-                    log.debug("batchSaveOrUpdate_logId：{}，mapperClass：{}，正在处理……已处理数据量：{}", logId, mapperClass.getSimpleName(), processedCount);
+        final Map<String, Function<? super MODEL, ?>> columns = tableMapping.getColumns();
+        final List<String> keyColumns = tableMapping.getKeyColumns();
+        return BatchEngine.execute("batchUpdateChanged", tableMapping.getTable(), sqlSessionTemplate, null, models, batchSize, options, (sqlSession, mapper, modelList) -> {
+            Function<? super MODEL, ? extends MODEL> snapshots = snapshotLoader.$(sqlSession, modelList);
+            // 按变化的列分组，每组使用同一条预编译SQL
+            Map<List<String>, List<MODEL>> groups = new LinkedHashMap<>();
+            for (MODEL model : modelList) {
+                List<String> changedColumns = tableMapping.changedColumns(model, snapshots.apply(model));
+                if (!changedColumns.isEmpty()) {
+                    groups.computeIfAbsent(changedColumns, k -> new ArrayList<>()).add(model);
                 }
             }
 
-            sqlSession.commit();
-            log.debug("batchSaveOrUpdate_logId：{}，mapperClass：{}，处理完成。处理数据量：{}。耗时：{}", logId, mapperClass.getSimpleName(), processedCount, stopwatch);
-        } catch (Throwable e) {
-            log.debug("batchSaveOrUpdate_logId：{}，mapperClass：{}，处理失败，失败原因：{}，已处理数据量：{}", logId, mapperClass.getSimpleName(), e.getMessage(), processedCount);
-            if (sqlSession != null) {
-                sqlSession.rollback();
+            Connection connection = sqlSession.getConnection();
+            for (Map.Entry<List<String>, List<MODEL>> group : groups.entrySet()) {
+                List<String> setColumns = group.getKey();
+                try (PreparedStatement statement = connection.prepareStatement(tableMapping.updateSql(setColumns))) {
+                    for (MODEL model : group.getValue()) {
+                        int index = 1;
+                        for (String column : setColumns) {
+                            statement.setObject(index++, columns.get(column).apply(model));
+                        }
+                        for (String keyColumn : keyColumns) {
+                            statement.setObject(index++, columns.get(keyColumn).apply(model));
+                        }
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
             }
-            throw new GeneralException(e, "[${mapperName}]批量更新（或插入）异常！", mapperClass.getSimpleName());
-        } finally {
-            Close.close(sqlSession);
-        }
+        });
     }
 
-    private static SqlSession getSqlSession(SqlSessionFactory sqlSessionFactory) {
-        boolean transaction = false;
-        try {
-            SqlSessionHolder sqlSessionHolder = (SqlSessionHolder) TransactionSynchronizationManager.getResource(sqlSessionFactory);
-            transaction = TransactionSynchronizationManager.isSynchronizationActive();
-            if (sqlSessionHolder != null) {
-                SqlSession sqlSession = sqlSessionHolder.getSqlSession();
-                // 原生无法支持执行器切换，当存在批量操作时，会嵌套两个session的，优先commit上一个session
-                // 按道理来说，这里的值应该一直为false。
-                sqlSession.commit(!transaction);
+    /*====================================================================
+     *********************************************************************
+     =====================================================================
+     ******************   批量删除（按主键分批删除、按主键范围清理）  ******************
+     =====================================================================
+     *********************************************************************
+     ====================================================================*/
+
+    /**
+     * 批量删除：按主键分批删除，每批次执行 {@link TableMapping#deleteSql(int)}（单列主键为 {@code IN} 列表，每条SQL最多 {@value #MAX_DELETE_ROWS_PER_STATEMENT} 行）<br>
+     * 按条件清理大量数据时（如：历史数据），使用 {@link #keyRangePurge(String, String)} 按主键范围分段删除
+     *
+     * @param tableMapping 表映射（只使用主键列）
+     * @param models       需要删除的数据
+     * @param <MODEL>      实体类型
+     * @return 批量操作的结果
+     * @since 0.2.4
+     */
+    public <MODEL> BatchUpdateResult<MODEL> batchDelete(TableMapping<MODEL> tableMapping,
+                                                        Iterable<MODEL> models) {
+        checkHasNullNPE(args(tableMapping, models), args("tableMapping", "models"));
+        return batchDelete(this.sqlSessionTemplate, tableMapping, models.iterator(), this.batchSize, batchOptions(tableMapping.getTable()));
+    }
+
+    /**
+     * 创建按主键范围分段删除，详见 {@link KeyRangePurge}
+     *
+     * @param table     表名
+     * @param keyColumn 单调递增的整数主键列
+     * @return 按主键范围分段删除
+     * @since 0.2.4
+     */
+    public KeyRangePurge keyRangePurge(String table, String keyColumn) {
+        return KeyRangePurge.build(this.sqlSessionTemplate, table, keyColumn);
+    }
+
+    /*==================================================
+     ******************   静态方法调用  ******************
+     ==================================================*/
+
+    /**
+     * 批量删除，详见 {@link #batchDelete(TableMapping, Iterable)}
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param tableMapping       表映射（只使用主键列）
+     * @param models             需要删除的数据
+     * @param batchSize          每批次数量
+     * @param options            可选项，可为 {@code null}
+     * @param <MODEL>            实体类型
+     * @return 批量操作的结果
+     * @since 0.2.4
+     */
+    public static <MODEL> BatchUpdateResult<MODEL> batchDelete(SqlSessionTemplate sqlSessionTemplate,
+                                                               TableMapping<MODEL> tableMapping,
+                                                               Iterator<MODEL> models,
+                                                               int batchSize,
+                                                               BatchOptions<MODEL> options) {
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
+        checkHasNullNPE(args(sqlSessionTemplate, tableMapping, models), args("sqlSessionTemplate", "tableMapping", "models"));
+        checkEmpty(tableMapping.getKeyColumns(), args("tableMapping.keyColumns"));
+
+        final Map<String, Function<? super MODEL, ?>> columns = tableMapping.getColumns();
+        final List<String> keyColumns = tableMapping.getKeyColumns();
+        final int maxRows = Math.max(1, Math.min(MAX_DELETE_ROWS_PER_STATEMENT, Dialect.MAX_PARAMETERS / keyColumns.size()));
+        return BatchEngine.execute("batchDelete", tableMapping.getTable(), sqlSessionTemplate, null, models, batchSize, options, (sqlSession, mapper, modelList) -> {
+            Connection connection = sqlSession.getConnection();
+            for (int from = 0; from < modelList.size(); from += maxRows) {
+                List<MODEL> rows = modelList.subList(from, Math.min(modelList.size(), from + maxRows));
+                try (PreparedStatement statement = connection.prepareStatement(tableMapping.deleteSql(rows.size()))) {
+                    int index = 1;
+                    for (MODEL model : rows) {
+                        for (String keyColumn : keyColumns) {
+                            statement.setObject(index++, columns.get(keyColumn).apply(model));
+                        }
+                    }
+                    statement.executeUpdate();
+                }
             }
-        } catch (Throwable e) {
+        });
+    }
+
+    /**
+     * 按主键范围分段删除，详见 {@link KeyRangePurge}
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param table              表名
+     * @param keyColumn          单调递增的整数主键列
+     * @return 按主键范围分段删除
+     * @since 0.2.4
+     */
+    public static KeyRangePurge keyRangePurge(SqlSessionTemplate sqlSessionTemplate, String table, String keyColumn) {
+        return KeyRangePurge.build(sqlSessionTemplate, table, keyColumn);
+    }
+
+    /*===============================================================
+     ****************************************************************
+     ================================================================
+     ******************   异步批量写入（write-behind）  ******************
+     ================================================================
+     ****************************************************************
+     ===============================================================*/
+
+    /**
+     * 创建异步批量写入器，每批次最大数量为本实例的 {@link #getBatchSize()}，详见 {@link AsyncBatchWriter}
+     *
+     * @param mapperClass  mapper class
+     * @param updateAction 写入操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @return 异步批量写入器（第一次调用 {@link AsyncBatchWriter#offer} 时启动，使用完需调用 {@link AsyncBatchWriter#close()}）
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> AsyncBatchWriter<MAPPER, MODEL> asyncBatchWriter(Class<MAPPER> mapperClass,
+                                                                          RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        return AsyncBatchWriter.build(this.sqlSessionTemplate, mapperClass, this.batchSize, updateAction);
+    }
+
+    /*====================================================================
+     *********************************************************************
+     =====================================================================
+     ******************   流式 ETL 管道（游标读取 + 批量写入）  ******************
+     =====================================================================
+     *********************************************************************
+     ====================================================================*/
+
+    /**
+     * 创建流式 ETL 管道，每批次数量为本实例的 {@link #getBatchSize()}，详见 {@link CursorPipeline}
+     *
+     * @param sourceMapperClass 源查询的 mapper class
+     * @param sourceMethodName  源查询的方法名
+     * @param <SOURCE>          源数据类型
+     * @return 流式 ETL 管道
+     * @since 0.2.4
+     */
+    public <SOURCE> CursorPipeline<SOURCE> cursorPipeline(Class<?> sourceMapperClass, String sourceMethodName) {
+        return CursorPipeline.<SOURCE>build(this.sqlSessionTemplate, sourceMapperClass, sourceMethodName).setBatchSize(this.batchSize);
+    }
+
+    /**
+     * 创建流式 ETL 管道，每批次数量为本实例的 {@link #getBatchSize()}，详见 {@link CursorPipeline}
+     *
+     * @param sourceStatement 源查询的 statement id，如：{@code com.example.mapper.UserMapper.selectAll}
+     * @param <SOURCE>        源数据类型
+     * @return 流式 ETL 管道
+     * @since 0.2.4
+     */
+    public <SOURCE> CursorPipeline<SOURCE> cursorPipeline(String sourceStatement) {
+        return CursorPipeline.<SOURCE>build(this.sqlSessionTemplate, sourceStatement).setBatchSize(this.batchSize);
+    }
+
+    /*====================================================================
+     *********************************************************************
+     =====================================================================
+     ******************   异步批量操作（CompletableFuture）  ******************
+     =====================================================================
+     *********************************************************************
+     ====================================================================*/
+
+    /**
+     * 异步批量更新、插入、删除：在 {@code executor} 中执行 {@link #batchUpdate(Class, Iterable, BatchOptions, RT2)}，不阻塞调用线程<br>
+     * 调用 {@link CompletableFuture#cancel} 后，在下一批次开始前停止执行并回滚未提交的批次（正在执行的批次不会被中断）<br>
+     * <b>注：</b>{@code executor} 中的线程不会加入调用线程的 Spring 事务；JDK 21 及以上可传入 {@code Executors.newVirtualThreadPerTaskExecutor()}
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类（在 {@code executor} 中遍历，执行完成前不要修改）
+     * @param executor     执行批量操作的线程池
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @return 批量操作的结果（包含处理数据量及耗时）
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> CompletableFuture<BatchUpdateResult<MODEL>> batchUpdateAsync(Class<MAPPER> mapperClass,
+                                                                                       Iterable<MODEL> models,
+                                                                                       Executor executor,
+                                                                                       RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkNullNPE(mapperClass, args("mapperClass"));
+        return batchUpdateAsync(mapperClass, models, batchOptions(mapperClass.getName()), executor, updateAction);
+    }
+
+    /**
+     * 异步批量更新、插入、删除，详见 {@link #batchUpdateAsync(Class, Iterable, Executor, RT2)}
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类（在 {@code executor} 中遍历，执行完成前不要修改）
+     * @param options      可选项，可为 {@code null}（不会修改传入的可选项）
+     * @param executor     执行批量操作的线程池
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @return 批量操作的结果（包含处理数据量及耗时）
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> CompletableFuture<BatchUpdateResult<MODEL>> batchUpdateAsync(Class<MAPPER> mapperClass,
+                                                                                       Iterable<MODEL> models,
+                                                                                       BatchOptions<MODEL> options,
+                                                                                       Executor executor,
+                                                                                       RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkHasNullNPE(args(mapperClass, models, updateAction), args("mapperClass", "models", "updateAction"));
+        return async(options, executor, asyncOptions -> batchUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, asyncOptions, updateAction));
+    }
+
+    /**
+     * 异步批量更新或插入（不存在即插入，存在则更新）：在 {@code executor} 中执行 {@link #batchSaveOrUpdate(Class, Iterable, BatchOptions)}，
+     * 取消及线程池说明详见 {@link #batchUpdateAsync(Class, Iterable, Executor, RT2)}
+     *
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据（在 {@code executor} 中遍历，执行完成前不要修改）
+     * @param executor    执行批量操作的线程池
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @return 批量操作的结果（包含处理数据量及耗时）
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> CompletableFuture<BatchUpdateResult<MODEL>> batchSaveOrUpdateAsync(Class<MAPPER> mapperClass,
+                                                                                             Iterable<MODEL> models,
+                                                                                             Executor executor) {
+        checkNullNPE(mapperClass, args("mapperClass"));
+        return batchSaveOrUpdateAsync(mapperClass, models, batchOptions(mapperClass.getName()), executor);
+    }
+
+    /**
+     * 异步批量更新或插入（不存在即插入，存在则更新），详见 {@link #batchSaveOrUpdateAsync(Class, Iterable, Executor)}
+     *
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据（在 {@code executor} 中遍历，执行完成前不要修改）
+     * @param options     可选项，可为 {@code null}（不会修改传入的可选项）
+     * @param executor    执行批量操作的线程池
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @return 批量操作的结果（包含处理数据量及耗时）
+     * @since 0.2.4
+     */
+    public <MAPPER, MODEL> CompletableFuture<BatchUpdateResult<MODEL>> batchSaveOrUpdateAsync(Class<MAPPER> mapperClass,
+                                                                                             Iterable<MODEL> models,
+                                                                                             BatchOptions<MODEL> options,
+                                                                                             Executor executor) {
+        checkHasNullNPE(args(mapperClass, models), args("mapperClass", "models"));
+        return async(options, executor, asyncOptions -> batchSaveOrUpdate(this.sqlSessionTemplate, mapperClass, models.iterator(), this.batchSize, asyncOptions,
+                this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName));
+    }
+
+    /**
+     * 在 {@code executor} 中执行批量操作，取消 future 时通过 {@link BatchOptions#setCancelled} 在批次之间停止
+     */
+    private static <MODEL> CompletableFuture<BatchUpdateResult<MODEL>> async(BatchOptions<MODEL> options,
+                                                                          Executor executor,
+                                                                          Function<BatchOptions<MODEL>, BatchUpdateResult<MODEL>> batchAction) {
+        checkNullNPE(executor, args("executor"));
 
+        CompletableFuture<BatchUpdateResult<MODEL>> future = new CompletableFuture<>();
+        BatchOptions<MODEL> asyncOptions = options == null ? BatchOptions.create() : options.copy();
+        BooleanSupplier cancelled = asyncOptions.getCancelled();
+        asyncOptions.setCancelled(cancelled == null ? future::isCancelled : () -> future.isCancelled() || cancelled.getAsBoolean());
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) return;
+                try {
+                    future.complete(batchAction.apply(asyncOptions));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池拒绝执行时同样通过 CompletableFuture 返回，不直接抛出
+            future.completeExceptionally(e);
         }
+        return future;
+    }
+
+    /**
+     * 获取某个 mapper 当前的自适应批次大小
+     *
+     * @param mapperClass mapper class
+     * @return 自适应批次大小，未开启自适应批次大小或该 mapper 还未执行过批量操作时返回 {@code null}
+     * @since 0.2.4
+     */
+    public AdaptiveBatchSize getAdaptiveBatchSize(Class<?> mapperClass) {
+        checkNullNPE(mapperClass, args("mapperClass"));
+        return adaptiveBatchSizes.get(mapperClass.getName());
+    }
+
+    /**
+     * 获取所有 mapper（或表）当前的自适应批次大小
+     *
+     * @return key 为 mapper 全类名（{@code batchUpsert} 为表名），value 为自适应批次大小
+     * @since 0.2.4
+     */
+    public Map<String, AdaptiveBatchSize> getAdaptiveBatchSizes() {
+        return Collections.unmodifiableMap(adaptiveBatchSizes);
+    }
+
+    /**
+     * 未显式指定批次大小时使用的可选项：开启了自适应批次大小则每个 mapper（或表）各自调整，否则返回 {@code null}
+     */
+    private <MODEL> BatchOptions<MODEL> batchOptions(String target) {
+        AdaptiveBatchSize template = this.adaptiveBatchSize;
+        if (template == null) return null;
+        return BatchOptions.<MODEL>create().setAdaptiveBatchSize(adaptiveBatchSizes.computeIfAbsent(target, k -> template.copy()));
+    }
 
-        SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false);
-        if (!transaction) {
-            log.warn("SqlSession [" + sqlSession + "] Transaction not enabled");
+    /**
+     * 注册 mapper：解析并校验批量更新或插入使用的SQL语句（{@code selectSqlMethodName}、{@code insertSqlMethodName}、
+     * {@code updateSqlMethodName}）并缓存，SQL方法名错误时在启动时（如：创建 MybatisHelper 的 Bean 时）即抛出异常，详见 {@link MapperStatements}
+     *
+     * @param mapperClasses mapper class
+     * @return MybatisHelper
+     * @throws IllegalStateException SQL语句不存在
+     * @since 0.2.4
+     */
+    public MybatisHelper registerMappers(Class<?>... mapperClasses) {
+        checkNullNPE(mapperClasses, args("mapperClasses"));
+        for (Class<?> mapperClass : mapperClasses) {
+            registerMapper(mapperClass, this.selectSqlMethodName, this.insertSqlMethodName, this.updateSqlMethodName);
         }
-        return sqlSession;
+        return this;
     }
 
+    /**
+     * 注册 mapper：解析并校验指定的SQL语句并缓存，SQL方法名错误时在启动时即抛出异常，详见 {@link MapperStatements}
+     *
+     * @param mapperClass mapper class
+     * @param methodNames SQL方法名，如：{@code "selectByIds", "insert", "update"}
+     * @return MybatisHelper
+     * @throws IllegalStateException SQL语句不存在
+     * @since 0.2.4
+     */
+    public MybatisHelper registerMapper(Class<?> mapperClass, String... methodNames) {
+        MapperStatements.of(this.sqlSessionTemplate.getConfiguration(), mapperClass).require(methodNames);
+        return this;
+    }
 
 
     /*========================
@@ -494,7 +1970,7 @@ public class MybatisHelper {
      ========================*/
 
     public MybatisHelper setBatchSize(int batchSize) {
-        checkArgument(defaultBatchSize < 1, "批量大小必须大于0！");
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
         this.batchSize = batchSize;
         return this;
     }
@@ -505,6 +1981,12 @@ public class MybatisHelper {
         return this;
     }
 
+    public MybatisHelper setSelectByIdsSqlMethodName(String selectByIdsSqlMethodName) {
+        checkBlank(selectByIdsSqlMethodName, args("selectByIdsSqlMethodName"));
+        this.selectByIdsSqlMethodName = selectByIdsSqlMethodName;
+        return this;
+    }
+
     public MybatisHelper setInsertSqlMethodName(String insertSqlMethodName) {
         checkBlank(insertSqlMethodName, args("insertSqlMethodName"));
         this.insertSqlMethodName = insertSqlMethodName;
@@ -517,6 +1999,24 @@ public class MybatisHelper {
         return this;
     }
 
+    public MybatisHelper setDialect(Dialect dialect) {
+        this.dialect = dialect;
+        return this;
+    }
+
+    /**
+     * 开启（或关闭）自适应批次大小，详见 {@link AdaptiveBatchSize}
+     *
+     * @param adaptiveBatchSize 配置模板（每个 mapper（或表）使用一份副本各自调整），为 {@code null} 时关闭
+     * @return MybatisHelper
+     * @since 0.2.4
+     */
+    public MybatisHelper setAdaptiveBatchSize(AdaptiveBatchSize adaptiveBatchSize) {
+        this.adaptiveBatchSize = adaptiveBatchSize;
+        this.adaptiveBatchSizes.clear();
+        return this;
+    }
+
     public static void setDefaultBatchSize(int defaultBatchSize) {
         checkArgument(defaultBatchSize < 1, "批量大小必须大于0！");
         MybatisHelper.defaultBatchSize = defaultBatchSize;
@@ -527,6 +2027,11 @@ public class MybatisHelper {
         MybatisHelper.defaultSelectSqlMethodName = defaultSelectSqlMethodName;
     }
 
+    public static void setDefaultSelectByIdsSqlMethodName(String defaultSelectByIdsSqlMethodName) {
+        checkBlank(defaultSelectByIdsSqlMethodName, args("defaultSelectByIdsSqlMethodName"));
+        MybatisHelper.defaultSelectByIdsSqlMethodName = defaultSelectByIdsSqlMethodName;
+    }
+
     public static void setDefaultUpdateSqlMethodName(String defaultUpdateSqlMethodName) {
         checkBlank(defaultUpdateSqlMethodName, args("defaultUpdateSqlMethodName"));
         MybatisHelper.defaultUpdateSqlMethodName = defaultUpdateSqlMethodName;
@@ -542,13 +2047,47 @@ public class MybatisHelper {
         MybatisHelper.defaultPrintLogBatchSize = defaultPrintLogBatchSize;
     }
 
+    /**
+     * 全局注册批量操作监听器，对所有批量操作生效（包括并行、分片、异步写入、流式 ETL 管道及按主键范围删除）
+     *
+     * @param batchListener 监听器，如：{@link BatchMetrics}
+     * @since 0.2.4
+     */
+    public static void addBatchListener(BatchListener batchListener) {
+        checkNullNPE(batchListener, args("batchListener"));
+        batchListeners.add(batchListener);
+    }
+
+    /**
+     * 移除全局注册的批量操作监听器
+     *
+     * @param batchListener 监听器
+     * @since 0.2.4
+     */
+    public static void removeBatchListener(BatchListener batchListener) {
+        batchListeners.remove(batchListener);
+    }
+
+    /**
+     * 获取全局注册的批量操作监听器
+     *
+     * @return 监听器
+     * @since 0.2.4
+     */
+    public static List<BatchListener> getBatchListeners() {
+        return Collections.unmodifiableList(batchListeners);
+    }
+
     @Override
     public String toString() {
         return "MybatisHelper{" +
                 "batchSize=" + batchSize +
                 ", selectSqlMethodName='" + selectSqlMethodName + '\'' +
+                ", selectByIdsSqlMethodName='" + selectByIdsSqlMethodName + '\'' +
                 ", updateSqlMethodName='" + updateSqlMethodName + '\'' +
                 ", insertSqlMethodName='" + insertSqlMethodName + '\'' +
+                ", dialect=" + dialect +
+                ", adaptiveBatchSize=" + adaptiveBatchSize +
                 '}';
     }
 
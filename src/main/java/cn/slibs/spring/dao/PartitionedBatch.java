@@ -0,0 +1,323 @@
+package cn.slibs.spring.dao;
+
+import com.iofairy.except.GeneralException;
+import com.iofairy.id.TimedID;
+import com.iofairy.lambda.RT2;
+import com.iofairy.tcf.Close;
+import com.iofairy.time.Stopwatch;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 并行分区批量写入：将数据分成多个分区，每个分区使用独立的 BATCH 执行器 SqlSession（独立连接）并行写入<br>
+ * 同一分区的批次按顺序串行执行（同一时刻只占用一个线程），分区之间并行执行，因此线程数少于分区数时也不会死锁；
+ * 每个分区最多积压 {@link #MAX_PENDING_BATCHES} 个批次，超过时读取数据的线程会等待，内存中最多只保留
+ * {@code 分区数 * (MAX_PENDING_BATCHES + 1)} 个批次的数据
+ *
+ * @param <MAPPER> mapper类型
+ * @param <MODEL>  实体类型
+ * @since 0.2.4
+ */
+@Slf4j
+final class PartitionedBatch<MAPPER, MODEL> {
+    /** 每个分区最多积压的批次数 */
+    static final int MAX_PENDING_BATCHES = 2;
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final Class<MAPPER> mapperClass;
+    private final Function<? super MODEL, ?> partitionKey;
+    private final Executor executor;
+    private final CommitPolicy commitPolicy;
+    private final RT2<MAPPER, MODEL, Integer, Exception> updateAction;
+    private final List<Partition> partitions;
+    private final BatchNotifier notifier;
+    /** 是否已中止（{@link CommitPolicy#ALL_OR_NOTHING} 时，任一分区失败即中止所有分区） */
+    private volatile boolean aborted;
+
+    PartitionedBatch(SqlSessionFactory sqlSessionFactory,
+                     Class<MAPPER> mapperClass,
+                     int partitionCount,
+                     Function<? super MODEL, ?> partitionKey,
+                     Executor executor,
+                     CommitPolicy commitPolicy,
+                     RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.mapperClass = mapperClass;
+        this.partitionKey = partitionKey;
+        this.executor = executor;
+        this.commitPolicy = commitPolicy;
+        this.updateAction = updateAction;
+        this.partitions = new ArrayList<>(partitionCount);
+        this.notifier = BatchNotifier.of("batchUpdateParallel", mapperClass.getName(), null);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new Partition(i));
+        }
+    }
+
+    /**
+     * 执行并行分区批量写入
+     *
+     * @param models    数据源
+     * @param batchSize 每批次数量
+     */
+    void execute(Iterator<MODEL> models, int batchSize) {
+        final String logId = TimedID.getId();
+        Stopwatch stopwatch = Stopwatch.run();
+        final long start = System.nanoTime();
+        Throwable dispatchFailure = null;
+        notifier.start();
+        try {
+            dispatch(models, batchSize);
+        } catch (Throwable e) {
+            aborted = true;
+            dispatchFailure = e;
+        }
+
+        try {
+            // 即使读取数据失败，也要等待正在执行的批次结束后才能回滚、关闭 SqlSession
+            for (Partition partition : partitions) {
+                partition.awaitDrained();
+            }
+            if (dispatchFailure != null) {
+                if (dispatchFailure instanceof InterruptedException) Thread.currentThread().interrupt();
+                log.debug("batchUpdateParallel_logId：{}，target：{}，处理失败，失败原因：{}，已处理数据量：{}", logId, mapperClass.getSimpleName(), dispatchFailure.getMessage(), processedCount());
+                rollbackAll();
+                notifier.rollback(dispatchFailure);
+                throw new GeneralException(dispatchFailure, "[${mapperName}]并行批量更新（或插入）异常，所有分区已回滚！", mapperClass.getSimpleName());
+            }
+            try {
+                finish();
+            } catch (RuntimeException e) {
+                notifier.rollback(e);
+                throw e;
+            }
+            notifier.complete(processedCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            log.debug("batchUpdateParallel_logId：{}，target：{}，处理完成。分区数：{}，处理数据量：{}。耗时：{}", logId, mapperClass.getSimpleName(), partitions.size(), processedCount(), stopwatch);
+        } finally {
+            for (Partition partition : partitions) {
+                Close.close(partition.sqlSession);
+            }
+        }
+    }
+
+    /**
+     * 读取数据源，按分区分组，每凑满一个批次即提交给对应分区执行
+     */
+    private void dispatch(Iterator<MODEL> models, int batchSize) throws InterruptedException {
+        List<List<MODEL>> buffers = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            buffers.add(new ArrayList<>(batchSize));
+        }
+
+        long roundRobin = 0;
+        while (models.hasNext() && !aborted) {
+            MODEL model = models.next();
+            int index = partitionKey == null ? (int) (roundRobin++ % partitions.size()) : partitionOf(partitionKey.apply(model));
+            List<MODEL> buffer = buffers.get(index);
+            buffer.add(model);
+            if (buffer.size() >= batchSize) {
+                partitions.get(index).submit(buffer);
+                buffers.set(index, new ArrayList<>(batchSize));
+            }
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            if (!buffers.get(i).isEmpty()) partitions.get(i).submit(buffers.get(i));
+        }
+    }
+
+    /**
+     * 所有分区执行完成后，按提交策略提交或回滚
+     */
+    private void finish() {
+        List<Partition> failedPartitions = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (partition.failure != null) failedPartitions.add(partition);
+        }
+
+        if (commitPolicy == CommitPolicy.ALL_OR_NOTHING) {
+            if (!failedPartitions.isEmpty()) {
+                rollbackAll();
+                throw failure(failedPartitions, "[${mapperName}]并行批量更新（或插入）异常，所有分区已回滚！");
+            }
+            for (Partition partition : partitions) {
+                try {
+                    partition.commit();
+                } catch (Throwable e) {
+                    partition.failure = e;
+                    rollbackAll();
+                    throw failure(Collections.singletonList(partition), "[${mapperName}]并行批量更新（或插入）提交失败，未提交的分区已回滚！");
+                }
+            }
+        } else {
+            for (Partition partition : partitions) {
+                if (partition.failure != null) {
+                    partition.rollback();
+                    continue;
+                }
+                try {
+                    partition.commit();
+                } catch (Throwable e) {
+                    partition.failure = e;
+                    partition.rollback();
+                    failedPartitions.add(partition);
+                }
+            }
+            if (!failedPartitions.isEmpty()) {
+                throw failure(failedPartitions, "[${mapperName}]并行批量更新（或插入）异常，失败的分区已回滚，其他分区已提交！");
+            }
+        }
+    }
+
+    private GeneralException failure(List<Partition> failedPartitions, String message) {
+        Partition first = failedPartitions.get(0);
+        for (Partition partition : failedPartitions) {
+            log.debug("batchUpdateParallel，target：{}，分区[{}]处理失败，失败原因：{}，已处理数据量：{}", mapperClass.getSimpleName(), partition.index, partition.failure.getMessage(), partition.processedCount);
+        }
+        GeneralException exception = new GeneralException(first.failure, message, mapperClass.getSimpleName());
+        for (Partition partition : failedPartitions) {
+            if (partition != first) exception.addSuppressed(partition.failure);
+        }
+        return exception;
+    }
+
+    private void rollbackAll() {
+        for (Partition partition : partitions) {
+            partition.rollback();
+        }
+    }
+
+    private long processedCount() {
+        long processedCount = 0;
+        for (Partition partition : partitions) {
+            processedCount += partition.processedCount;
+        }
+        return processedCount;
+    }
+
+    private int partitionOf(Object key) {
+        int h = Objects.hashCode(key);
+        return Math.floorMod(h ^ (h >>> 16), partitions.size());
+    }
+
+    /**
+     * 分区：持有独立的 SqlSession，批次按顺序串行执行
+     */
+    private final class Partition {
+        final int index;
+        final Queue<List<MODEL>> batches = new ConcurrentLinkedQueue<>();
+        final Semaphore capacity = new Semaphore(MAX_PENDING_BATCHES);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        /** 只在持有 {@link #scheduled} 的线程中访问，提交/回滚时所有批次已执行完成 */
+        SqlSession sqlSession;
+        MAPPER mapper;
+        volatile long processedCount;
+        volatile Throwable failure;
+
+        Partition(int index) {
+            this.index = index;
+        }
+
+        void submit(List<MODEL> batch) throws InterruptedException {
+            while (!capacity.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (skipping()) return;
+            }
+            if (skipping()) {
+                capacity.release();
+                return;
+            }
+            batches.add(batch);
+            schedule();
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    drain();
+                }
+            }
+        }
+
+        void drain() {
+            try {
+                List<MODEL> batch;
+                while ((batch = batches.poll()) != null) {
+                    try {
+                        if (!skipping()) process(batch);
+                    } catch (Throwable e) {
+                        failure = e;
+                        if (commitPolicy == CommitPolicy.ALL_OR_NOTHING) aborted = true;
+                    } finally {
+                        capacity.release();
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // 释放调度标记之后可能又有新的批次加入
+            if (!batches.isEmpty()) schedule();
+        }
+
+        void process(List<MODEL> batch) throws Exception {
+            if (sqlSession == null) {
+                // 各分区在不同的线程中执行，无法共享调用方事务的连接，使用独立的连接及事务
+                sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false);
+                mapper = sqlSession.getMapper(mapperClass);
+            }
+            long flushStart = System.nanoTime();
+            for (MODEL model : batch) {
+                updateAction.$(mapper, model);
+            }
+            BatchUpdateResult<MODEL> batchResult = new BatchUpdateResult<>();
+            batchResult.addBatchResults(sqlSession.flushStatements());
+            sqlSession.clearCache();
+            processedCount += batch.size();
+            notifier.flush(batch.size(), System.nanoTime() - flushStart, batchResult.getUpdateCounts());
+        }
+
+        /**
+         * 等待所有已提交的批次执行完成
+         */
+        void awaitDrained() {
+            capacity.acquireUninterruptibly(MAX_PENDING_BATCHES);
+            capacity.release(MAX_PENDING_BATCHES);
+        }
+
+        boolean skipping() {
+            return aborted || failure != null;
+        }
+
+        void commit() {
+            if (sqlSession == null) return;
+            sqlSession.commit(true);
+            notifier.commit(processedCount);
+        }
+
+        void rollback() {
+            if (sqlSession == null) return;
+            try {
+                sqlSession.rollback(true);
+            } catch (Throwable e) {
+                log.debug("batchUpdateParallel，target：{}，分区[{}]回滚失败，失败原因：{}", mapperClass.getSimpleName(), index, e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package cn.slibs.spring.dao;
+
+import lombok.Getter;
+
+/**
+ * 按主键范围分段删除（{@link KeyRangePurge}）的结果
+ *
+ * @since 0.2.4
+ */
+@Getter
+public class PurgeResult {
+    /** 删除的数据量 */
+    private final long deletedCount;
+    /** 执行的范围数（即提交次数） */
+    private final long rangeCount;
+    /** 已处理到的主键（不包含），取消后可从该主键继续；没有需要删除的数据时为起始主键，处理到 {@link Long#MAX_VALUE} 时为 {@code null} */
+    private final Long nextKey;
+    /** 耗时（毫秒） */
+    private final long elapsedMillis;
+
+    PurgeResult(long deletedCount, long rangeCount, Long nextKey, long elapsedMillis) {
+        this.deletedCount = deletedCount;
+        this.rangeCount = rangeCount;
+        this.nextKey = nextKey;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "PurgeResult{" +
+                "deletedCount=" + deletedCount +
+                ", rangeCount=" + rangeCount +
+                ", nextKey=" + nextKey +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
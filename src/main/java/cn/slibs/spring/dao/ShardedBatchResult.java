@@ -0,0 +1,120 @@
+package cn.slibs.spring.dao;
+
+import com.iofairy.except.GeneralException;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片批量操作的结果：每个分片的结果及耗时<br>
+ * <b>注：</b>各分片独立提交（非分布式事务），部分分片失败时其他分片已提交，需根据 {@link #getFailedShards()} 处理
+ *
+ * @param <SHARD> 分片id类型
+ * @param <MODEL> 实体类型
+ * @since 0.2.4
+ */
+@Getter
+public class ShardedBatchResult<SHARD, MODEL> {
+    /** 总耗时（毫秒） */
+    private final long elapsedMillis;
+    /** 每个分片的结果 */
+    private final Map<SHARD, ShardResult<SHARD, MODEL>> shardResults;
+
+    ShardedBatchResult(long elapsedMillis, Map<SHARD, ShardResult<SHARD, MODEL>> shardResults) {
+        this.elapsedMillis = elapsedMillis;
+        this.shardResults = Collections.unmodifiableMap(new LinkedHashMap<>(shardResults));
+    }
+
+    /**
+     * 失败的分片
+     *
+     * @return 失败的分片
+     */
+    public List<ShardResult<SHARD, MODEL>> getFailedShards() {
+        List<ShardResult<SHARD, MODEL>> failedShards = new ArrayList<>();
+        for (ShardResult<SHARD, MODEL> shardResult : shardResults.values()) {
+            if (shardResult.getFailure() != null) failedShards.add(shardResult);
+        }
+        return failedShards;
+    }
+
+    /**
+     * 是否所有分片都执行成功
+     *
+     * @return 所有分片都执行成功时返回 {@code true}
+     */
+    public boolean isSuccess() {
+        return getFailedShards().isEmpty();
+    }
+
+    /**
+     * 存在失败的分片时抛出异常（第一个失败分片的异常为 cause，其余的作为 suppressed）
+     *
+     * @return 当前结果
+     */
+    public ShardedBatchResult<SHARD, MODEL> throwIfFailed() {
+        List<ShardResult<SHARD, MODEL>> failedShards = getFailedShards();
+        if (failedShards.isEmpty()) return this;
+
+        List<SHARD> shards = new ArrayList<>();
+        for (ShardResult<SHARD, MODEL> failedShard : failedShards) {
+            shards.add(failedShard.getShard());
+        }
+        GeneralException exception = new GeneralException(failedShards.get(0).getFailure(), "分片批量操作异常，失败的分片：${shards}，其他分片已提交！", shards);
+        for (int i = 1; i < failedShards.size(); i++) {
+            exception.addSuppressed(failedShards.get(i).getFailure());
+        }
+        throw exception;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedBatchResult{" +
+                "elapsedMillis=" + elapsedMillis +
+                ", shardResults=" + shardResults.values() +
+                '}';
+    }
+
+    /**
+     * 单个分片的结果
+     *
+     * @param <SHARD> 分片id类型
+     * @param <MODEL> 实体类型
+     */
+    @Getter
+    public static class ShardResult<SHARD, MODEL> {
+        /** 分片id */
+        private final SHARD shard;
+        /** 分配到该分片的数据量 */
+        private final int rowCount;
+        /** 批量操作的结果，失败时为 {@code null} */
+        private final BatchUpdateResult<MODEL> result;
+        /** 失败原因，成功时为 {@code null} */
+        private final Throwable failure;
+        /** 耗时（毫秒） */
+        private final long elapsedMillis;
+
+        ShardResult(SHARD shard, int rowCount, BatchUpdateResult<MODEL> result, Throwable failure, long elapsedMillis) {
+            this.shard = shard;
+            this.rowCount = rowCount;
+            this.result = result;
+            this.failure = failure;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "ShardResult{" +
+                    "shard=" + shard +
+                    ", rowCount=" + rowCount +
+                    ", result=" + result +
+                    ", failure=" + failure +
+                    ", elapsedMillis=" + elapsedMillis +
+                    '}';
+        }
+    }
+}
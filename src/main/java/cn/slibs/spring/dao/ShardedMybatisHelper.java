@@ -0,0 +1,386 @@
+package cn.slibs.spring.dao;
+
+import com.iofairy.id.TimedID;
+import com.iofairy.lambda.PT2;
+import com.iofairy.lambda.RT2;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.mybatis.spring.SqlSessionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 分片批量操作工具类：按分片键将数据分组到各分片（每个分片一个 {@link SqlSessionTemplate}），所有分片并行执行批量操作，返回每个分片的结果及耗时<br>
+ * 使用示例：
+ * <pre>{@code
+ * ShardedMybatisHelper<Integer> shardedHelper = ShardedMybatisHelper.build(templates)   // Map<Integer, SqlSessionTemplate>
+ *         .setExecutor(executor);
+ * shardedHelper.batchUpdate(OrderMapper.class, orders, order -> (int) (order.getUserId() % 4), OrderMapper::insert)
+ *         .throwIfFailed();
+ *
+ * // 断点续跑：每个分片各自的断点
+ * shardedHelper.batchUpdate(OrderMapper.class, orders, order -> (int) (order.getUserId() % 4),
+ *         shard -> BatchOptions.<Order>create()
+ *                 .setCommitEveryBatches(10)
+ *                 .setCheckpointListener(checkpoint -> saveProgress(shard, checkpoint))
+ *                 .setResumeFrom(loadProgress(shard)),
+ *         OrderMapper::insert);
+ * }</pre>
+ * <b>注：</b>各分片独立提交（非分布式事务），部分分片失败时其他分片已提交
+ *
+ * @param <SHARD> 分片id类型
+ * @since 0.2.4
+ */
+@Slf4j
+@Getter
+public class ShardedMybatisHelper<SHARD> {
+    /** 分片id → SqlSessionTemplate */
+    private final Map<SHARD, SqlSessionTemplate> sqlSessionTemplates;
+    /** 每批次数量 */
+    private int batchSize;
+    /** 数据库方言（用于 batchUpsert），为 {@code null} 时根据数据源的元数据自动识别 */
+    private Dialect dialect;
+    /** 执行各分片的线程池，为 {@code null} 时每次执行为每个分片创建一个新线程 */
+    private Executor executor;
+
+    ShardedMybatisHelper(Map<SHARD, SqlSessionTemplate> sqlSessionTemplates) {
+        this.sqlSessionTemplates = Collections.unmodifiableMap(new LinkedHashMap<>(sqlSessionTemplates));
+    }
+
+    public static <SHARD> ShardedMybatisHelper<SHARD> build(Map<SHARD, SqlSessionTemplate> sqlSessionTemplates) {
+        return build(MybatisHelper.getDefaultBatchSize(), sqlSessionTemplates);
+    }
+
+    public static <SHARD> ShardedMybatisHelper<SHARD> build(int batchSize, Map<SHARD, SqlSessionTemplate> sqlSessionTemplates) {
+        checkEmpty(sqlSessionTemplates, args("sqlSessionTemplates"));
+        checkArgument(sqlSessionTemplates.containsValue(null), "sqlSessionTemplates 中不能包含 null！");
+
+        return new ShardedMybatisHelper<>(sqlSessionTemplates)
+                .setBatchSize(batchSize);
+    }
+
+    /**
+     * 分片批量更新、插入、删除
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param shardKey     分片函数，返回数据所在的分片id
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @return 每个分片的结果
+     */
+    public <MAPPER, MODEL> ShardedBatchResult<SHARD, MODEL> batchUpdate(Class<MAPPER> mapperClass,
+                                                                        Iterable<MODEL> models,
+                                                                        Function<? super MODEL, ? extends SHARD> shardKey,
+                                                                        RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        return batchUpdate(mapperClass, models, shardKey, (BatchOptions<MODEL>) null, updateAction);
+    }
+
+    /**
+     * 分片批量更新、插入、删除
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param shardKey     分片函数，返回数据所在的分片id
+     * @param options      可选项，可为 {@code null}（所有分片共用，回调可能在多个线程中并发执行；不支持断点，
+     *                     需要断点续跑时使用 {@link #batchUpdate(Class, Iterable, Function, Function, RT2)}）
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @return 每个分片的结果
+     */
+    public <MAPPER, MODEL> ShardedBatchResult<SHARD, MODEL> batchUpdate(Class<MAPPER> mapperClass,
+                                                                        Iterable<MODEL> models,
+                                                                        Function<? super MODEL, ? extends SHARD> shardKey,
+                                                                        BatchOptions<MODEL> options,
+                                                                        RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        return batchUpdate(mapperClass, models, shardKey, sharedOptions(options), updateAction);
+    }
+
+    /**
+     * 分片批量更新、插入、删除
+     *
+     * @param mapperClass  mapper class
+     * @param models       需要更新或插入的实体类
+     * @param shardOptions 按分片id创建各分片的可选项，可为 {@code null}，返回值可为 {@code null}（断点、续跑的断点按分片各自设置，见类注释中的示例）
+     * @param shardKey     分片函数，返回数据所在的分片id
+     * @param updateAction 更新操作，如：（{@code (mapper, model) -> mapper.insert(model)}）
+     * @param <MAPPER>     mapper类型
+     * @param <MODEL>      实体类型
+     * @return 每个分片的结果
+     */
+    public <MAPPER, MODEL> ShardedBatchResult<SHARD, MODEL> batchUpdate(Class<MAPPER> mapperClass,
+                                                                        Iterable<MODEL> models,
+                                                                        Function<? super MODEL, ? extends SHARD> shardKey,
+                                                                        Function<? super SHARD, BatchOptions<MODEL>> shardOptions,
+                                                                        RT2<MAPPER, MODEL, Integer, Exception> updateAction) {
+        checkHasNullNPE(args(mapperClass, updateAction), args("mapperClass", "updateAction"));
+        return execute("batchUpdate", mapperClass.getName(), models, shardKey, shardOptions,
+                (sqlSessionTemplate, shardModels, options) -> MybatisHelper.batchUpdate(sqlSessionTemplate, mapperClass, shardModels.iterator(), batchSize, options, updateAction));
+    }
+
+    /**
+     * 分片批量更新或插入（不存在即插入，存在则更新），按条件查询、插入、更新的SQL方法名使用 {@link MybatisHelper} 的默认值
+     *
+     * @param mapperClass mapper class
+     * @param models      需要更新或插入的数据
+     * @param shardKey    分片函数，返回数据所在的分片id
+     * @param <MAPPER>    mapper类型
+     * @param <MODEL>     实体类型
+     * @return 每个分片的结果
+     */
+    public <MAPPER, MODEL> ShardedBatchResult<SHARD, MODEL> batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                                              Iterable<MODEL> models,
+                                                                              Function<? super MODEL, ? extends SHARD> shardKey) {
+        return batchSaveOrUpdate(mapperClass, models, shardKey, null, MybatisHelper.getDefaultSelectSqlMethodName(), MybatisHelper.getDefaultInsertSqlMethodName(), MybatisHelper.getDefaultUpdateSqlMethodName());
+    }
+
+    /**
+     * 分片批量更新或插入（不存在即插入，存在则更新），详见 {@link MybatisHelper#batchSaveOrUpdate(SqlSessionTemplate, Class, java.util.Iterator, int, BatchOptions, String, String, String)}
+     *
+     * @param mapperClass         mapper class
+     * @param models              需要更新或插入的数据
+     * @param shardKey            分片函数，返回数据所在的分片id
+     * @param shardOptions        按分片id创建各分片的可选项，可为 {@code null}，返回值可为 {@code null}
+     * @param selectSqlMethodName 按条件查询的SQL方法名
+     * @param insertSqlMethodName 插入SQL方法名
+     * @param updateSqlMethodName 更新SQL方法名
+     * @param <MAPPER>            mapper类型
+     * @param <MODEL>             实体类型
+     * @return 每个分片的结果
+     */
+    public <MAPPER, MODEL> ShardedBatchResult<SHARD, MODEL> batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                                              Iterable<MODEL> models,
+                                                                              Function<? super MODEL, ? extends SHARD> shardKey,
+                                                                              Function<? super SHARD, BatchOptions<MODEL>> shardOptions,
+                                                                              String selectSqlMethodName,
+                                                                              String insertSqlMethodName,
+                                                                              String updateSqlMethodName) {
+        checkNullNPE(mapperClass, args("mapperClass"));
+        checkHasBlank(args(selectSqlMethodName, insertSqlMethodName, updateSqlMethodName), args("selectSqlMethodName", "insertSqlMethodName", "updateSqlMethodName"));
+        return execute("batchSaveOrUpdate", mapperClass.getName(), models, shardKey, shardOptions,
+                (sqlSessionTemplate, shardModels, options) -> MybatisHelper.batchSaveOrUpdate(sqlSessionTemplate, mapperClass, shardModels.iterator(), batchSize, options, selectSqlMethodName, insertSqlMethodName, updateSqlMethodName));
+    }
+
+    /**
+     * 分片批量更新或插入（不存在即插入，存在则更新），插入、更新的SQL方法名使用 {@link MybatisHelper} 的默认值
+     *
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param shardKey               分片函数，返回数据所在的分片id
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     * @return 每个分片的结果
+     */
+    public <MAPPER, MODEL> ShardedBatchResult<SHARD, MODEL> batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                                              Iterable<MODEL> models,
+                                                                              Function<? super MODEL, ? extends SHARD> shardKey,
+                                                                              PT2<MAPPER, MODEL, Exception> performInsertCondition) {
+        return batchSaveOrUpdate(mapperClass, models, shardKey, null, performInsertCondition, MybatisHelper.getDefaultInsertSqlMethodName(), MybatisHelper.getDefaultUpdateSqlMethodName());
+    }
+
+    /**
+     * 分片批量更新或插入（不存在即插入，存在则更新），详见 {@link MybatisHelper#batchSaveOrUpdate(SqlSessionTemplate, Class, java.util.Iterator, int, BatchOptions, PT2, String, String)}
+     *
+     * @param mapperClass            mapper class
+     * @param models                 需要更新或插入的数据
+     * @param shardKey               分片函数，返回数据所在的分片id
+     * @param shardOptions           按分片id创建各分片的可选项，可为 {@code null}，返回值可为 {@code null}
+     * @param performInsertCondition 执行插入的条件，{@code true}则执行插入，{@code false}则执行更新，如：（{@code (mapper, model) -> mapper.selectById(model) == null }）
+     * @param insertSqlMethodName    插入SQL方法名
+     * @param updateSqlMethodName    更新SQL方法名
+     * @param <MAPPER>               mapper类型
+     * @param <MODEL>                实体类型
+     * @return 每个分片的结果
+     */
+    public <MAPPER, MODEL> ShardedBatchResult<SHARD, MODEL> batchSaveOrUpdate(Class<MAPPER> mapperClass,
+                                                                              Iterable<MODEL> models,
+                                                                              Function<? super MODEL, ? extends SHARD> shardKey,
+                                                                              Function<? super SHARD, BatchOptions<MODEL>> shardOptions,
+                                                                              PT2<MAPPER, MODEL, Exception> performInsertCondition,
+                                                                              String insertSqlMethodName,
+                                                                              String updateSqlMethodName) {
+        checkHasNullNPE(args(mapperClass, performInsertCondition), args("mapperClass", "performInsertCondition"));
+        checkHasBlank(args(insertSqlMethodName, updateSqlMethodName), args("insertSqlMethodName", "updateSqlMethodName"));
+        return execute("batchSaveOrUpdate", mapperClass.getName(), models, shardKey, shardOptions,
+                (sqlSessionTemplate, shardModels, options) -> MybatisHelper.batchSaveOrUpdate(sqlSessionTemplate, mapperClass, shardModels.iterator(), batchSize, options, performInsertCondition, insertSqlMethodName, updateSqlMethodName));
+    }
+
+    /**
+     * 分片批量 upsert（有则更新，无则插入），详见 {@link MybatisHelper#batchUpsert(TableMapping, Iterable)}
+     *
+     * @param tableMapping 表映射
+     * @param models       需要更新或插入的数据
+     * @param shardKey     分片函数，返回数据所在的分片id
+     * @param <MODEL>      实体类型
+     * @return 每个分片的结果
+     */
+    public <MODEL> ShardedBatchResult<SHARD, MODEL> batchUpsert(TableMapping<MODEL> tableMapping,
+                                                                Iterable<MODEL> models,
+                                                                Function<? super MODEL, ? extends SHARD> shardKey) {
+        return batchUpsert(tableMapping, models, shardKey, (BatchOptions<MODEL>) null);
+    }
+
+    /**
+     * 分片批量 upsert（有则更新，无则插入），详见 {@link MybatisHelper#batchUpsert(TableMapping, Iterable)}
+     *
+     * @param tableMapping 表映射
+     * @param models       需要更新或插入的数据
+     * @param shardKey     分片函数，返回数据所在的分片id
+     * @param options      可选项，可为 {@code null}（所有分片共用，回调可能在多个线程中并发执行；不支持断点，
+     *                     需要断点续跑时使用 {@link #batchUpsert(TableMapping, Iterable, Function, Function)}）
+     * @param <MODEL>      实体类型
+     * @return 每个分片的结果
+     */
+    public <MODEL> ShardedBatchResult<SHARD, MODEL> batchUpsert(TableMapping<MODEL> tableMapping,
+                                                                Iterable<MODEL> models,
+                                                                Function<? super MODEL, ? extends SHARD> shardKey,
+                                                                BatchOptions<MODEL> options) {
+        return batchUpsert(tableMapping, models, shardKey, sharedOptions(options));
+    }
+
+    /**
+     * 分片批量 upsert（有则更新，无则插入），详见 {@link MybatisHelper#batchUpsert(TableMapping, Iterable)}
+     *
+     * @param tableMapping 表映射
+     * @param models       需要更新或插入的数据
+     * @param shardKey     分片函数，返回数据所在的分片id
+     * @param shardOptions 按分片id创建各分片的可选项，可为 {@code null}，返回值可为 {@code null}（断点、续跑的断点按分片各自设置，见类注释中的示例）
+     * @param <MODEL>      实体类型
+     * @return 每个分片的结果
+     */
+    public <MODEL> ShardedBatchResult<SHARD, MODEL> batchUpsert(TableMapping<MODEL> tableMapping,
+                                                                Iterable<MODEL> models,
+                                                                Function<? super MODEL, ? extends SHARD> shardKey,
+                                                                Function<? super SHARD, BatchOptions<MODEL>> shardOptions) {
+        checkNullNPE(tableMapping, args("tableMapping"));
+        return execute("batchUpsert", tableMapping.getTable(), models, shardKey, shardOptions,
+                (sqlSessionTemplate, shardModels, options) -> MybatisHelper.batchUpsert(sqlSessionTemplate, tableMapping, shardModels.iterator(), batchSize, options, dialect));
+    }
+
+    /**
+     * 所有分片共用的可选项：各分片的数据不同，同一个断点无法用于续跑任何一个分片，因此不支持断点及续跑的断点
+     */
+    private static <SHARD, MODEL> Function<SHARD, BatchOptions<MODEL>> sharedOptions(BatchOptions<MODEL> options) {
+        checkArgument(options != null && (options.getResumeFrom() != null || options.getCheckpointListener() != null),
+                "所有分片共用的可选项不支持断点（checkpointListener、resumeFrom），请按分片创建可选项（shardOptions）！");
+        return shard -> options;
+    }
+
+    private <MODEL> ShardedBatchResult<SHARD, MODEL> execute(String operation,
+                                                             String target,
+                                                             Iterable<MODEL> models,
+                                                             Function<? super MODEL, ? extends SHARD> shardKey,
+                                                             Function<? super SHARD, BatchOptions<MODEL>> shardOptions,
+                                                             ShardAction<MODEL> shardAction) {
+        checkHasNullNPE(args(models, shardKey), args("models", "shardKey"));
+
+        final String logId = TimedID.getId();
+        final long start = System.nanoTime();
+        // 先分组（并校验分片id），所有数据都能找到分片后才开始写入
+        Map<SHARD, List<MODEL>> shardModels = new LinkedHashMap<>();
+        for (MODEL model : models) {
+            SHARD shard = shardKey.apply(model);
+            checkArgument(!sqlSessionTemplates.containsKey(shard), "[${target}]未配置分片：[${shard}]，数据：${model}", target, shard, model);
+            shardModels.computeIfAbsent(shard, k -> new ArrayList<>()).add(model);
+        }
+        // 断点及续跑的断点只对应一个分片的数据，不能在分片间共用
+        Map<SHARD, BatchOptions<MODEL>> optionsByShard = new LinkedHashMap<>();
+        Set<BatchOptions<MODEL>> checkpointOptions = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (SHARD shard : shardModels.keySet()) {
+            BatchOptions<MODEL> options = shardOptions == null ? null : shardOptions.apply(shard);
+            if (options != null && (options.getResumeFrom() != null || options.getCheckpointListener() != null)) {
+                checkArgument(!checkpointOptions.add(options), "[${target}]设置了断点的可选项不能在分片间共用，分片：[${shard}]", target, shard);
+            }
+            optionsByShard.put(shard, options);
+        }
+
+        Map<SHARD, CompletableFuture<ShardedBatchResult.ShardResult<SHARD, MODEL>>> futures = new LinkedHashMap<>();
+        for (Map.Entry<SHARD, List<MODEL>> entry : shardModels.entrySet()) {
+            SHARD shard = entry.getKey();
+            List<MODEL> rows = entry.getValue();
+            SqlSessionTemplate sqlSessionTemplate = sqlSessionTemplates.get(shard);
+            BatchOptions<MODEL> options = optionsByShard.get(shard);
+            futures.put(shard, CompletableFuture.supplyAsync(() -> {
+                long shardStart = System.nanoTime();
+                try {
+                    BatchUpdateResult<MODEL> result = shardAction.apply(sqlSessionTemplate, rows, options);
+                    return new ShardedBatchResult.ShardResult<>(shard, rows.size(), result, null, elapsedMillis(shardStart));
+                } catch (Throwable e) {
+                    log.debug("{}_logId：{}，target：{}，分片[{}]处理失败，失败原因：{}", operation, logId, target, shard, e.getMessage());
+                    return new ShardedBatchResult.ShardResult<>(shard, rows.size(), null, e, elapsedMillis(shardStart));
+                }
+            }, executor(shard)));
+        }
+
+        Map<SHARD, ShardedBatchResult.ShardResult<SHARD, MODEL>> shardResults = new LinkedHashMap<>();
+        for (Map.Entry<SHARD, CompletableFuture<ShardedBatchResult.ShardResult<SHARD, MODEL>>> entry : futures.entrySet()) {
+            shardResults.put(entry.getKey(), entry.getValue().join());
+        }
+        ShardedBatchResult<SHARD, MODEL> result = new ShardedBatchResult<>(elapsedMillis(start), shardResults);
+        log.debug("{}_logId：{}，target：{}，分片处理完成。分片数：{}，失败分片数：{}。耗时：{}ms", operation, logId, target, shardResults.size(), result.getFailedShards().size(), result.getElapsedMillis());
+        return result;
+    }
+
+    private Executor executor(SHARD shard) {
+        if (executor != null) return executor;
+        return runnable -> {
+            Thread thread = new Thread(runnable, "ShardedMybatisHelper-" + shard);
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    public ShardedMybatisHelper<SHARD> setBatchSize(int batchSize) {
+        checkArgument(batchSize < 1, "批量大小必须大于0！");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public ShardedMybatisHelper<SHARD> setDialect(Dialect dialect) {
+        this.dialect = dialect;
+        return this;
+    }
+
+    public ShardedMybatisHelper<SHARD> setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedMybatisHelper{" +
+                "shards=" + sqlSessionTemplates.keySet() +
+                ", batchSize=" + batchSize +
+                ", dialect=" + dialect +
+                '}';
+    }
+
+    /**
+     * 单个分片的批量操作
+     *
+     * @param <MODEL> 实体类型
+     */
+    @FunctionalInterface
+    private interface ShardAction<MODEL> {
+        BatchUpdateResult<MODEL> apply(SqlSessionTemplate sqlSessionTemplate, List<MODEL> shardModels, BatchOptions<MODEL> options);
+    }
+}
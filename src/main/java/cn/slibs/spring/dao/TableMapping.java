@@ -0,0 +1,209 @@
+package cn.slibs.spring.dao;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 表与实体的映射（表名、列名及列值的取值方法），用于直接生成原生SQL，如：多行 upsert<br>
+ * 使用示例：
+ * <pre>{@code
+ * TableMapping<User> userTable = TableMapping.<User>of("t_user")
+ *         .id("id", User::getId)
+ *         .column("name", User::getName)
+ *         .column("age", User::getAge);
+ * }</pre>
+ *
+ * @param <MODEL> 实体类型
+ * @since 0.2.4
+ */
+@Getter
+public class TableMapping<MODEL> {
+    /** 表名 */
+    private final String table;
+    /** 列名 与 列值的取值方法（按添加顺序） */
+    private final Map<String, Function<? super MODEL, ?>> columns = new LinkedHashMap<>();
+    /** 主键（或唯一键）列名 */
+    private final List<String> keyColumns = new ArrayList<>();
+
+    TableMapping(String table) {
+        this.table = table;
+    }
+
+    public static <MODEL> TableMapping<MODEL> of(String table) {
+        checkBlank(table, args("table"));
+        return new TableMapping<>(table);
+    }
+
+    /**
+     * 添加主键（或唯一键）列，可多次调用组成联合主键
+     *
+     * @param column 列名
+     * @param getter 列值的取值方法
+     * @return TableMapping
+     */
+    public TableMapping<MODEL> id(String column, Function<? super MODEL, ?> getter) {
+        column(column, getter);
+        keyColumns.add(column);
+        return this;
+    }
+
+    /**
+     * 添加普通列
+     *
+     * @param column 列名
+     * @param getter 列值的取值方法
+     * @return TableMapping
+     */
+    public TableMapping<MODEL> column(String column, Function<? super MODEL, ?> getter) {
+        checkBlank(column, args("column"));
+        checkNullNPE(getter, args("getter"));
+        checkArgument(columns.containsKey(column), "列[${column}]重复！", column);
+        columns.put(column, getter);
+        return this;
+    }
+
+    public Map<String, Function<? super MODEL, ?>> getColumns() {
+        return Collections.unmodifiableMap(columns);
+    }
+
+    public List<String> getKeyColumns() {
+        return Collections.unmodifiableList(keyColumns);
+    }
+
+    /**
+     * 非主键列
+     *
+     * @return 非主键列名
+     */
+    public List<String> getNonKeyColumns() {
+        List<String> nonKeyColumns = new ArrayList<>();
+        for (String column : columns.keySet()) {
+            if (!keyColumns.contains(column)) nonKeyColumns.add(column);
+        }
+        return nonKeyColumns;
+    }
+
+    /**
+     * 按列的顺序获取实体的所有列值
+     *
+     * @param model 实体
+     * @return 列值
+     */
+    public Object[] values(MODEL model) {
+        Object[] values = new Object[columns.size()];
+        int i = 0;
+        for (Function<? super MODEL, ?> getter : columns.values()) {
+            values[i++] = getter.apply(model);
+        }
+        return values;
+    }
+
+    /**
+     * 获取实体的主键值
+     *
+     * @param model 实体
+     * @return 单列主键时为该列的值，联合主键时为按主键列顺序组成的 {@link List}
+     */
+    public Object key(MODEL model) {
+        if (keyColumns.size() == 1) return columns.get(keyColumns.get(0)).apply(model);
+
+        List<Object> key = new ArrayList<>(keyColumns.size());
+        for (String keyColumn : keyColumns) {
+            key.add(columns.get(keyColumn).apply(model));
+        }
+        return key;
+    }
+
+    /**
+     * 与快照相比值发生了变化的非主键列
+     *
+     * @param model    实体
+     * @param snapshot 快照（如：修改前从数据库查出的数据），为 {@code null} 时返回所有非主键列
+     * @return 发生了变化的非主键列名（按列的顺序）
+     */
+    public List<String> changedColumns(MODEL model, MODEL snapshot) {
+        List<String> changedColumns = new ArrayList<>();
+        for (Map.Entry<String, Function<? super MODEL, ?>> entry : columns.entrySet()) {
+            if (keyColumns.contains(entry.getKey())) continue;
+            if (snapshot == null || !Objects.equals(entry.getValue().apply(model), entry.getValue().apply(snapshot))) {
+                changedColumns.add(entry.getKey());
+            }
+        }
+        return changedColumns;
+    }
+
+    /**
+     * 生成只更新指定列的 UPDATE SQL：{@code UPDATE table SET c1 = ?, c2 = ? WHERE k1 = ? AND k2 = ?}，
+     * 参数依次为指定列的值、主键列的值
+     *
+     * @param setColumns 需要更新的列
+     * @return UPDATE SQL
+     */
+    public String updateSql(List<String> setColumns) {
+        checkEmpty(setColumns, args("setColumns"));
+        checkEmpty(keyColumns, args("keyColumns"));
+
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < setColumns.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(setColumns.get(i)).append(" = ?");
+        }
+        sql.append(" WHERE ");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            if (i > 0) sql.append(" AND ");
+            sql.append(keyColumns.get(i)).append(" = ?");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 生成按主键删除 {@code rows} 行数据的 DELETE SQL：单列主键为 {@code DELETE FROM table WHERE k IN (?, ?)}，
+     * 联合主键为 {@code DELETE FROM table WHERE (k1 = ? AND k2 = ?) OR (k1 = ? AND k2 = ?)}，参数按主键列的顺序逐行绑定
+     *
+     * @param rows 行数
+     * @return DELETE SQL
+     */
+    public String deleteSql(int rows) {
+        checkArgument(rows < 1, "行数必须大于0！");
+        checkEmpty(keyColumns, args("keyColumns"));
+
+        StringBuilder sql = new StringBuilder("DELETE FROM ").append(table).append(" WHERE ");
+        if (keyColumns.size() == 1) {
+            sql.append(keyColumns.get(0)).append(" IN (");
+            for (int r = 0; r < rows; r++) {
+                if (r > 0) sql.append(", ");
+                sql.append("?");
+            }
+            return sql.append(")").toString();
+        }
+
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) sql.append(" OR ");
+            sql.append("(");
+            for (int i = 0; i < keyColumns.size(); i++) {
+                if (i > 0) sql.append(" AND ");
+                sql.append(keyColumns.get(i)).append(" = ?");
+            }
+            sql.append(")");
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "TableMapping{" +
+                "table='" + table + '\'' +
+                ", columns=" + columns.keySet() +
+                ", keyColumns=" + keyColumns +
+                '}';
+    }
+}
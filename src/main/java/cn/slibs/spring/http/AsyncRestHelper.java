@@ -0,0 +1,274 @@
+package cn.slibs.spring.http;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * RestTemplate 异步工具：与 {@link RestHelper} 的方法一一对应，返回 {@link CompletableFuture}，请求在指定的线程池中执行。使用示例：
+ * <pre>{@code
+ * // JDK 21+ 可使用虚拟线程：Executors.newVirtualThreadPerTaskExecutor()
+ * AsyncRestHelper asyncRestHelper = AsyncRestHelper.build(restTemplate, Executors.newFixedThreadPool(64), 8);
+ *
+ * CompletableFuture<User> user = asyncRestHelper.getForEntity(userUrl, User.class);
+ * CompletableFuture<Order> order = asyncRestHelper.getForEntity(orderUrl, Order.class);
+ * }</pre>
+ * 同一个 host（{@code host:port}）同时执行的请求数不超过 {@link #getMaxConcurrencyPerHost()}，超出的请求在队列中等待（不占用线程），
+ * 避免某个下游服务变慢时占满线程池而影响其他下游服务的请求。<br>
+ * 请求失败时 CompletableFuture 以 RestTemplate 抛出的异常（如：{@code HttpClientErrorException}）结束；请求开始前取消 CompletableFuture 时不再发送请求
+ *
+ * @since 0.2.4
+ */
+@Getter
+public class AsyncRestHelper {
+    /** 默认的每个 host 的最大并发请求数 */
+    public static final int DEFAULT_MAX_CONCURRENCY_PER_HOST = 16;
+
+    private final RestTemplate restTemplate;
+    /** 执行请求的线程池 */
+    private final Executor executor;
+    /** 每个 host 的最大并发请求数 */
+    private final int maxConcurrencyPerHost;
+
+    @Getter(AccessLevel.NONE)
+    private final RestHelper restHelper;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+
+    AsyncRestHelper(RestTemplate restTemplate, Executor executor, int maxConcurrencyPerHost) {
+        this.restTemplate = restTemplate;
+        this.executor = executor;
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+        this.restHelper = RestHelper.build(restTemplate);
+    }
+
+    public static AsyncRestHelper build(RestTemplate restTemplate, Executor executor) {
+        return build(restTemplate, executor, DEFAULT_MAX_CONCURRENCY_PER_HOST);
+    }
+
+    /**
+     * 创建 AsyncRestHelper
+     *
+     * @param restTemplate          restTemplate
+     * @param executor              执行请求的线程池（请求为阻塞IO，不要使用 {@code ForkJoinPool.commonPool()}）
+     * @param maxConcurrencyPerHost 每个 host 的最大并发请求数
+     * @return AsyncRestHelper
+     */
+    public static AsyncRestHelper build(RestTemplate restTemplate, Executor executor, int maxConcurrencyPerHost) {
+        checkHasNullNPE(args(restTemplate, executor), args("restTemplate", "executor"));
+        checkArgument(maxConcurrencyPerHost < 1, "每个 host 的最大并发请求数必须大于0！");
+        return new AsyncRestHelper(restTemplate, executor, maxConcurrencyPerHost);
+    }
+
+    public <REQ, RES> CompletableFuture<RES> postForEntity(String url, REQ req, HttpHeaders headers, Class<RES> responseType) {
+        return submit(url, () -> restHelper.postForEntity(url, req, headers, responseType));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> postForEntity(String url, REQ req, Class<RES> responseType) {
+        return submit(url, () -> restHelper.postForEntity(url, req, responseType));
+    }
+
+    public <REQ> CompletableFuture<String> postForString(String url, REQ req) {
+        return submit(url, () -> restHelper.postForString(url, req));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> getWithBody(String url, REQ req, HttpHeaders headers, Class<RES> responseType) {
+        return submit(url, () -> restHelper.getWithBody(url, req, headers, responseType));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> getWithBody(String url, REQ req, Class<RES> responseType) {
+        return submit(url, () -> restHelper.getWithBody(url, req, responseType));
+    }
+
+    public <RES> CompletableFuture<RES> getForEntity(String url, HttpHeaders headers, Class<RES> responseType) {
+        return submit(url, () -> restHelper.getForEntity(url, headers, responseType));
+    }
+
+    public <RES> CompletableFuture<RES> getForEntity(String url, Class<RES> responseType) {
+        return submit(url, () -> restHelper.getForEntity(url, responseType));
+    }
+
+    public CompletableFuture<String> getForString(String url) {
+        return submit(url, () -> restHelper.getForString(url));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> exchange(String url, HttpMethod method, REQ req, HttpHeaders headers, Class<RES> responseType) {
+        return submit(url, () -> restHelper.exchange(url, method, req, headers, responseType));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> exchange(String url, HttpMethod method, REQ req, Class<RES> responseType) {
+        return submit(url, () -> restHelper.exchange(url, method, req, responseType));
+    }
+
+    /*
+     * ===============================
+     * *****    返回带泛型的实体    *****
+     * ===============================
+     */
+    public <REQ, RES> CompletableFuture<RES> postForEntity(String url, REQ req, HttpHeaders headers, ParameterizedTypeReference<RES> responseType) {
+        return submit(url, () -> restHelper.postForEntity(url, req, headers, responseType));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> postForEntity(String url, REQ req, ParameterizedTypeReference<RES> responseType) {
+        return submit(url, () -> restHelper.postForEntity(url, req, responseType));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> getWithBody(String url, REQ req, HttpHeaders headers, ParameterizedTypeReference<RES> responseType) {
+        return submit(url, () -> restHelper.getWithBody(url, req, headers, responseType));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> getWithBody(String url, REQ req, ParameterizedTypeReference<RES> responseType) {
+        return submit(url, () -> restHelper.getWithBody(url, req, responseType));
+    }
+
+    public <RES> CompletableFuture<RES> getForEntity(String url, HttpHeaders headers, ParameterizedTypeReference<RES> responseType) {
+        return submit(url, () -> restHelper.getForEntity(url, headers, responseType));
+    }
+
+    public <RES> CompletableFuture<RES> getForEntity(String url, ParameterizedTypeReference<RES> responseType) {
+        return submit(url, () -> restHelper.getForEntity(url, responseType));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> exchange(String url, HttpMethod method, REQ req, HttpHeaders headers, ParameterizedTypeReference<RES> responseType) {
+        return submit(url, () -> restHelper.exchange(url, method, req, headers, responseType));
+    }
+
+    public <REQ, RES> CompletableFuture<RES> exchange(String url, HttpMethod method, REQ req, ParameterizedTypeReference<RES> responseType) {
+        return submit(url, () -> restHelper.exchange(url, method, req, responseType));
+    }
+
+    /**
+     * 正在执行的请求数
+     *
+     * @param host host（{@code host:port}，url 中未指定端口时为 {@code host:-1}）
+     * @return 正在执行的请求数
+     */
+    public int getRunningCount(String host) {
+        HostLimiter limiter = limiters.get(host);
+        return limiter == null ? 0 : limiter.running.get();
+    }
+
+    /**
+     * 等待执行的请求数
+     *
+     * @param host host（{@code host:port}，url 中未指定端口时为 {@code host:-1}）
+     * @return 等待执行的请求数
+     */
+    public int getPendingCount(String host) {
+        HostLimiter limiter = limiters.get(host);
+        return limiter == null ? 0 : limiter.pending.size();
+    }
+
+    private <RES> CompletableFuture<RES> submit(String url, Supplier<RES> call) {
+        checkBlank(url, args("url"));
+        HostLimiter limiter = limiters.computeIfAbsent(host(url), HostLimiter::new);
+
+        CompletableFuture<RES> future = new CompletableFuture<>();
+        limiter.submit(() -> {
+            try {
+                executor.execute(() -> {
+                    RES result = null;
+                    Throwable failure = null;
+                    try {
+                        if (!future.isDone()) result = call.get();
+                    } catch (Throwable e) {
+                        failure = e;
+                    } finally {
+                        // 先释放并发数再结束 CompletableFuture，回调中发起的新请求不会因并发数未释放而排队
+                        limiter.release();
+                    }
+                    if (failure == null) {
+                        future.complete(result);
+                    } else {
+                        future.completeExceptionally(failure);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+                limiter.release();
+            }
+        });
+        return future;
+    }
+
+    static String host(String url) {
+        UriComponents uri = UriComponentsBuilder.fromUriString(url).build();
+        checkArgument(uri.getHost() == null, "url：${url} 中缺少 host！", url);
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncRestHelper{" +
+                "executor=" + executor +
+                ", maxConcurrencyPerHost=" + maxConcurrencyPerHost +
+                '}';
+    }
+
+    /**
+     * 限制同一个 host 的并发请求数：超出上限的请求放入队列，有请求结束时再提交到线程池（不阻塞任何线程）
+     */
+    private final class HostLimiter {
+        private final String host;
+        private final AtomicInteger running = new AtomicInteger();
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+        HostLimiter(String host) {
+            this.host = host;
+        }
+
+        void submit(Runnable task) {
+            pending.offer(task);
+            drain();
+        }
+
+        void release() {
+            running.decrementAndGet();
+            drain();
+        }
+
+        /**
+         * 在并发数未达到上限时取出等待的请求提交到线程池
+         */
+        private void drain() {
+            while (!pending.isEmpty()) {
+                int n = running.get();
+                if (n >= maxConcurrencyPerHost) return;
+                if (!running.compareAndSet(n, n + 1)) continue;
+
+                Runnable task = pending.poll();
+                if (task == null) {
+                    running.decrementAndGet();
+                } else {
+                    task.run();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "HostLimiter{" +
+                    "host='" + host + '\'' +
+                    ", running=" + running +
+                    ", pending=" + pending.size() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package cn.slibs.spring.page;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 总数缓存：按查询签名缓存，超过有效期的总数视为不存在，超过数量上限时淘汰最久未使用的总数
+ *
+ * @since 0.2.4
+ */
+final class CountCache {
+    private final long ttlNanos;
+    private final Map<Object, CountEntry> entries;
+
+    CountCache(long ttlMillis, int maxSize) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<Object, CountEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CountEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized Long get(Object signature) {
+        CountEntry entry = entries.get(signature);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.createdNanos >= ttlNanos) {
+            entries.remove(signature);
+            return null;
+        }
+        return entry.count;
+    }
+
+    synchronized void put(Object signature, long count) {
+        entries.put(signature, new CountEntry(count, System.nanoTime()));
+    }
+
+    synchronized void invalidate(Object signature) {
+        entries.remove(signature);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class CountEntry {
+        private final long count;
+        private final long createdNanos;
+
+        CountEntry(long count, long createdNanos) {
+            this.count = count;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package cn.slibs.spring.page;
+
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 估算查询的行数（用于 {@link CountMode#APPROXIMATE}）
+ *
+ * @since 0.2.4
+ */
+@FunctionalInterface
+public interface CountEstimator {
+    /**
+     * 估算查询的行数
+     *
+     * @param connection       数据库连接
+     * @param sql              查询SQL（含 {@code ?} 占位符）
+     * @param parameterHandler 设置查询SQL的参数
+     * @return 估算的行数，无法估算时返回 {@code null}（统计精确的总数）
+     * @throws SQLException SQL异常
+     */
+    Long estimate(Connection connection, String sql, ParameterHandler parameterHandler) throws SQLException;
+
+    /**
+     * 根据数据库执行计划估算行数，其他数据库返回 {@code null}：
+     * <ul>
+     *     <li>MySQL/MariaDB：{@code EXPLAIN} 的 {@code rows × filtered / 100}（{@code rows} 为扫描的行数，需按 {@code filtered} 折算为满足条件的行数）。
+     *     只估算单表查询，执行计划有多行（关联查询、子查询、派生表等）或没有 {@code filtered} 列时返回 {@code null}；</li>
+     *     <li>PostgreSQL：{@code EXPLAIN (FORMAT JSON)} 顶层节点的 {@code Plan Rows}（已考虑过滤条件及关联）。</li>
+     * </ul>
+     */
+    CountEstimator EXPLAIN = new CountEstimator() {
+        private final Pattern planRows = Pattern.compile("\"Plan Rows\"\\s*:\\s*([0-9.eE+]+)");
+
+        @Override
+        public Long estimate(Connection connection, String sql, ParameterHandler parameterHandler) throws SQLException {
+            String databaseProductName = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            boolean postgresql = databaseProductName.contains("postgresql");
+            if (!postgresql && !databaseProductName.contains("mysql") && !databaseProductName.contains("mariadb")) return null;
+
+            try (PreparedStatement ps = connection.prepareStatement((postgresql ? "EXPLAIN (FORMAT JSON) " : "EXPLAIN ") + sql)) {
+                parameterHandler.setParameters(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    if (!postgresql) return mysqlRows(rs);
+
+                    Matcher matcher = planRows.matcher(rs.getString(1));
+                    return matcher.find() ? (long) Double.parseDouble(matcher.group(1)) : null;
+                }
+            }
+        }
+
+        private Long mysqlRows(ResultSet rs) throws SQLException {
+            if (!hasColumn(rs.getMetaData(), "filtered")) return null;
+
+            long rows = rs.getLong("rows");
+            if (rs.wasNull()) return null;
+            double filtered = rs.getDouble("filtered");
+            if (rs.wasNull()) return null;
+            // 执行计划有多行时只描述了其中一张表
+            if (rs.next()) return null;
+            return (long) (rows * filtered / 100);
+        }
+
+        private boolean hasColumn(ResultSetMetaData metaData, String column) throws SQLException {
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if (column.equalsIgnoreCase(metaData.getColumnLabel(i))) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "CountEstimator.EXPLAIN";
+        }
+    };
+}
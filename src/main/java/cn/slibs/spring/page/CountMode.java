@@ -0,0 +1,25 @@
+package cn.slibs.spring.page;
+
+/**
+ * 分页查询统计总数的方式
+ *
+ * @since 0.2.4
+ */
+public enum CountMode {
+    /**
+     * 每次都执行 {@code COUNT(*)} 统计精确的总数
+     */
+    EXACT,
+    /**
+     * 按查询签名缓存 {@code COUNT(*)} 的结果（有过期时间及数量上限），缓存有效期内的总数可能与实际不一致
+     */
+    CACHED,
+    /**
+     * 数据库估算的行数（如：{@code EXPLAIN}）不小于阈值时，直接使用估算的行数作为总数，否则统计精确的总数
+     */
+    APPROXIMATE,
+    /**
+     * 不统计总数，多查询一条数据来判断是否有下一页，总数及总页数为 {@code null}
+     */
+    HAS_NEXT
+}
@@ -0,0 +1,328 @@
+package cn.slibs.spring.page;
+
+import com.github.pagehelper.PageHelper;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 分页查询统计总数的策略（详见 {@link CountMode}），使用示例：
+ * <pre>{@code
+ * private static final CountStrategy USER_COUNT = CountStrategy.of(CountMode.CACHED).setCacheTtlMillis(30_000);
+ *
+ * PageV3<User> page = USER_COUNT.pageV3(PageQuery.of(sqlSessionTemplate, UserMapper.class, "selectList", criteria), pageNum, pageSize);
+ * }</pre>
+ * 需注册 PageHelper 的拦截器，查询前不要调用 {@code PageHelper.startPage}。同一个实例可在多个线程中共用（总数缓存在实例中）<br>
+ * 设置了 {@link #setExecutor 线程池} 时，统计总数与查询数据在不同的数据库连接上并发执行，耗时约为两者中的较大值而不是两者之和；
+ * 在事务中（需要读取事务内未提交的数据）、命中缓存或线程池拒绝执行时仍按顺序执行
+ *
+ * @since 0.2.4
+ */
+@Slf4j
+@Getter
+public class CountStrategy {
+    /** 默认的缓存有效期（毫秒） */
+    public static final long DEFAULT_CACHE_TTL_MILLIS = 60_000;
+    /** 默认的缓存数量上限 */
+    public static final int DEFAULT_CACHE_MAX_SIZE = 1000;
+    /** 默认的估算行数阈值 */
+    public static final long DEFAULT_APPROXIMATE_THRESHOLD = 100_000;
+
+    /** 统计总数的方式 */
+    private final CountMode mode;
+    /** 缓存有效期（毫秒），{@link CountMode#CACHED} 时有效 */
+    private long cacheTtlMillis = DEFAULT_CACHE_TTL_MILLIS;
+    /** 缓存数量上限，{@link CountMode#CACHED} 时有效 */
+    private int cacheMaxSize = DEFAULT_CACHE_MAX_SIZE;
+    /** 估算的行数不小于该阈值时使用估算的行数，{@link CountMode#APPROXIMATE} 时有效 */
+    private long approximateThreshold = DEFAULT_APPROXIMATE_THRESHOLD;
+    /** 估算行数的方式，{@link CountMode#APPROXIMATE} 时有效 */
+    private CountEstimator estimator = CountEstimator.EXPLAIN;
+    /** 并发统计总数的线程池，为 {@code null} 时按顺序执行 */
+    private Executor executor;
+
+    @Getter(AccessLevel.NONE)
+    private volatile CountCache cache;
+
+    CountStrategy(CountMode mode) {
+        this.mode = mode;
+        this.cache = mode == CountMode.CACHED ? new CountCache(cacheTtlMillis, cacheMaxSize) : null;
+    }
+
+    public static CountStrategy of(CountMode mode) {
+        checkNullNPE(mode, args("mode"));
+        return new CountStrategy(mode);
+    }
+
+    /**
+     * 分页查询
+     *
+     * @param query    分页查询
+     * @param pageNum  页码（从1开始）
+     * @param pageSize 每页数量
+     * @param <T>      数据类型
+     * @return <b>swagger-v3</b> 的分页类
+     */
+    public <T> PageV3<T> pageV3(PageQuery<T> query, int pageNum, int pageSize) {
+        return page(query, pageNum, pageSize).toPageV3();
+    }
+
+    /**
+     * 分页查询
+     *
+     * @param query    分页查询
+     * @param pageNum  页码（从1开始）
+     * @param pageSize 每页数量
+     * @param <T>      数据类型
+     * @return <b>swagger-v2</b> 的分页类
+     */
+    public <T> PageV2<T> pageV2(PageQuery<T> query, int pageNum, int pageSize) {
+        return page(query, pageNum, pageSize).toPageV2();
+    }
+
+    <T> PageSlice<T> page(PageQuery<T> query, int pageNum, int pageSize) {
+        checkNullNPE(query, args("query"));
+        checkArgument(pageNum < 1, "页码必须大于0！");
+        checkArgument(pageSize < 1, "每页数量必须大于0！");
+        checkArgument((long) pageNum * pageSize + 1 > Integer.MAX_VALUE, "页码过大！");
+
+        if (mode == CountMode.HAS_NEXT) return selectHasNext(query, pageNum, pageSize);
+
+        Executor executor = this.executor;
+        if (executor != null && !inTransaction()) {
+            CountCache cache = this.cache;
+            Long cached = cache == null ? null : cache.get(query.getSignature());
+            if (cached == null) {
+                CompletableFuture<Count> countFuture = null;
+                try {
+                    countFuture = CompletableFuture.supplyAsync(() -> count(query), executor);
+                } catch (RejectedExecutionException e) {
+                    log.warn("[{}]线程池拒绝执行，按顺序统计总数：{}", query.getSignature(), e.getMessage());
+                }
+                if (countFuture != null) {
+                    List<T> data = select(query, pageNum, pageSize);
+                    return slice(pageNum, pageSize, join(countFuture), data);
+                }
+            }
+        }
+
+        Count count = count(query);
+        List<T> data = count.total == 0 ? new ArrayList<>() : select(query, pageNum, pageSize);
+        return slice(pageNum, pageSize, count, data);
+    }
+
+    /**
+     * 是否在 Spring 事务中（其他线程的数据库连接读取不到事务内未提交的数据）
+     */
+    static boolean inTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive() || TransactionSynchronizationManager.isSynchronizationActive();
+    }
+
+    private static Count join(CompletableFuture<Count> countFuture) {
+        try {
+            return countFuture.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    static <T> PageSlice<T> slice(int pageNum, int pageSize, Count count, List<T> data) {
+        return new PageSlice<>(pageNum, pageSize, count.total, count.mode, (long) pageNum * pageSize < count.total, data);
+    }
+
+    /**
+     * 统计总数
+     *
+     * @param query 分页查询
+     * @return 总数及实际的统计方式
+     */
+    Count count(PageQuery<?> query) {
+        if (mode == CountMode.APPROXIMATE) {
+            Long estimate = estimate(query);
+            if (estimate != null && estimate >= approximateThreshold) return new Count(estimate, CountMode.APPROXIMATE);
+        }
+
+        CountCache cache = this.cache;
+        if (cache == null) return new Count(exactCount(query), CountMode.EXACT);
+
+        Long cached = cache.get(query.getSignature());
+        if (cached != null) return new Count(cached, CountMode.CACHED);
+        long total = exactCount(query);
+        cache.put(query.getSignature(), total);
+        return new Count(total, CountMode.EXACT);
+    }
+
+    static long exactCount(PageQuery<?> query) {
+        return PageHelper.count(() -> query.getSelect().get());
+    }
+
+    /**
+     * 查询一页数据（不统计总数）
+     */
+    static <T> List<T> select(PageQuery<T> query, int pageNum, int pageSize) {
+        PageHelper.startPage(pageNum, pageSize, false);
+        try {
+            return query.getSelect().get();
+        } finally {
+            PageHelper.clearPage();
+        }
+    }
+
+    /**
+     * 多查询一条数据来判断是否有下一页
+     */
+    static <T> PageSlice<T> selectHasNext(PageQuery<T> query, int pageNum, int pageSize) {
+        List<T> data;
+        PageHelper.offsetPage((pageNum - 1) * pageSize, pageSize + 1, false);
+        try {
+            data = query.getSelect().get();
+        } finally {
+            PageHelper.clearPage();
+        }
+
+        boolean hasNext = data.size() > pageSize;
+        if (hasNext) data.subList(pageSize, data.size()).clear();
+        return new PageSlice<>(pageNum, pageSize, null, CountMode.HAS_NEXT, hasNext, data);
+    }
+
+    private Long estimate(PageQuery<?> query) {
+        SqlSessionTemplate sqlSessionTemplate = query.getSqlSessionTemplate();
+        if (sqlSessionTemplate == null || estimator == null) return null;
+
+        Configuration configuration = sqlSessionTemplate.getConfiguration();
+        MappedStatement mappedStatement = configuration.getMappedStatement(query.getStatement());
+        BoundSql boundSql = mappedStatement.getBoundSql(query.getParameter());
+        ParameterHandler parameterHandler = configuration.newParameterHandler(mappedStatement, query.getParameter(), boundSql);
+        try (SqlSession sqlSession = sqlSessionTemplate.getSqlSessionFactory().openSession()) {
+            return estimator.estimate(sqlSession.getConnection(), boundSql.getSql(), parameterHandler);
+        } catch (Exception e) {
+            log.warn("[{}]估算行数异常，统计精确的总数：{}", query.getStatement(), e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 使缓存的总数失效（如：新增或删除数据后）
+     *
+     * @param signature 查询签名，见 {@link PageQuery#getSignature()}
+     */
+    public void invalidate(Object signature) {
+        CountCache cache = this.cache;
+        if (cache != null) cache.invalidate(signature);
+    }
+
+    /**
+     * 清空缓存的总数
+     */
+    public void clearCache() {
+        CountCache cache = this.cache;
+        if (cache != null) cache.clear();
+    }
+
+    /**
+     * 缓存的总数的数量
+     *
+     * @return 缓存的总数的数量
+     */
+    public int getCacheSize() {
+        CountCache cache = this.cache;
+        return cache == null ? 0 : cache.size();
+    }
+
+    /**
+     * 设置缓存有效期（会清空已缓存的总数）
+     *
+     * @param cacheTtlMillis 缓存有效期（毫秒）
+     * @return CountStrategy
+     */
+    public CountStrategy setCacheTtlMillis(long cacheTtlMillis) {
+        checkArgument(cacheTtlMillis < 1, "缓存有效期必须大于0！");
+        this.cacheTtlMillis = cacheTtlMillis;
+        resetCache();
+        return this;
+    }
+
+    /**
+     * 设置缓存数量上限（会清空已缓存的总数）
+     *
+     * @param cacheMaxSize 缓存数量上限
+     * @return CountStrategy
+     */
+    public CountStrategy setCacheMaxSize(int cacheMaxSize) {
+        checkArgument(cacheMaxSize < 1, "缓存数量上限必须大于0！");
+        this.cacheMaxSize = cacheMaxSize;
+        resetCache();
+        return this;
+    }
+
+    public CountStrategy setApproximateThreshold(long approximateThreshold) {
+        checkArgument(approximateThreshold < 0, "估算行数阈值不能小于0！");
+        this.approximateThreshold = approximateThreshold;
+        return this;
+    }
+
+    public CountStrategy setEstimator(CountEstimator estimator) {
+        checkNullNPE(estimator, args("estimator"));
+        this.estimator = estimator;
+        return this;
+    }
+
+    /**
+     * 设置并发统计总数的线程池（线程数需考虑数据库连接池的大小，每次分页查询同时占用两个连接）
+     *
+     * @param executor 线程池，为 {@code null} 时按顺序执行
+     * @return CountStrategy
+     */
+    public CountStrategy setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    private void resetCache() {
+        if (mode == CountMode.CACHED) this.cache = new CountCache(cacheTtlMillis, cacheMaxSize);
+    }
+
+    @Override
+    public String toString() {
+        return "CountStrategy{" +
+                "mode=" + mode +
+                ", cacheTtlMillis=" + cacheTtlMillis +
+                ", cacheMaxSize=" + cacheMaxSize +
+                ", approximateThreshold=" + approximateThreshold +
+                ", estimator=" + estimator +
+                ", executor=" + executor +
+                '}';
+    }
+
+    /**
+     * 总数及实际的统计方式
+     */
+    static final class Count {
+        final long total;
+        final CountMode mode;
+
+        Count(long total, CountMode mode) {
+            this.total = total;
+            this.mode = mode;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package cn.slibs.spring.page;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 键集分页（seek pagination）的排序键定义：按排序键定位到上一页最后一条数据之后，而不是 OFFSET 跳过前面的数据，
+ * 第 10000 页与第 1 页的查询代价相同（需要有对应排序键的索引）<br>
+ * 排序键需唯一（最后一个排序键一般为主键），且值不能为 {@code null}。使用示例：
+ * <pre>{@code
+ * private static final Keyset<User> USER_KEYSET = Keyset.<User>build().desc("create_time", User::getCreateTime).desc("id", User::getId);
+ *
+ * KeysetPage<User> page = Pages.keyset(USER_KEYSET, request, keyset -> userMapper.selectPage(status, keyset));
+ * }</pre>
+ * mapper 的查询参数名需为 {@link #getParamName()}（默认：{@code keyset}）：
+ * <pre>{@code
+ * List<User> selectPage(@Param("status") int status, @Param("keyset") KeysetSeek keyset);
+ *
+ * <select id="selectPage" resultType="User">
+ *     SELECT * FROM t_user WHERE status = #{status}
+ *     <if test="keyset.seek != null">AND ${keyset.seek}</if>
+ *     ORDER BY ${keyset.orderBy} LIMIT #{keyset.limit}
+ * </select>
+ * }</pre>
+ * {@code ${keyset.seek}} 中排序键的值仍以 {@code #{keyset.values[i]}} 预编译参数的形式传入，不会产生SQL注入
+ *
+ * @param <T> 数据类型
+ * @since 0.2.4
+ */
+public class Keyset<T> {
+    /** 列名（可带表别名，如：{@code u.create_time}） */
+    private static final Pattern COLUMN_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*(\\.[A-Za-z_][A-Za-z0-9_$]*)?");
+    public static final String DEFAULT_PARAM_NAME = "keyset";
+
+    /** 排序键 */
+    private final List<SortKey<T>> sortKeys = new ArrayList<>();
+    /** mapper 中 {@link KeysetSeek} 的参数名 */
+    @Getter
+    private String paramName = DEFAULT_PARAM_NAME;
+    /** 生成的排序子句及定位条件（修改排序键或参数名时重新生成） */
+    private volatile String orderBy;
+    private volatile String seek;
+
+    Keyset() {
+    }
+
+    public static <T> Keyset<T> build() {
+        return new Keyset<>();
+    }
+
+    /**
+     * 添加升序排序键
+     *
+     * @param column    列名
+     * @param extractor 从数据中提取排序键的值，如：（{@code User::getId}）
+     * @return Keyset
+     */
+    public Keyset<T> asc(String column, Function<? super T, ?> extractor) {
+        return sortKey(column, extractor, false);
+    }
+
+    /**
+     * 添加降序排序键
+     *
+     * @param column    列名
+     * @param extractor 从数据中提取排序键的值，如：（{@code User::getId}）
+     * @return Keyset
+     */
+    public Keyset<T> desc(String column, Function<? super T, ?> extractor) {
+        return sortKey(column, extractor, true);
+    }
+
+    private Keyset<T> sortKey(String column, Function<? super T, ?> extractor, boolean descending) {
+        checkBlank(column, args("column"));
+        checkNullNPE(extractor, args("extractor"));
+        checkArgument(!COLUMN_PATTERN.matcher(column).matches(), "无效的列名：[${column}]！", column);
+
+        sortKeys.add(new SortKey<>(column, extractor, descending));
+        this.orderBy = null;
+        this.seek = null;
+        return this;
+    }
+
+    public Keyset<T> setParamName(String paramName) {
+        checkBlank(paramName, args("paramName"));
+        this.paramName = paramName;
+        this.seek = null;
+        return this;
+    }
+
+    public List<SortKey<T>> getSortKeys() {
+        return Collections.unmodifiableList(sortKeys);
+    }
+
+    /**
+     * 排序子句，如：{@code create_time DESC, id DESC}
+     *
+     * @return 排序子句
+     */
+    String orderBy() {
+        if (this.orderBy == null) this.orderBy = buildOrderBy();
+        return this.orderBy;
+    }
+
+    private String buildOrderBy() {
+        StringBuilder orderBy = new StringBuilder();
+        for (SortKey<T> sortKey : sortKeys) {
+            if (orderBy.length() > 0) orderBy.append(", ");
+            orderBy.append(sortKey.column).append(sortKey.descending ? " DESC" : " ASC");
+        }
+        return orderBy.toString();
+    }
+
+    /**
+     * 定位到游标之后的条件，如排序键为 {@code (a ASC, b ASC)} 时：
+     * {@code (a >= #{keyset.values[0]} AND (a > #{keyset.values[0]} OR (a = #{keyset.values[0]} AND b > #{keyset.values[1]})))}，
+     * 第一个排序键的范围条件使各数据库都能走索引的范围扫描
+     *
+     * @return 定位条件
+     */
+    String seek() {
+        if (this.seek == null) this.seek = buildSeek();
+        return this.seek;
+    }
+
+    private String buildSeek() {
+        StringBuilder seek = new StringBuilder("(");
+        int size = sortKeys.size();
+        if (size > 1) {
+            SortKey<T> first = sortKeys.get(0);
+            seek.append(first.column).append(first.descending ? " <= " : " >= ").append(value(0)).append(" AND (");
+        }
+        for (int i = 0; i < size; i++) {
+            if (i > 0) seek.append(" OR ");
+            seek.append("(");
+            for (int j = 0; j < i; j++) {
+                seek.append(sortKeys.get(j).column).append(" = ").append(value(j)).append(" AND ");
+            }
+            SortKey<T> sortKey = sortKeys.get(i);
+            seek.append(sortKey.column).append(sortKey.descending ? " < " : " > ").append(value(i)).append(")");
+        }
+        if (size > 1) seek.append(")");
+        return seek.append(")").toString();
+    }
+
+    private String value(int index) {
+        return "#{" + paramName + ".values[" + index + "]}";
+    }
+
+    /**
+     * 提取数据的排序键的值
+     *
+     * @param row 数据
+     * @return 排序键的值
+     */
+    List<Object> keys(T row) {
+        List<Object> keys = new ArrayList<>(sortKeys.size());
+        for (SortKey<T> sortKey : sortKeys) {
+            Object key = sortKey.extractor.apply(row);
+            checkState(key == null, "排序键[${column}]的值不能为 null！", sortKey.column);
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    @Override
+    public String toString() {
+        return "Keyset{" +
+                "orderBy='" + orderBy() + '\'' +
+                ", paramName='" + paramName + '\'' +
+                '}';
+    }
+
+    /**
+     * 排序键
+     *
+     * @param <T> 数据类型
+     */
+    @Getter
+    public static class SortKey<T> {
+        private final String column;
+        private final Function<? super T, ?> extractor;
+        private final boolean descending;
+
+        SortKey(String column, Function<? super T, ?> extractor, boolean descending) {
+            this.column = column;
+            this.extractor = extractor;
+            this.descending = descending;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package cn.slibs.spring.page;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 键集分页的游标编解码：排序键的值按类型序列化后 Base64（URL安全）编码，对客户端不透明
+ *
+ * @since 0.2.4
+ */
+final class KeysetCursor {
+    private static final byte VERSION = 1;
+
+    private static final byte LONG = 'L';
+    private static final byte INTEGER = 'I';
+    private static final byte SHORT = 'H';
+    private static final byte BYTE = 'Y';
+    private static final byte DOUBLE = 'F';
+    private static final byte FLOAT = 'f';
+    private static final byte BIG_DECIMAL = 'N';
+    private static final byte BIG_INTEGER = 'n';
+    private static final byte STRING = 'S';
+    private static final byte BOOLEAN = 'B';
+    private static final byte TIMESTAMP = 'T';
+    private static final byte DATE = 'D';
+    private static final byte INSTANT = 'i';
+    private static final byte LOCAL_DATE_TIME = 'l';
+    private static final byte LOCAL_DATE = 'd';
+    private static final byte LOCAL_TIME = 't';
+    private static final byte OFFSET_DATE_TIME = 'o';
+    private static final byte UUID_VALUE = 'U';
+
+    private KeysetCursor() {
+    }
+
+    static String encode(List<Object> values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(values.size());
+            for (Object value : values) {
+                write(out, value);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * 解码游标
+     *
+     * @param cursor 游标
+     * @param size   排序键的数量
+     * @return 排序键的值
+     * @throws IllegalArgumentException 游标无效或与排序键不匹配
+     */
+    static List<Object> decode(String cursor, int size) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            byte version = in.readByte();
+            int count = in.readUnsignedByte();
+            checkArgument(version != VERSION || count != size, "无效的分页游标：[${cursor}]！", cursor);
+
+            List<Object> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(read(in));
+            }
+            checkArgument(in.available() > 0, "无效的分页游标：[${cursor}]！", cursor);
+            return values;
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof IllegalArgumentException) throw (IllegalArgumentException) e;
+            throw new IllegalArgumentException("无效的分页游标：[" + cursor + "]！", e);
+        }
+    }
+
+    private static void write(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            out.writeUTF(value.toString());
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Instant) {
+            out.writeByte(INSTANT);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalTime) {
+            out.writeByte(LOCAL_TIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof OffsetDateTime) {
+            out.writeByte(OFFSET_DATE_TIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof UUID) {
+            out.writeByte(UUID_VALUE);
+            out.writeUTF(value.toString());
+        } else {
+            throw new IllegalArgumentException("不支持的排序键类型：[" + value.getClass().getName() + "]！");
+        }
+    }
+
+    private static Object read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case LONG:
+                return in.readLong();
+            case INTEGER:
+                return in.readInt();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case BIG_DECIMAL:
+                return new BigDecimal(in.readUTF());
+            case BIG_INTEGER:
+                return new BigInteger(in.readUTF());
+            case STRING:
+                return in.readUTF();
+            case BOOLEAN:
+                return in.readBoolean();
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case DATE:
+                return new Date(in.readLong());
+            case INSTANT:
+                return Instant.parse(in.readUTF());
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.parse(in.readUTF());
+            case LOCAL_DATE:
+                return LocalDate.parse(in.readUTF());
+            case LOCAL_TIME:
+                return LocalTime.parse(in.readUTF());
+            case OFFSET_DATE_TIME:
+                return OffsetDateTime.parse(in.readUTF());
+            case UUID_VALUE:
+                return UUID.fromString(in.readUTF());
+            default:
+                throw new IllegalArgumentException("未知的排序键类型：" + type);
+        }
+    }
+}
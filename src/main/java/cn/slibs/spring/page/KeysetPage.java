@@ -0,0 +1,63 @@
+package cn.slibs.spring.page;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 键集分页的结果：当前页数据及下一页的游标
+ *
+ * @param <T> 数据类型
+ * @since 0.2.4
+ */
+@Getter
+public class KeysetPage<T> {
+    /** 每页数量 */
+    private final int pageSize;
+    /** 当前页数据 */
+    private final List<T> data;
+    /** 下一页的游标，没有下一页时为 {@code null} */
+    private final String nextCursor;
+
+    KeysetPage(int pageSize, List<T> data, String nextCursor) {
+        this.pageSize = pageSize;
+        this.data = data;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * 是否有下一页
+     *
+     * @return 有下一页返回 {@code true}
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * 转为带下一页游标的 <b>swagger-v3</b> 分页类（键集分页不统计总数，{@code pageNum}、{@code total}、{@code pages} 为 {@code null}）
+     *
+     * @return <b>swagger-v3</b> 的分页类
+     */
+    public KeysetPageV3<T> toPageV3() {
+        return new KeysetPageV3<>(pageSize, data, nextCursor);
+    }
+
+    /**
+     * 转为带下一页游标的 <b>swagger-v2</b> 分页类（键集分页不统计总数，{@code pageNum}、{@code total}、{@code pages} 为 {@code null}）
+     *
+     * @return <b>swagger-v2</b> 的分页类
+     */
+    public KeysetPageV2<T> toPageV2() {
+        return new KeysetPageV2<>(pageSize, data, nextCursor);
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetPage{" +
+                "pageSize=" + pageSize +
+                ", nextCursor='" + nextCursor + '\'' +
+                ", data=" + data +
+                '}';
+    }
+}
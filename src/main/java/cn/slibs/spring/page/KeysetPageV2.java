@@ -0,0 +1,39 @@
+package cn.slibs.spring.page;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * 带下一页游标的 <b>swagger-v2</b> 分页类（键集分页不统计总数，{@code pageNum}、{@code total}、{@code pages} 为 {@code null}）
+ *
+ * @param <T> 数据类型
+ * @since 0.2.4
+ */
+@Getter
+@Setter
+public class KeysetPageV2<T> extends cn.slibs.base.page.v2.Page<T> {
+    /** 下一页的游标（请求下一页时传入 {@link KeysetRequest#of(int, String)}），没有下一页时为 {@code null} */
+    private String nextCursor;
+    /** 是否有下一页 */
+    private Boolean hasNext;
+
+    public KeysetPageV2() {
+    }
+
+    public KeysetPageV2(Integer pageSize, List<T> data, String nextCursor) {
+        super(pageSize, null, null, null, data);
+        this.nextCursor = nextCursor;
+        this.hasNext = nextCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetPageV2{" +
+                "nextCursor='" + nextCursor + '\'' +
+                ", hasNext=" + hasNext +
+                ", page=" + super.toString() +
+                '}';
+    }
+}
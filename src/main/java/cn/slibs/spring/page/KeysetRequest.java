@@ -0,0 +1,47 @@
+package cn.slibs.spring.page;
+
+import lombok.Getter;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 键集分页的请求：每页数量及上一页返回的游标（{@link KeysetPage#getNextCursor()}）
+ *
+ * @since 0.2.4
+ */
+@Getter
+public class KeysetRequest {
+    /** 每页数量 */
+    private final int pageSize;
+    /** 上一页返回的游标，为 {@code null} 时查询第一页 */
+    private final String cursor;
+
+    KeysetRequest(int pageSize, String cursor) {
+        this.pageSize = pageSize;
+        this.cursor = cursor;
+    }
+
+    public static KeysetRequest of(int pageSize) {
+        return of(pageSize, null);
+    }
+
+    /**
+     * 创建请求
+     *
+     * @param pageSize 每页数量
+     * @param cursor   上一页返回的游标，为 {@code null} 或空字符串时查询第一页
+     * @return 请求
+     */
+    public static KeysetRequest of(int pageSize, String cursor) {
+        checkArgument(pageSize < 1, "每页数量必须大于0！");
+        return new KeysetRequest(pageSize, cursor == null || cursor.isEmpty() ? null : cursor);
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetRequest{" +
+                "pageSize=" + pageSize +
+                ", cursor='" + cursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,39 @@
+package cn.slibs.spring.page;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 键集分页传给 mapper 的查询参数，用法详见 {@link Keyset}
+ *
+ * @since 0.2.4
+ */
+@Getter
+public class KeysetSeek {
+    /** 定位到游标之后的条件，查询第一页时为 {@code null} */
+    private final String seek;
+    /** 排序子句 */
+    private final String orderBy;
+    /** 查询数量（每页数量 + 1，多查询的一条用于判断是否有下一页） */
+    private final int limit;
+    /** 游标中排序键的值 */
+    private final List<Object> values;
+
+    KeysetSeek(String seek, String orderBy, int limit, List<Object> values) {
+        this.seek = seek;
+        this.orderBy = orderBy;
+        this.limit = limit;
+        this.values = values;
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetSeek{" +
+                "seek='" + seek + '\'' +
+                ", orderBy='" + orderBy + '\'' +
+                ", limit=" + limit +
+                ", values=" + values +
+                '}';
+    }
+}
@@ -0,0 +1,33 @@
+package cn.slibs.spring.page;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * 只读的映射视图：不复制源数据，每次访问元素时才通过映射函数转换（多次访问同一元素会多次转换）
+ *
+ * @param <S> 源数据类型
+ * @param <T> 映射后的数据类型
+ * @since 0.2.4
+ */
+final class MappedList<S, T> extends AbstractList<T> implements RandomAccess {
+    private final List<S> source;
+    private final Function<? super S, ? extends T> mapper;
+
+    MappedList(List<S> source, Function<? super S, ? extends T> mapper) {
+        this.source = source;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public T get(int index) {
+        return mapper.apply(source.get(index));
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+}
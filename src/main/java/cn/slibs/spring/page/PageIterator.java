@@ -0,0 +1,302 @@
+package cn.slibs.spring.page;
+
+import com.iofairy.except.GeneralException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 逐页遍历查询的所有数据（如：导出），后台线程预取下一页：处理第 N 页的同时查询第 N+1 页，耗时取决于处理速度而不是查询耗时 × 页数<br>
+ * 最多预取 {@link #getPrefetch()} 页，内存中最多只保留 {@code prefetch + 2} 页数据；提前结束遍历时需调用 {@link #close()}（或关闭 {@link #stream()}），
+ * 关闭时等待正在执行的查询结束后返回。使用示例：
+ * <pre>{@code
+ * try (Stream<User> users = PageIterator.of(USER_KEYSET, seek -> userMapper.selectPage(status, seek), 1000).stream()) {
+ *     users.forEach(writer::write);
+ * }
+ * }</pre>
+ * 支持按页码分页（PageHelper，不统计总数）及键集分页（{@link Keyset}，深分页不会变慢，推荐）。<br>
+ * <b>注：</b>查询在后台线程（独立的数据库连接）中执行，读取不到当前事务中未提交的数据
+ *
+ * @param <T> 数据类型
+ * @since 0.2.4
+ */
+@Slf4j
+public class PageIterator<T> implements Iterator<List<T>>, AutoCloseable {
+    /** 默认预取的页数 */
+    public static final int DEFAULT_PREFETCH = 1;
+
+    /** 查询描述（用于日志及异常信息） */
+    @Getter
+    private final String name;
+    /** 每页数量 */
+    @Getter
+    private final int pageSize;
+    /** 预取的页数 */
+    @Getter
+    private int prefetch = DEFAULT_PREFETCH;
+    /** 执行查询的线程池，为 {@code null} 时创建一个新线程 */
+    @Getter
+    private Executor executor;
+
+    private final PageFetcher<T> fetcher;
+    private Fetcher prefetcher;
+    /** 以下字段只在遍历线程中访问 */
+    private List<T> current;
+    private boolean finished;
+
+    PageIterator(String name, int pageSize, PageFetcher<T> fetcher) {
+        this.name = name;
+        this.pageSize = pageSize;
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * 按页码分页遍历（PageHelper，不统计总数）
+     *
+     * @param query    分页查询
+     * @param pageSize 每页数量
+     * @param <T>      数据类型
+     * @return PageIterator
+     */
+    public static <T> PageIterator<T> of(PageQuery<T> query, int pageSize) {
+        checkNullNPE(query, args("query"));
+        checkArgument(pageSize < 1, "每页数量必须大于0！");
+
+        return new PageIterator<>(String.valueOf(query.getSignature()), pageSize, new PageFetcher<T>() {
+            int pageNum = 1;
+
+            @Override
+            List<T> fetch() {
+                checkState((long) pageNum * pageSize + 1 > Integer.MAX_VALUE, "页码过大！");
+                PageSlice<T> slice = CountStrategy.selectHasNext(query, pageNum++, pageSize);
+                last = !slice.hasNext;
+                return slice.data;
+            }
+        });
+    }
+
+    /**
+     * 按键集分页遍历，用法详见 {@link Keyset}
+     *
+     * @param keyset   排序键定义
+     * @param query    执行查询，如：（{@code seek -> userMapper.selectPage(status, seek)}）
+     * @param pageSize 每页数量
+     * @param <T>      数据类型
+     * @return PageIterator
+     */
+    public static <T> PageIterator<T> of(Keyset<T> keyset, Function<? super KeysetSeek, List<T>> query, int pageSize) {
+        checkHasNullNPE(args(keyset, query), args("keyset", "query"));
+        checkArgument(pageSize < 1, "每页数量必须大于0！");
+
+        return new PageIterator<>(keyset.toString(), pageSize, new PageFetcher<T>() {
+            String cursor;
+
+            @Override
+            List<T> fetch() {
+                KeysetPage<T> page = Pages.keyset(keyset, KeysetRequest.of(pageSize, cursor), query);
+                cursor = page.getNextCursor();
+                last = cursor == null;
+                return page.getData();
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current != null) return true;
+        if (finished) return false;
+        if (prefetcher == null) prefetcher = start();
+
+        List<T> page;
+        try {
+            page = prefetcher.buffer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException(e, "[${name}]等待分页查询时被中断！", name);
+        }
+        if (page == prefetcher.end) {
+            finished = true;
+            if (prefetcher.failure != null) throw new GeneralException(prefetcher.failure, "[${name}]分页查询异常！", name);
+            return false;
+        }
+        current = page;
+        return true;
+    }
+
+    /**
+     * 下一页数据（不为空）
+     *
+     * @return 下一页数据
+     */
+    @Override
+    public List<T> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        List<T> page = current;
+        current = null;
+        return page;
+    }
+
+    /**
+     * 逐条遍历所有数据的流，关闭流时关闭 PageIterator
+     *
+     * @return 数据流
+     */
+    public Stream<T> stream() {
+        Iterator<T> rows = new Iterator<T>() {
+            private Iterator<T> page = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext()) {
+                    if (!PageIterator.this.hasNext()) return false;
+                    page = PageIterator.this.next().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return page.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED), false).onClose(this::close);
+    }
+
+    /**
+     * 停止预取并等待正在执行的查询结束（可重复调用）
+     */
+    @Override
+    public void close() {
+        finished = true;
+        current = null;
+        if (prefetcher != null) {
+            prefetcher.cancel();
+            prefetcher.awaitDone();
+        }
+    }
+
+    private Fetcher start() {
+        Fetcher prefetcher = new Fetcher();
+        if (executor != null) {
+            try {
+                executor.execute(prefetcher);
+                return prefetcher;
+            } catch (RejectedExecutionException e) {
+                log.warn("PageIterator，query：{}，线程池拒绝执行，改为创建新线程查询", name);
+            }
+        }
+        Thread thread = new Thread(prefetcher, "PageIterator-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        return prefetcher;
+    }
+
+    public PageIterator<T> setPrefetch(int prefetch) {
+        checkArgument(prefetch < 1, "预取的页数必须大于0！");
+        checkState(prefetcher != null, "PageIterator 已开始遍历，不能再修改配置！");
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    public PageIterator<T> setExecutor(Executor executor) {
+        checkState(prefetcher != null, "PageIterator 已开始遍历，不能再修改配置！");
+        this.executor = executor;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "PageIterator{" +
+                "name='" + name + '\'' +
+                ", pageSize=" + pageSize +
+                ", prefetch=" + prefetch +
+                '}';
+    }
+
+    /**
+     * 按顺序查询每一页
+     *
+     * @param <T> 数据类型
+     */
+    abstract static class PageFetcher<T> {
+        /** 是否已查询到最后一页 */
+        boolean last;
+
+        abstract List<T> fetch();
+    }
+
+    /**
+     * 预取线程：按顺序查询每一页放入缓冲区，缓冲区满时等待遍历线程取出（背压）
+     */
+    private final class Fetcher implements Runnable {
+        /** 查询结束的标记 */
+        private final List<T> end = Collections.emptyList();
+        private final BlockingQueue<List<T>> buffer = new ArrayBlockingQueue<>(prefetch);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+
+        @Override
+        public void run() {
+            try {
+                while (!cancelled && !fetcher.last) {
+                    List<T> page = fetcher.fetch();
+                    if (!page.isEmpty()) put(page);
+                }
+            } catch (Throwable e) {
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                failure = e;
+            } finally {
+                try {
+                    put(end);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                }
+                done.countDown();
+            }
+        }
+
+        private void put(List<T> page) throws InterruptedException {
+            while (!cancelled && !buffer.offer(page, 100, TimeUnit.MILLISECONDS)) {
+                // 缓冲区已满，等待遍历线程取出（背压）
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            buffer.clear();
+        }
+
+        void awaitDone() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+}
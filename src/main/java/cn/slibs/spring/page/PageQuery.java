@@ -0,0 +1,83 @@
+package cn.slibs.spring.page;
+
+import cn.slibs.spring.dao.MapperStatements;
+import lombok.Getter;
+import org.mybatis.spring.SqlSessionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.iofairy.validator.Preconditions.*;
+
+/**
+ * 分页查询：查询数据的方法及查询签名（用于缓存总数，签名相同的查询总数相同）
+ * <ul>
+ *     <li>按 mapper 方法查询：签名为 statement id + 查询参数（查询参数需实现 {@code equals}、{@code hashCode}，如：Map 或 {@code @Data} 类，且查询后不能再修改），
+ *     支持数据库估算行数（{@link CountMode#APPROXIMATE}）；</li>
+ *     <li>按 lambda 查询：签名由调用方指定，不支持估算行数。</li>
+ * </ul>
+ * 查询方法中只能执行一条查询语句（分页由 PageHelper 实现）
+ *
+ * @param <T> 数据类型
+ * @since 0.2.4
+ */
+@Getter
+public class PageQuery<T> {
+    /** 查询签名 */
+    private final Object signature;
+    /** 查询数据 */
+    private final Supplier<List<T>> select;
+    /** 按 mapper 方法查询时的 sqlSessionTemplate，按 lambda 查询时为 {@code null} */
+    private final SqlSessionTemplate sqlSessionTemplate;
+    /** 按 mapper 方法查询时的 statement id，按 lambda 查询时为 {@code null} */
+    private final String statement;
+    /** 按 mapper 方法查询时的查询参数 */
+    private final Object parameter;
+
+    PageQuery(Object signature, Supplier<List<T>> select, SqlSessionTemplate sqlSessionTemplate, String statement, Object parameter) {
+        this.signature = signature;
+        this.select = select;
+        this.sqlSessionTemplate = sqlSessionTemplate;
+        this.statement = statement;
+        this.parameter = parameter;
+    }
+
+    /**
+     * 按 mapper 方法查询
+     *
+     * @param sqlSessionTemplate sqlSessionTemplate
+     * @param mapperClass        mapper class
+     * @param methodName         查询方法名
+     * @param parameter          查询参数，可为 {@code null}
+     * @param <T>                数据类型
+     * @return 分页查询
+     */
+    public static <T> PageQuery<T> of(SqlSessionTemplate sqlSessionTemplate, Class<?> mapperClass, String methodName, Object parameter) {
+        checkHasNullNPE(args(sqlSessionTemplate, mapperClass), args("sqlSessionTemplate", "mapperClass"));
+        checkBlank(methodName, args("methodName"));
+
+        String statement = MapperStatements.of(sqlSessionTemplate.getConfiguration(), mapperClass).id(methodName);
+        return new PageQuery<>(Arrays.asList(statement, parameter), () -> sqlSessionTemplate.selectList(statement, parameter), sqlSessionTemplate, statement, parameter);
+    }
+
+    /**
+     * 按 lambda 查询
+     *
+     * @param signature 查询签名，如：（{@code Arrays.asList("userList", status, keyword)}）
+     * @param select    查询数据，如：（{@code () -> userMapper.selectList(status, keyword)}）
+     * @param <T>       数据类型
+     * @return 分页查询
+     */
+    public static <T> PageQuery<T> of(Object signature, Supplier<List<T>> select) {
+        checkHasNullNPE(args(signature, select), args("signature", "select"));
+        return new PageQuery<>(signature, select, null, null, null);
+    }
+
+    @Override
+    public String toString() {
+        return "PageQuery{" +
+                "signature=" + signature +
+                '}';
+    }
+}
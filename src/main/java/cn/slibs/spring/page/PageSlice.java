@@ -0,0 +1,40 @@
+package cn.slibs.spring.page;
+
+import java.util.List;
+
+/**
+ * 一页数据及分页信息，可转为 v2/v3 的分页类
+ *
+ * @param <T> 数据类型
+ * @since 0.2.4
+ */
+final class PageSlice<T> {
+    final int pageNum;
+    final int pageSize;
+    /** 总数，{@link CountMode#HAS_NEXT} 时为 {@code null} */
+    final Long total;
+    final CountMode countMode;
+    final boolean hasNext;
+    final List<T> data;
+
+    PageSlice(int pageNum, int pageSize, Long total, CountMode countMode, boolean hasNext, List<T> data) {
+        this.pageNum = pageNum;
+        this.pageSize = pageSize;
+        this.total = total;
+        this.countMode = countMode;
+        this.hasNext = hasNext;
+        this.data = data;
+    }
+
+    Integer pages() {
+        return total == null ? null : (int) ((total + pageSize - 1) / pageSize);
+    }
+
+    PageV3<T> toPageV3() {
+        return new PageV3<>(pageSize, pageNum, total, pages(), data, countMode, hasNext);
+    }
+
+    PageV2<T> toPageV2() {
+        return new PageV2<>(pageSize, pageNum, total, pages(), data, countMode, hasNext);
+    }
+}
@@ -0,0 +1,39 @@
+package cn.slibs.spring.page;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * 带统计总数方式的 <b>swagger-v3</b> 分页类
+ *
+ * @param <T> 数据类型
+ * @since 0.2.4
+ */
+@Getter
+@Setter
+public class PageV3<T> extends cn.slibs.base.page.v3.Page<T> {
+    /** 总数的统计方式：{@link CountMode#APPROXIMATE} 时总数为估算值，{@link CountMode#CACHED} 时总数为缓存值，{@link CountMode#HAS_NEXT} 时总数为 {@code null} */
+    private CountMode countMode;
+    /** 是否有下一页 */
+    private Boolean hasNext;
+
+    public PageV3() {
+    }
+
+    public PageV3(Integer pageSize, Integer pageNum, Long total, Integer pages, List<T> data, CountMode countMode, Boolean hasNext) {
+        super(pageSize, pageNum, total, pages, data);
+        this.countMode = countMode;
+        this.hasNext = hasNext;
+    }
+
+    @Override
+    public String toString() {
+        return "PageV3{" +
+                "countMode=" + countMode +
+                ", hasNext=" + hasNext +
+                ", page=" + super.toString() +
+                '}';
+    }
+}
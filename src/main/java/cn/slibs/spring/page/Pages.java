@@ -1,9 +1,11 @@
 package cn.slibs.spring.page;
 
-import com.github.pagehelper.PageInfo;
-
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
+
+import static com.iofairy.validator.Preconditions.*;
 
 /**
  * 分页工具类
@@ -23,7 +25,22 @@ public class Pages {
     }
 
     /**
-     * 将数据转为 <b>swagger-v3</b> 的分页类
+     * 将数据转为 <b>swagger-v3</b> 的分页类，数据通过映射函数转换（如：实体类转为 DTO）
+     *
+     * @param data   数据
+     * @param mapper 映射函数，如：（{@code UserDTO::new}）
+     * @param <S>    数据类型
+     * @param <T>    映射后的数据类型
+     * @return <b>swagger-v3</b> 的分页类
+     * @see #toPageV3(List, Function)
+     * @since 0.2.4
+     */
+    public static <S, T> cn.slibs.base.page.v3.Page<T> toPage(List<S> data, Function<? super S, ? extends T> mapper) {
+        return toPageV3(data, mapper);
+    }
+
+    /**
+     * 将数据转为 <b>swagger-v3</b> 的分页类（分页信息直接从 PageHelper 的 {@link com.github.pagehelper.Page} 中读取）
      *
      * @param data 数据
      * @param <T>  数据类型
@@ -31,13 +48,28 @@ public class Pages {
      */
     public static <T> cn.slibs.base.page.v3.Page<T> toPageV3(List<T> data) {
         if (data == null) data = new ArrayList<>();
+        return newPageV3(data, data);
+    }
 
-        PageInfo<T> pageInfo = new PageInfo<>(data);
-        return new cn.slibs.base.page.v3.Page<T>(pageInfo.getPageSize(), pageInfo.getPageNum(), pageInfo.getTotal(), pageInfo.getPages(), data);
+    /**
+     * 将数据转为 <b>swagger-v3</b> 的分页类，数据通过映射函数转换（如：实体类转为 DTO）<br>
+     * 返回的数据是只读的映射视图，不复制数据，每次访问元素时才转换（序列化时转换一次）
+     *
+     * @param data   数据
+     * @param mapper 映射函数，如：（{@code UserDTO::new}）
+     * @param <S>    数据类型
+     * @param <T>    映射后的数据类型
+     * @return <b>swagger-v3</b> 的分页类
+     * @since 0.2.4
+     */
+    public static <S, T> cn.slibs.base.page.v3.Page<T> toPageV3(List<S> data, Function<? super S, ? extends T> mapper) {
+        checkNullNPE(mapper, args("mapper"));
+        if (data == null) data = new ArrayList<>();
+        return newPageV3(data, new MappedList<>(data, mapper));
     }
 
     /**
-     * 将数据转为 <b>swagger-v2</b> 的分页类
+     * 将数据转为 <b>swagger-v2</b> 的分页类（分页信息直接从 PageHelper 的 {@link com.github.pagehelper.Page} 中读取）
      *
      * @param data 数据
      * @param <T>  数据类型
@@ -45,9 +77,83 @@ public class Pages {
      */
     public static <T> cn.slibs.base.page.v2.Page<T> toPageV2(List<T> data) {
         if (data == null) data = new ArrayList<>();
+        return newPageV2(data, data);
+    }
+
+    /**
+     * 将数据转为 <b>swagger-v2</b> 的分页类，数据通过映射函数转换（如：实体类转为 DTO）<br>
+     * 返回的数据是只读的映射视图，不复制数据，每次访问元素时才转换（序列化时转换一次）
+     *
+     * @param data   数据
+     * @param mapper 映射函数，如：（{@code UserDTO::new}）
+     * @param <S>    数据类型
+     * @param <T>    映射后的数据类型
+     * @return <b>swagger-v2</b> 的分页类
+     * @since 0.2.4
+     */
+    public static <S, T> cn.slibs.base.page.v2.Page<T> toPageV2(List<S> data, Function<? super S, ? extends T> mapper) {
+        checkNullNPE(mapper, args("mapper"));
+        if (data == null) data = new ArrayList<>();
+        return newPageV2(data, new MappedList<>(data, mapper));
+    }
+
+    /*
+     * 不创建 PageInfo（会计算导航页码等用不到的信息），分页信息与 PageInfo 一致：
+     * PageHelper 分页查询的结果读取 Page 中的分页信息，其他集合视为只有一页
+     */
+    private static <T> cn.slibs.base.page.v3.Page<T> newPageV3(List<?> source, List<T> data) {
+        if (source instanceof com.github.pagehelper.Page) {
+            com.github.pagehelper.Page<?> page = (com.github.pagehelper.Page<?>) source;
+            return new cn.slibs.base.page.v3.Page<T>(page.getPageSize(), page.getPageNum(), page.getTotal(), page.getPages(), data);
+        }
+        int size = source.size();
+        return new cn.slibs.base.page.v3.Page<T>(size, 1, (long) size, size > 0 ? 1 : 0, data);
+    }
+
+    private static <T> cn.slibs.base.page.v2.Page<T> newPageV2(List<?> source, List<T> data) {
+        if (source instanceof com.github.pagehelper.Page) {
+            com.github.pagehelper.Page<?> page = (com.github.pagehelper.Page<?>) source;
+            return new cn.slibs.base.page.v2.Page<T>(page.getPageSize(), page.getPageNum(), page.getTotal(), page.getPages(), data);
+        }
+        int size = source.size();
+        return new cn.slibs.base.page.v2.Page<T>(size, 1, (long) size, size > 0 ? 1 : 0, data);
+    }
+
+    /**
+     * 键集分页（seek pagination）：按上一页最后一条数据的排序键定位，不使用 OFFSET，也不统计总数，深分页与第一页的查询代价相同，用法详见 {@link Keyset}<br>
+     * <b>注：</b>查询前不要调用 {@code PageHelper.startPage}
+     *
+     * @param keyset  排序键定义
+     * @param request 分页请求
+     * @param query   执行查询，如：（{@code seek -> userMapper.selectPage(status, seek)}）
+     * @param <T>     数据类型
+     * @return 当前页数据及下一页的游标
+     * @throws IllegalArgumentException 游标无效或与排序键不匹配
+     * @since 0.2.4
+     */
+    public static <T> KeysetPage<T> keyset(Keyset<T> keyset, KeysetRequest request, Function<? super KeysetSeek, List<T>> query) {
+        checkHasNullNPE(args(keyset, request, query), args("keyset", "request", "query"));
+        checkState(keyset.getSortKeys().isEmpty(), "Keyset 至少需要一个排序键！");
+
+        int pageSize = request.getPageSize();
+        String cursor = request.getCursor();
+        KeysetSeek seek = cursor == null
+                ? new KeysetSeek(null, keyset.orderBy(), pageSize + 1, Collections.emptyList())
+                : new KeysetSeek(keyset.seek(), keyset.orderBy(), pageSize + 1, KeysetCursor.decode(cursor, keyset.getSortKeys().size()));
+
+        List<T> rows = query.apply(seek);
+        if (rows == null) rows = new ArrayList<>();
+        if (rows.size() <= pageSize) return new KeysetPage<>(pageSize, rows, null);
 
-        PageInfo<T> pageInfo = new PageInfo<>(data);
-        return new cn.slibs.base.page.v2.Page<T>(pageInfo.getPageSize(), pageInfo.getPageNum(), pageInfo.getTotal(), pageInfo.getPages(), data);
+        // 多查询的一条只用于判断是否有下一页
+        List<T> data;
+        if (rows instanceof ArrayList) {
+            rows.subList(pageSize, rows.size()).clear();
+            data = rows;
+        } else {
+            data = new ArrayList<>(rows.subList(0, pageSize));
+        }
+        return new KeysetPage<>(pageSize, data, KeysetCursor.encode(keyset.keys(data.get(pageSize - 1))));
     }
 
 }
@@ -0,0 +1,945 @@
+package cn.slibs.test;
+
+import cn.slibs.spring.dao.AdaptiveBatchSize;
+import cn.slibs.spring.dao.AsyncBatchWriter;
+import cn.slibs.spring.dao.BatchCheckpoint;
+import cn.slibs.spring.dao.BatchListener;
+import cn.slibs.spring.dao.BatchMetrics;
+import cn.slibs.spring.dao.BatchOptions;
+import cn.slibs.spring.dao.BatchUpdateResult;
+import cn.slibs.spring.dao.CommitPolicy;
+import cn.slibs.spring.dao.DeadlockRetry;
+import cn.slibs.spring.dao.Dialect;
+import cn.slibs.spring.dao.MapperStatements;
+import cn.slibs.spring.dao.MybatisHelper;
+import cn.slibs.spring.dao.PurgeResult;
+import cn.slibs.spring.dao.ShardedBatchResult;
+import cn.slibs.spring.dao.ShardedMybatisHelper;
+import cn.slibs.spring.dao.TableMapping;
+import com.iofairy.except.GeneralException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MybatisHelperTest {
+    static UnpooledDataSource dataSource = new UnpooledDataSource("org.h2.Driver", "jdbc:h2:mem:mybatis_helper;DB_CLOSE_DELAY=-1", "sa", "");
+    static SqlSessionFactory sqlSessionFactory;
+    static SqlSessionTemplate sqlSessionTemplate;
+
+    static {
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(UserMapper.class);
+        configuration.addMapper(Archive.UserMapper.class);
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+        sqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactory);
+    }
+
+    @BeforeEach
+    void createTable() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS t_user");
+            statement.execute("CREATE TABLE t_user (id BIGINT PRIMARY KEY, name VARCHAR(64), age INT)");
+        }
+    }
+
+    @Test
+    void testBatchUpdateStreaming() {
+        MybatisHelper mybatisHelper = MybatisHelper.build(7, sqlSessionTemplate);
+
+        mybatisHelper.batchUpdate(UserMapper.class, users(1, 50).iterator(), UserMapper::insert);
+        assertEquals(50, count());
+
+        mybatisHelper.batchUpdate(UserMapper.class, users(51, 100).stream(), UserMapper::insert);
+        assertEquals(100, count());
+
+        assertThrows(IllegalArgumentException.class, () -> mybatisHelper.setBatchSize(0));
+        assertThrows(IllegalArgumentException.class, () -> MybatisHelper.build(-1, sqlSessionTemplate));
+    }
+
+    @Test
+    void testBatchSaveOrUpdate() {
+        MybatisHelper mybatisHelper = MybatisHelper.build(10, sqlSessionTemplate);
+        mybatisHelper.batchSaveOrUpdate(UserMapper.class, users(1, 30));
+
+        List<User> users = users(21, 40);
+        users.forEach(user -> user.setName("updated"));
+        mybatisHelper.batchSaveOrUpdate(UserMapper.class, users);
+        assertEquals(40, count());
+        assertEquals("updated", selectOne(25).getName());
+        assertEquals("user-5", selectOne(5).getName());
+    }
+
+    @Test
+    void testBatchSaveOrUpdateByKey() {
+        MybatisHelper mybatisHelper = MybatisHelper.build(10, sqlSessionTemplate);
+        mybatisHelper.batchSaveOrUpdateByKey(UserMapper.class, users(1, 30), User::getId);
+
+        List<User> users = users(21, 40);
+        users.forEach(user -> user.setName("updated"));
+        // 同一批次中的重复主键走更新
+        users.add(new User(40L, "duplicated", 1));
+        mybatisHelper.batchSaveOrUpdateByKey(UserMapper.class, users, User::getId);
+        assertEquals(40, count());
+        assertEquals("updated", selectOne(25).getName());
+        assertEquals("duplicated", selectOne(40).getName());
+    }
+
+    @Test
+    void testMapperStatements() throws Exception {
+        Configuration configuration = sqlSessionTemplate.getConfiguration();
+        MapperStatements statements = MapperStatements.of(configuration, UserMapper.class);
+        assertSame(statements, MapperStatements.of(configuration, UserMapper.class));
+        assertEquals(UserMapper.class.getName() + ".insert", statements.id("insert"));
+        assertSame(statements.get("insert"), statements.get("insert"));
+
+        MybatisHelper mybatisHelper = MybatisHelper.build(10, sqlSessionTemplate).registerMappers(UserMapper.class);
+        assertThrows(IllegalStateException.class, () -> mybatisHelper.registerMapper(UserMapper.class, "selectByIds", "upsert", "updateById"));
+
+        // SQL方法名错误时，在写入任何数据之前失败
+        mybatisHelper.batchUpdate(UserMapper.class, users(1, 5), UserMapper::insert);
+        mybatisHelper.setUpdateSqlMethodName("updateById");
+        assertThrows(IllegalStateException.class, () -> mybatisHelper.batchSaveOrUpdate(UserMapper.class, users(1, 30)));
+        assertEquals(5, count());
+        assertThrows(IllegalStateException.class, () -> mybatisHelper.batchSaveOrUpdateByKey(UserMapper.class, users(1, 30), User::getId));
+        assertEquals(5, count());
+
+        // 注册表不阻止不再使用的 Configuration 被回收
+        WeakReference<Configuration> unused = registerUnusedConfiguration();
+        for (int i = 0; i < 50 && unused.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(unused.get());
+    }
+
+    static WeakReference<Configuration> registerUnusedConfiguration() {
+        Configuration configuration = new Configuration(new Environment("unused", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(UserMapper.class);
+        MapperStatements.of(configuration, UserMapper.class).require("insert", "update");
+        return new WeakReference<>(configuration);
+    }
+
+    @Test
+    void testBatchUpsert() {
+        TableMapping<User> userTable = TableMapping.<User>of("t_user")
+                .id("id", User::getId)
+                .column("name", User::getName)
+                .column("age", User::getAge);
+
+        MybatisHelper mybatisHelper = MybatisHelper.build(8, sqlSessionTemplate);
+        mybatisHelper.batchUpsert(userTable, users(1, 30));
+
+        List<User> users = users(21, 40);
+        users.forEach(user -> user.setName("updated"));
+        mybatisHelper.batchUpsert(userTable, users);
+        assertEquals(40, count());
+        assertEquals("updated", selectOne(25).getName());
+        assertEquals("user-5", selectOne(5).getName());
+
+        // 同一批次（同一条SQL）中的重复主键只保留最后出现的一条
+        mybatisHelper.batchUpsert(userTable, Arrays.asList(new User(41L, "first", 1), new User(5L, "dup-1", 1), new User(41L, "last", 2), new User(5L, "dup-2", 2)));
+        assertEquals(41, count());
+        assertEquals("last", selectOne(41).getName());
+        assertEquals("dup-2", selectOne(5).getName());
+    }
+
+    @Test
+    void testBatchUpdateParallel() {
+        MybatisHelper mybatisHelper = MybatisHelper.build(7, sqlSessionTemplate);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // 线程数少于分区数
+            mybatisHelper.batchUpdateParallel(UserMapper.class, users(1, 500), 4, executor, UserMapper::insert);
+            assertEquals(500, count());
+
+            mybatisHelper.batchUpdateParallel(UserMapper.class, users(501, 1000), 3, User::getId, executor, CommitPolicy.PER_PARTITION, UserMapper::insert);
+            assertEquals(1000, count());
+
+            // 主键冲突，所有分区回滚
+            assertThrows(GeneralException.class, () ->
+                    mybatisHelper.batchUpdateParallel(UserMapper.class, users(995, 1200), 4, User::getId, executor, CommitPolicy.ALL_OR_NOTHING, UserMapper::insert));
+            assertEquals(1000, count());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testAdaptiveBatchSize() {
+        AdaptiveBatchSize adaptive = AdaptiveBatchSize.of(100, 10, 1000, 10);
+        // 每行 0.01ms，目标 10ms，批次逐步放大（每次最多一倍），不超过最大值
+        adaptive.record(100, 1_000_000);
+        assertEquals(200, adaptive.getBatchSize());
+        for (int i = 0; i < 10; i++) {
+            adaptive.record(adaptive.getBatchSize(), adaptive.getBatchSize() * 10_000L);
+        }
+        assertEquals(1000, adaptive.getBatchSize());
+        // 宽表：每行 1ms，批次逐步缩小，不低于最小值
+        for (int i = 0; i < 20; i++) {
+            adaptive.record(adaptive.getBatchSize(), adaptive.getBatchSize() * 1_000_000L);
+        }
+        assertEquals(10, adaptive.getBatchSize());
+
+        MybatisHelper mybatisHelper = MybatisHelper.build(sqlSessionTemplate).setAdaptiveBatchSize(AdaptiveBatchSize.of(5, 5, 100, 50));
+        mybatisHelper.batchUpdate(UserMapper.class, users(1, 300), UserMapper::insert);
+        assertEquals(300, count());
+        AdaptiveBatchSize userAdaptive = mybatisHelper.getAdaptiveBatchSize(UserMapper.class);
+        assertNotNull(userAdaptive);
+        assertTrue(userAdaptive.getBatchSize() >= 5 && userAdaptive.getBatchSize() <= 100);
+    }
+
+    @Test
+    void testCheckpointAndResume() {
+        MybatisHelper mybatisHelper = MybatisHelper.build(10, sqlSessionTemplate);
+        List<User> users = users(1, 100);
+        // 第 55 条数据与已有数据主键冲突
+        mybatisHelper.batchUpdate(UserMapper.class, users(55, 55), UserMapper::insert);
+
+        List<BatchCheckpoint> checkpoints = new ArrayList<>();
+        BatchOptions<User> options = BatchOptions.<User>create()
+                .setCommitEveryBatches(2)
+                .setCheckpointKey(User::getId)
+                .setCheckpointListener(checkpoints::add);
+        assertThrows(GeneralException.class, () -> mybatisHelper.batchUpdate(UserMapper.class, users, options, UserMapper::insert));
+        // 只回滚最后一次提交之后的批次
+        assertEquals(41, count());
+        assertEquals(2, checkpoints.size());
+        BatchCheckpoint checkpoint = checkpoints.get(checkpoints.size() - 1);
+        assertEquals(40, checkpoint.getProcessedCount());
+        assertEquals(40L, checkpoint.getLastKey());
+
+        mybatisHelper.batchUpdate(UserMapper.class, users(55, 55), (mapper, user) -> mapper.delete(user.getId()));
+        checkpoints.clear();
+        mybatisHelper.batchUpdate(UserMapper.class, users, options.setResumeFrom(checkpoint), UserMapper::insert);
+        assertEquals(100, count());
+        assertEquals(100, checkpoints.get(checkpoints.size() - 1).getProcessedCount());
+        assertEquals(100L, checkpoints.get(checkpoints.size() - 1).getLastKey());
+
+        // 数据源的顺序已改变
+        assertThrows(GeneralException.class, () -> mybatisHelper.batchUpdate(UserMapper.class, users(2, 101), options.setResumeFrom(checkpoint), UserMapper::insert));
+    }
+
+    @Test
+    void testIsolateFailures() {
+        MybatisHelper mybatisHelper = MybatisHelper.build(16, sqlSessionTemplate);
+        mybatisHelper.batchUpdate(UserMapper.class, users(7, 7), UserMapper::insert);
+        mybatisHelper.batchUpdate(UserMapper.class, users(60, 61), UserMapper::insert);
+
+        BatchUpdateResult<User> result = mybatisHelper.batchUpdate(UserMapper.class, users(1, 100), BatchOptions.<User>create().setIsolateFailures(true), UserMapper::insert);
+        assertEquals(100, count());
+        assertEquals(100, result.getProcessedCount());
+        assertEquals(97, result.getSuccessCount());
+        assertEquals(97, result.getUpdateCount());
+        assertEquals(97L, result.getUpdateCounts().get(UserMapper.class.getName() + ".insert"));
+        assertEquals(Arrays.asList(7L, 60L, 61L), result.getFailures().stream().map(failure -> failure.getModel().getId()).collect(Collectors.toList()));
+
+        // 未开启时整体回滚
+        assertThrows(GeneralException.class, () -> mybatisHelper.batchUpdate(UserMapper.class, users(100, 200), UserMapper::insert));
+        assertEquals(100, count());
+    }
+
+    @Test
+    void testUpdateCounts() {
+        MybatisHelper mybatisHelper = MybatisHelper.build(4, sqlSessionTemplate);
+        mybatisHelper.batchUpdate(UserMapper.class, users(1, 5), UserMapper::insert);
+
+        // 主键 6~9 不存在，按执行顺序记录
+        List<User> users = users(3, 9);
+        BatchUpdateResult<User> result = mybatisHelper.batchUpdate(UserMapper.class, users, BatchOptions.create(), UserMapper::update);
+        assertEquals(3, result.getUpdateCount());
+        assertEquals(0, result.getUnknownCount());
+        assertEquals(Arrays.asList(6L, 7L, 8L, 9L), result.getZeroCountRows().stream().map(row -> ((User) row.getParameter()).getId()).collect(Collectors.toList()));
+        assertEquals(UserMapper.class.getName() + ".update", result.getZeroCountRows().get(0).getStatementId());
+
+        // 驱动返回 SUCCESS_NO_INFO 时影响的行数未知，不计为 0
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(UserMapper.class);
+        configuration.addInterceptor(new SuccessNoInfoInterceptor());
+        SqlSessionTemplate noInfoTemplate = new SqlSessionTemplate(new SqlSessionFactoryBuilder().build(configuration));
+        BatchUpdateResult<User> noInfoResult = MybatisHelper.build(4, noInfoTemplate).batchUpdate(UserMapper.class, users, BatchOptions.create(), UserMapper::update);
+        assertEquals(0, noInfoResult.getUpdateCount());
+        assertEquals(7, noInfoResult.getUnknownCount());
+        assertEquals(7L, noInfoResult.getUnknownCounts().get(UserMapper.class.getName() + ".update"));
+        assertTrue(noInfoResult.getZeroCountRows().isEmpty());
+    }
+
+    @Test
+    void testCoalesce() {
+        MybatisHelper mybatisHelper = MybatisHelper.build(10, sqlSessionTemplate);
+        List<User> users = users(1, 5);
+        users.add(new User(3L, "user-3-v2", 30));
+        users.add(new User(3L, "user-3-v3", 31));
+
+        BatchUpdateResult<User> result = mybatisHelper.batchSaveOrUpdate(UserMapper.class, users, BatchOptions.<User>create().setCoalesce(User::getId));
+        assertEquals(5, count());
+        assertEquals(7, result.getProcessedCount());
+        assertEquals(2, result.getCoalescedCount());
+        assertEquals("user-3-v3", selectOne(3).getName());
+
+        BatchOptions<User> options = BatchOptions.<User>create()
+                .setCoalesce(User::getId, (oldUser, newUser) -> new User(oldUser.getId(), oldUser.getName(), newUser.getAge()));
+        mybatisHelper.batchSaveOrUpdate(UserMapper.class, users, options);
+        assertEquals("user-3", selectOne(3).getName());
+        assertEquals(31, selectOne(3).getAge());
+    }
+
+    @Test
+    void testCursorPipeline() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS t_user_bak");
+            statement.execute("CREATE TABLE t_user_bak (id BIGINT PRIMARY KEY, name VARCHAR(64), age INT)");
+        }
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(UserMapper.class);
+        FetchSizeInterceptor fetchSizeInterceptor = new FetchSizeInterceptor();
+        configuration.addInterceptor(fetchSizeInterceptor);
+        MybatisHelper mybatisHelper = MybatisHelper.build(100, new SqlSessionTemplate(new SqlSessionFactoryBuilder().build(configuration)));
+        mybatisHelper.batchUpdate(UserMapper.class, users(1, 1000), UserMapper::insert);
+
+        BatchUpdateResult<User> result = mybatisHelper.<User>cursorPipeline(UserMapper.class, "selectAll")
+                .setFetchSize(50)
+                .setBatchSize(64)
+                .execute(UserMapper.class, user -> user.getId() % 10 == 0 ? null : new User(user.getId(), user.getName().toUpperCase(), user.getAge()), UserMapper::insertBak);
+        assertEquals(900, result.getProcessedCount());
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            assertEquals(900L, (Long) sqlSession.selectOne(UserMapper.class.getName() + ".countBak"));
+        }
+        // fetchSize 只设置到本次读取的 Statement 上，不注册新的 MappedStatement
+        assertEquals(Collections.singletonList(50), fetchSizeInterceptor.selectFetchSizes);
+        assertFalse(configuration.getMappedStatementNames().stream().anyMatch(name -> name.contains("fetchSize")));
+
+        // 写入失败时读取线程停止
+        assertThrows(GeneralException.class, () -> mybatisHelper.<User>cursorPipeline(UserMapper.class, "selectAll")
+                .setBufferBatches(1)
+                .execute(UserMapper.class, user -> user, UserMapper::insertBak));
+    }
+
+    @Test
+    void testJoinSpringTransaction() throws Exception {
+        Configuration configuration = new Configuration(new Environment("spring", new SpringManagedTransactionFactory(), dataSource));
+        configuration.addMapper(UserMapper.class);
+        MybatisHelper mybatisHelper = MybatisHelper.build(10, new SqlSessionTemplate(new SqlSessionFactoryBuilder().build(configuration)));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            mybatisHelper.batchUpdate(UserMapper.class, users(1, 50), UserMapper::insert);
+            // 复用事务绑定的连接：同一连接中可见，其他连接中不可见
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM t_user")) {
+                resultSet.next();
+                assertEquals(50, resultSet.getLong(1));
+            } catch (SQLException e) {
+                fail(e);
+            }
+            assertEquals(0, count());
+            status.setRollbackOnly();
+        });
+        assertEquals(0, count());
+
+        // 外层事务提交后才通知提交及回调断点，回滚时不回调
+        List<BatchCheckpoint> checkpoints = new ArrayList<>();
+        BatchOptions<User> options = BatchOptions.<User>create().setCheckpointKey(User::getId).setCheckpointListener(checkpoints::add);
+        transactionTemplate.executeWithoutResult(status -> {
+            mybatisHelper.batchUpdate(UserMapper.class, users(1, 50), options, UserMapper::insert);
+            assertTrue(checkpoints.isEmpty());
+            status.setRollbackOnly();
+        });
+        assertTrue(checkpoints.isEmpty());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            mybatisHelper.batchUpdate(UserMapper.class, users(1, 50), options, UserMapper::insert);
+            assertTrue(checkpoints.isEmpty());
+        });
+        assertEquals(50, count());
+        assertEquals(1, checkpoints.size());
+        assertEquals(50, checkpoints.get(0).getProcessedCount());
+        assertEquals(50L, checkpoints.get(0).getLastKey());
+
+        // 并行分区写入使用独立的连接，不能加入 Spring 事务
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    assertThrows(IllegalStateException.class, () -> mybatisHelper.batchUpdateParallel(UserMapper.class, users(51, 60), 2, executor, UserMapper::insert)));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(50, count());
+    }
+
+    @Test
+    void testShardedBatch() throws Exception {
+        Map<Integer, SqlSessionTemplate> templates = new LinkedHashMap<>();
+        List<UnpooledDataSource> dataSources = new ArrayList<>();
+        for (int shard = 0; shard < 2; shard++) {
+            UnpooledDataSource shardDataSource = new UnpooledDataSource("org.h2.Driver", "jdbc:h2:mem:mybatis_helper_shard" + shard + ";DB_CLOSE_DELAY=-1", "sa", "");
+            try (Connection connection = shardDataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS t_user");
+                statement.execute("CREATE TABLE t_user (id BIGINT PRIMARY KEY, name VARCHAR(64), age INT)");
+            }
+            Configuration configuration = new Configuration(new Environment("shard" + shard, new JdbcTransactionFactory(), shardDataSource));
+            configuration.addMapper(UserMapper.class);
+            templates.put(shard, new SqlSessionTemplate(new SqlSessionFactoryBuilder().build(configuration)));
+            dataSources.add(shardDataSource);
+        }
+        ShardedMybatisHelper<Integer> shardedHelper = ShardedMybatisHelper.build(7, templates);
+
+        ShardedBatchResult<Integer, User> result = shardedHelper.batchUpdate(UserMapper.class, users(1, 100), user -> (int) (user.getId() % 2), UserMapper::insert);
+        assertTrue(result.isSuccess());
+        assertEquals(50, result.getShardResults().get(0).getRowCount());
+        assertEquals(50, result.getShardResults().get(1).getResult().getSuccessCount());
+        assertEquals(50, count(dataSources.get(0)));
+        assertEquals(50, count(dataSources.get(1)));
+
+        TableMapping<User> userTable = TableMapping.<User>of("t_user")
+                .id("id", User::getId)
+                .column("name", User::getName)
+                .column("age", User::getAge);
+        List<User> users = users(91, 110);
+        users.forEach(user -> user.setName("updated"));
+        assertTrue(shardedHelper.batchUpsert(userTable, users, user -> (int) (user.getId() % 2)).isSuccess());
+        assertEquals(55, count(dataSources.get(0)));
+
+        // 一个分片失败，其他分片已提交
+        assertTrue(shardedHelper.batchUpdate(UserMapper.class, users(111, 120), user -> user.getId() < 115 ? 0 : 1, UserMapper::insert).isSuccess());
+        ShardedBatchResult<Integer, User> failed = shardedHelper.batchUpdate(UserMapper.class, users(120, 130), user -> user.getId() == 120 ? 1 : 0, UserMapper::insert);
+        assertEquals(1, failed.getFailedShards().size());
+        assertEquals(1, failed.getFailedShards().get(0).getShard());
+        assertThrows(GeneralException.class, failed::throwIfFailed);
+        assertEquals(69, count(dataSources.get(0)));
+        long shard1Count = count(dataSources.get(1));
+
+        // 断点续跑：每个分片各自的断点
+        assertThrows(IllegalArgumentException.class, () -> shardedHelper.batchUpdate(UserMapper.class, users(131, 140), user -> (int) (user.getId() % 2),
+                BatchOptions.<User>create().setResumeFrom(BatchCheckpoint.of(2)), UserMapper::insert));
+        BatchOptions<User> sharedCheckpointOptions = BatchOptions.<User>create().setCheckpointListener(checkpoint -> {
+        });
+        assertThrows(IllegalArgumentException.class, () -> shardedHelper.batchUpdate(UserMapper.class, users(131, 140), user -> (int) (user.getId() % 2),
+                shard -> sharedCheckpointOptions, UserMapper::insert));
+        Map<Integer, BatchCheckpoint> checkpoints = new ConcurrentHashMap<>();
+        assertTrue(shardedHelper.batchUpdate(UserMapper.class, users(131, 140), user -> (int) (user.getId() % 2),
+                shard -> BatchOptions.<User>create()
+                        .setCheckpointKey(User::getId)
+                        .setCheckpointListener(checkpoint -> checkpoints.put(shard, checkpoint))
+                        .setResumeFrom(BatchCheckpoint.of(2)),
+                UserMapper::insert).isSuccess());
+        // 每个分片跳过各自的前2条数据
+        assertEquals(72, count(dataSources.get(0)));
+        assertEquals(shard1Count + 3, count(dataSources.get(1)));
+        assertEquals(5, checkpoints.get(0).getProcessedCount());
+        assertEquals(140L, checkpoints.get(0).getLastKey());
+        assertEquals(139L, checkpoints.get(1).getLastKey());
+
+        List<User> saveOrUpdateUsers = users(139, 142);
+        saveOrUpdateUsers.forEach(user -> user.setName("saved"));
+        ShardedBatchResult<Integer, User> saveOrUpdateResult = shardedHelper.batchSaveOrUpdate(UserMapper.class, saveOrUpdateUsers, user -> (int) (user.getId() % 2));
+        assertTrue(saveOrUpdateResult.isSuccess());
+        assertEquals(73, count(dataSources.get(0)));
+        assertEquals(shard1Count + 4, count(dataSources.get(1)));
+
+        assertThrows(IllegalArgumentException.class, () -> shardedHelper.batchUpdate(UserMapper.class, users(1, 10), user -> 3, UserMapper::insert));
+    }
+
+    @Test
+    void testAsyncBatchWriter() throws Exception {
+        MybatisHelper mybatisHelper = MybatisHelper.build(50, sqlSessionTemplate);
+        AsyncBatchWriter<UserMapper, User> writer = mybatisHelper.asyncBatchWriter(UserMapper.class, UserMapper::insert)
+                .setMaxLingerMillis(20)
+                .setQueueCapacity(100);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<CompletableFuture<Void>>>> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int from = i * 250 + 1;
+            producers.add(executor.submit(() -> {
+                List<CompletableFuture<Void>> futures = new ArrayList<>();
+                for (User user : users(from, from + 249)) {
+                    futures.add(writer.offer(user));
+                }
+                return futures;
+            }));
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Future<List<CompletableFuture<Void>>> producer : producers) {
+            futures.addAll(producer.get());
+        }
+        executor.shutdown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(1000, count());
+
+        // 主键冲突的数据所在批次异常完成
+        CompletableFuture<Void> duplicated = writer.offer(new User(1L, "duplicated", 1));
+        assertThrows(ExecutionException.class, () -> duplicated.get(5, TimeUnit.SECONDS));
+
+        writer.close();
+        assertEquals(1000, writer.getWrittenCount());
+        assertEquals(1, writer.getFailedCount());
+        assertEquals(1000, count());
+        assertThrows(IllegalStateException.class, () -> writer.offer(new User(1001L, "closed", 1)));
+
+        // 未启动即关闭的 writer：offer 时不启动写入线程
+        AsyncBatchWriter<UserMapper, User> unstarted = mybatisHelper.asyncBatchWriter(UserMapper.class, UserMapper::insert);
+        assertTrue(unstarted.close(1, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> unstarted.offer(new User(1001L, "closed", 1)));
+        assertThrows(IllegalStateException.class, unstarted::start);
+        assertTrue(Thread.getAllStackTraces().keySet().stream().noneMatch(thread -> thread.getName().startsWith("AsyncBatchWriter-")));
+    }
+
+    @Test
+    void testBatchUpdateAsync() throws Exception {
+        MybatisHelper mybatisHelper = MybatisHelper.build(10, sqlSessionTemplate);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            BatchUpdateResult<User> result = mybatisHelper.batchUpdateAsync(UserMapper.class, users(1, 100), executor, UserMapper::insert).get(10, TimeUnit.SECONDS);
+            assertEquals(100, count());
+            assertEquals(100, result.getProcessedCount());
+            assertTrue(result.getElapsedMillis() >= 0);
+
+            List<User> users = users(1, 5);
+            users.get(0).setName("user-1-v2");
+            mybatisHelper.batchSaveOrUpdateAsync(UserMapper.class, users, executor).get(10, TimeUnit.SECONDS);
+            assertEquals("user-1-v2", selectOne(1).getName());
+
+            // 取消后在下一批次开始前停止，回滚未提交的批次
+            CountDownLatch reached = new CountDownLatch(1);
+            CountDownLatch cancelled = new CountDownLatch(1);
+            CompletableFuture<BatchUpdateResult<User>> future = mybatisHelper.batchUpdateAsync(UserMapper.class, users(101, 200), executor, (mapper, user) -> {
+                if (user.getId() == 115) {
+                    reached.countDown();
+                    cancelled.await(5, TimeUnit.SECONDS);
+                }
+                return mapper.insert(user);
+            });
+            assertTrue(reached.await(5, TimeUnit.SECONDS));
+            assertTrue(future.cancel(true));
+            cancelled.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertEquals(100, count());
+
+        // 线程池拒绝执行时以异常结束 CompletableFuture，不直接抛出
+        CompletableFuture<BatchUpdateResult<User>> rejected = mybatisHelper.batchUpdateAsync(UserMapper.class, users(101, 200), executor, UserMapper::insert);
+        ExecutionException rejectedException = assertThrows(ExecutionException.class, () -> rejected.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, rejectedException.getCause());
+
+        AtomicBoolean stop = new AtomicBoolean(true);
+        GeneralException exception = assertThrows(GeneralException.class,
+                () -> mybatisHelper.batchUpdate(UserMapper.class, users(101, 200), BatchOptions.<User>create().setCancelled(stop::get), UserMapper::insert));
+        assertInstanceOf(CancellationException.class, exception.getCause());
+        assertEquals(100, count());
+    }
+
+    @Test
+    void testLockOrderAndDeadlockRetry() {
+        DeadlockRetry deadlockRetry = DeadlockRetry.of(3, 1, 4);
+        assertTrue(deadlockRetry.isRetryable(new RuntimeException(new SQLException("Deadlock found", "40001"))));
+        assertTrue(deadlockRetry.isRetryable(new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+        assertFalse(deadlockRetry.isRetryable(new SQLException("Duplicate entry", "23000", 1062)));
+        for (int retry = 1; retry < 10; retry++) {
+            long backoffMillis = deadlockRetry.backoffMillis(retry);
+            assertTrue(backoffMillis >= Math.min(4, 1L << (retry - 1)) / 2 && backoffMillis <= 4);
+        }
+
+        MybatisHelper mybatisHelper = MybatisHelper.build(10, sqlSessionTemplate);
+        List<User> users = users(1, 100);
+        Collections.reverse(users);
+        List<Long> writtenIds = new ArrayList<>();
+        AtomicInteger deadlocks = new AtomicInteger();
+        BatchOptions<User> options = BatchOptions.<User>create()
+                .setLockOrder(Comparator.comparing(User::getId))
+                .setDeadlockRetry(deadlockRetry);
+        BatchUpdateResult<User> result = mybatisHelper.batchUpdate(UserMapper.class, users, options, (mapper, user) -> {
+            // 模拟第一次执行时发生死锁
+            if (user.getId() == 55 && deadlocks.getAndIncrement() == 0) throw new SQLException("Deadlock found", "40001");
+            writtenIds.add(user.getId());
+            return mapper.insert(user);
+        });
+        assertEquals(100, count());
+        assertEquals(100, result.getProcessedCount());
+        assertEquals(2, deadlocks.get());
+        // 每批次按加锁顺序写入，发生死锁的批次整体重试
+        assertEquals(LongStream.rangeClosed(91, 100).boxed().collect(Collectors.toList()), writtenIds.subList(0, 10));
+        assertEquals(LongStream.rangeClosed(51, 54).boxed().collect(Collectors.toList()), writtenIds.subList(40, 44));
+        assertEquals(LongStream.rangeClosed(51, 60).boxed().collect(Collectors.toList()), writtenIds.subList(44, 54));
+
+        // 超过最大执行次数后抛出异常，之前的批次已提交
+        deadlocks.set(-10);
+        mybatisHelper.batchUpdate(UserMapper.class, users, (mapper, user) -> mapper.delete(user.getId()));
+        assertThrows(GeneralException.class, () -> mybatisHelper.batchUpdate(UserMapper.class, users, options, (mapper, user) -> {
+            if (user.getId() == 55 && deadlocks.getAndIncrement() < 0) throw new SQLException("Deadlock found", "40001");
+            return mapper.insert(user);
+        }));
+        assertEquals(-7, deadlocks.get());
+        assertEquals(40, count());
+
+        // 死锁重试等待时被中断：按取消处理并保留中断标记
+        Thread caller = Thread.currentThread();
+        CountDownLatch deadlocked = new CountDownLatch(1);
+        Thread interrupter = new Thread(() -> {
+            try {
+                deadlocked.await();
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                return;
+            }
+            caller.interrupt();
+        });
+        interrupter.start();
+        GeneralException e = assertThrows(GeneralException.class, () -> mybatisHelper.batchUpdate(UserMapper.class, users(101, 110),
+                BatchOptions.<User>create().setDeadlockRetry(DeadlockRetry.of(3, 60_000, 60_000)), (mapper, user) -> {
+                    deadlocked.countDown();
+                    throw new SQLException("Deadlock found", "40001");
+                }));
+        assertTrue(e.getCause() instanceof CancellationException);
+        assertTrue(Thread.interrupted());
+        assertEquals(40, count());
+    }
+
+    @Test
+    void testBatchUpdateChanged() throws Exception {
+        TableMapping<User> userTable = TableMapping.<User>of("t_user")
+                .id("id", User::getId)
+                .column("name", User::getName)
+                .column("age", User::getAge);
+        assertEquals("UPDATE t_user SET age = ? WHERE id = ?", userTable.updateSql(Collections.singletonList("age")));
+        assertEquals(Arrays.asList("name", "age"), userTable.changedColumns(new User(1L, "a", 1), null));
+        assertEquals(Collections.singletonList("age"), userTable.changedColumns(new User(1L, "a", 1), new User(1L, "a", 2)));
+
+        MybatisHelper mybatisHelper = MybatisHelper.build(8, sqlSessionTemplate);
+        mybatisHelper.batchUpdate(UserMapper.class, users(1, 20), UserMapper::insert);
+        Map<Long, User> originals = users(1, 20).stream().collect(Collectors.toMap(User::getId, user -> user));
+        // 其他事务修改了未变化的列，只更新变化的列时不会被覆盖
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE t_user SET age = 99 WHERE id = 1");
+            statement.executeUpdate("UPDATE t_user SET name = 'external' WHERE id IN (6, 11)");
+        }
+
+        List<User> users = users(1, 20);
+        users.forEach(user -> {
+            if (user.getId() <= 5) user.setName("renamed-" + user.getId());
+            else if (user.getId() <= 10) user.setAge(50);
+        });
+        BatchUpdateResult<User> result = mybatisHelper.batchUpdateChanged(userTable, users, user -> originals.get(user.getId()));
+        assertEquals(20, result.getProcessedCount());
+        assertEquals("renamed-1", selectOne(1).getName());
+        assertEquals(99, selectOne(1).getAge());
+        assertEquals("external", selectOne(6).getName());
+        assertEquals(50, selectOne(6).getAge());
+        assertEquals("external", selectOne(11).getName());
+
+        // 每批次按主键集合查询快照
+        users.forEach(user -> user.setAge(user.getId() <= 10 ? 60 : user.getAge()));
+        mybatisHelper.batchUpdateChanged(UserMapper.class, userTable, users);
+        assertEquals(60, selectOne(1).getAge());
+        assertEquals("user-6", selectOne(6).getName());
+        assertEquals("user-11", selectOne(11).getName());
+        assertEquals(11, selectOne(11).getAge());
+    }
+
+    @Test
+    void testBatchDeleteAndKeyRangePurge() {
+        TableMapping<User> userTable = TableMapping.<User>of("t_user").id("id", User::getId);
+        assertEquals("DELETE FROM t_user WHERE id IN (?, ?)", userTable.deleteSql(2));
+        assertEquals("DELETE FROM t_user WHERE (id = ? AND name = ?) OR (id = ? AND name = ?)",
+                TableMapping.<User>of("t_user").id("id", User::getId).id("name", User::getName).deleteSql(2));
+
+        MybatisHelper mybatisHelper = MybatisHelper.build(7, sqlSessionTemplate);
+        mybatisHelper.batchUpdate(UserMapper.class, users(1, 100), UserMapper::insert);
+        mybatisHelper.batchUpdate(UserMapper.class, users(10001, 10050), UserMapper::insert);
+        BatchUpdateResult<User> result = mybatisHelper.batchDelete(userTable, users(1, 20));
+        assertEquals(20, result.getProcessedCount());
+        assertEquals(130, count());
+
+        // 只删除 age < 50 的数据，主键不连续的范围直接跳过
+        PurgeResult purgeResult = mybatisHelper.keyRangePurge("t_user", "id")
+                .setWhere("age < ?", 50)
+                .setRangeSize(10)
+                .setPauseMillis(1)
+                .execute();
+        assertEquals(30 + 49, purgeResult.getDeletedCount());
+        assertEquals(10050L, purgeResult.getNextKey());
+        assertTrue(purgeResult.getRangeCount() < 20);
+        assertEquals(51, count());
+
+        // 指定范围，取消后可从 nextKey 继续
+        AtomicInteger ranges = new AtomicInteger();
+        purgeResult = mybatisHelper.keyRangePurge("t_user", "id")
+                .setFromKey(0L)
+                .setToKey(10001L)
+                .setRangeSize(20)
+                .setCancelled(() -> ranges.incrementAndGet() > 2)
+                .execute();
+        assertEquals(2, purgeResult.getRangeCount());
+        assertEquals(70L, purgeResult.getNextKey());
+        assertEquals(20, purgeResult.getDeletedCount());
+        purgeResult = mybatisHelper.keyRangePurge("t_user", "id").setFromKey(purgeResult.getNextKey()).execute();
+        assertEquals(31, purgeResult.getDeletedCount());
+        assertEquals(0, count());
+
+        assertEquals(0, mybatisHelper.keyRangePurge("t_user", "id").execute().getDeletedCount());
+
+        // 主键为 Long.MIN_VALUE、Long.MAX_VALUE 时不会溢出
+        mybatisHelper.batchUpdate(UserMapper.class, Arrays.asList(new User(Long.MIN_VALUE, "min", 1), new User(-5L, "negative", 1), new User(Long.MAX_VALUE, "max", 1)), UserMapper::insert);
+        purgeResult = mybatisHelper.keyRangePurge("t_user", "id").setRangeSize(10).execute();
+        assertEquals(3, purgeResult.getDeletedCount());
+        // [MIN, MIN + 9]、[MIN + 10, MIN + 19]（空，跳到 -5）、[-5, 4]、[5, 14]（空，跳到 MAX）、[MAX, MAX]
+        assertEquals(5, purgeResult.getRangeCount());
+        assertNull(purgeResult.getNextKey());
+        assertEquals(0, count());
+    }
+
+    @Test
+    void testBatchListener() {
+        BatchMetrics batchMetrics = new BatchMetrics();
+        MybatisHelper.addBatchListener(batchMetrics);
+        try {
+            MybatisHelper mybatisHelper = MybatisHelper.build(10, sqlSessionTemplate);
+            List<String> events = new ArrayList<>();
+            BatchListener listener = new BatchListener() {
+                @Override
+                public void onStart(String operation, String target) {
+                    events.add("start:" + operation + ":" + target);
+                }
+
+                @Override
+                public void onFlush(String operation, String target, int rows, long flushNanos, Map<String, Long> updateCounts) {
+                    events.add("flush:" + rows + ":" + updateCounts.get(UserMapper.class.getName() + ".insert"));
+                }
+
+                @Override
+                public void onCommit(String operation, String target, long processedCount) {
+                    events.add("commit:" + processedCount);
+                }
+
+                @Override
+                public void onComplete(String operation, String target, long processedCount, long elapsedMillis) {
+                    events.add("complete:" + processedCount);
+                    throw new IllegalStateException("监听器异常不影响批量操作");
+                }
+            };
+            mybatisHelper.batchUpdate(UserMapper.class, users(1, 25), BatchOptions.<User>create().setListener(listener).setCommitEveryBatches(2), UserMapper::insert);
+            assertEquals(Arrays.asList("start:batchUpdate:" + UserMapper.class.getName(), "flush:10:10", "flush:10:10", "commit:20", "flush:5:5", "commit:25", "complete:25"), events);
+            assertThrows(GeneralException.class, () -> mybatisHelper.batchUpdate(UserMapper.class, users(20, 30), UserMapper::insert));
+            mybatisHelper.keyRangePurge("t_user", "id").execute();
+            // 简单类名相同的 mapper 分开统计
+            mybatisHelper.batchUpdate(Archive.UserMapper.class, users(1, 5), Archive.UserMapper::insert);
+            mybatisHelper.keyRangePurge("t_user", "id").execute();
+            assertEquals(5, batchMetrics.getMetrics(Archive.UserMapper.class).getRows());
+            assertNull(batchMetrics.getMetrics("UserMapper"));
+
+            BatchMetrics.TargetMetrics userMetrics = batchMetrics.getMetrics(UserMapper.class);
+            assertEquals(2, userMetrics.getStarted());
+            assertEquals(1, userMetrics.getCompleted());
+            assertEquals(1, userMetrics.getRollbacks());
+            assertEquals(2, userMetrics.getCommits());
+            assertEquals(3, userMetrics.getFlushes());
+            assertEquals(25, userMetrics.getRows());
+            assertEquals(25, userMetrics.getUpdateCount());
+            assertEquals(3, userMetrics.getFlushLatency().getCount());
+            assertTrue(userMetrics.getFlushLatency().percentileMillis(0.99) >= userMetrics.getFlushLatency().percentileMillis(0.5));
+            assertEquals(30, batchMetrics.getMetrics("t_user").getRows());
+            assertEquals(0, count());
+        } finally {
+            MybatisHelper.removeBatchListener(batchMetrics);
+        }
+
+        BatchMetrics.LatencyHistogram histogram = new BatchMetrics.LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(50.5, histogram.meanMillis(), 0.01);
+        // 子区间上界的相对误差不超过25%
+        assertEquals(99, histogram.percentileMillis(0.99), 99 * 0.25);
+        assertEquals(50, histogram.percentileMillis(0.5), 50 * 0.25);
+    }
+
+    @Test
+    void testUpsertSql() {
+        TableMapping<User> userTable = TableMapping.<User>of("t_user")
+                .id("id", User::getId)
+                .column("name", User::getName);
+
+        assertEquals("INSERT INTO t_user (id, name) VALUES (?, ?), (?, ?) ON DUPLICATE KEY UPDATE name = VALUES(name)", Dialect.MYSQL.upsertSql(userTable, 2));
+        assertEquals("INSERT INTO t_user (id, name) VALUES (?, ?), (?, ?) ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name", Dialect.POSTGRESQL.upsertSql(userTable, 2));
+        assertEquals("MERGE INTO t_user (id, name) KEY (id) VALUES (?, ?), (?, ?)", Dialect.H2.upsertSql(userTable, 2));
+        assertEquals("MERGE INTO t_user t USING (SELECT ? id, ? name FROM DUAL UNION ALL SELECT ?, ? FROM DUAL) s ON (t.id = s.id) " +
+                "WHEN MATCHED THEN UPDATE SET t.name = s.name WHEN NOT MATCHED THEN INSERT (id, name) VALUES (s.id, s.name)", Dialect.ORACLE.upsertSql(userTable, 2));
+        assertEquals(Dialect.MYSQL, Dialect.of("MariaDB"));
+        assertNull(Dialect.of("Unknown DB"));
+
+        assertEquals(65535 / 2, Dialect.MYSQL.maxRowsPerStatement(userTable));
+        assertEquals(32767 / 2, Dialect.POSTGRESQL.maxRowsPerStatement(userTable));
+        assertEquals(300, Dialect.POSTGRESQL.rowsPerStatement(userTable, 300));
+        assertEquals(Dialect.MAX_ORACLE_ROWS, Dialect.ORACLE.rowsPerStatement(userTable, 250));
+        assertEquals(32, Dialect.ORACLE.rowsPerStatement(userTable, 50));
+        assertEquals(1, Dialect.ORACLE.rowsPerStatement(userTable, 1));
+    }
+
+
+    static List<User> users(int from, int to) {
+        return IntStream.rangeClosed(from, to)
+                .mapToObj(i -> new User((long) i, "user-" + i, i % 100))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    static long count() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            return sqlSession.getMapper(UserMapper.class).count();
+        }
+    }
+
+    static long count(UnpooledDataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM t_user")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    static User selectOne(long id) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            return sqlSession.getMapper(UserMapper.class).selectOne(id);
+        }
+    }
+
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class User {
+        private Long id;
+        private String name;
+        private Integer age;
+    }
+
+    /**
+     * 记录查询语句执行前的 fetchSize
+     */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "parameterize", args = Statement.class))
+    public static class FetchSizeInterceptor implements Interceptor {
+        final List<Integer> selectFetchSizes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            StatementHandler handler = (StatementHandler) invocation.getTarget();
+            if (handler.getBoundSql().getSql().trim().toUpperCase().startsWith("SELECT")) {
+                selectFetchSizes.add(((Statement) invocation.getArgs()[0]).getFetchSize());
+            }
+            return invocation.proceed();
+        }
+    }
+
+    /**
+     * 模拟驱动返回 {@link Statement#SUCCESS_NO_INFO}（如：Oracle）
+     */
+    @Intercepts(@Signature(type = Executor.class, method = "flushStatements", args = {}))
+    public static class SuccessNoInfoInterceptor implements Interceptor {
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            @SuppressWarnings("unchecked")
+            List<BatchResult> batchResults = (List<BatchResult>) invocation.proceed();
+            for (BatchResult batchResult : batchResults) {
+                int[] updateCounts = new int[batchResult.getUpdateCounts().length];
+                Arrays.fill(updateCounts, Statement.SUCCESS_NO_INFO);
+                batchResult.setUpdateCounts(updateCounts);
+            }
+            return batchResults;
+        }
+    }
+
+    public static class Archive {
+        public interface UserMapper {
+            @Insert("INSERT INTO t_user (id, name, age) VALUES (#{id}, #{name}, #{age})")
+            int insert(User user);
+        }
+    }
+
+    public interface UserMapper {
+        @Insert("INSERT INTO t_user (id, name, age) VALUES (#{id}, #{name}, #{age})")
+        int insert(User user);
+
+        @Update("UPDATE t_user SET name = #{name}, age = #{age} WHERE id = #{id}")
+        int update(User user);
+
+        @Select("SELECT * FROM t_user WHERE id = #{id}")
+        List<User> selectById(User user);
+
+        @Select("<script>SELECT * FROM t_user WHERE id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+        List<User> selectByIds(List<Long> ids);
+
+        @Select("SELECT * FROM t_user WHERE id = #{id}")
+        User selectOne(long id);
+
+        @Delete("DELETE FROM t_user WHERE id = #{id}")
+        int delete(long id);
+
+        @Select("SELECT * FROM t_user ORDER BY id")
+        List<User> selectAll();
+
+        @Insert("INSERT INTO t_user_bak (id, name, age) VALUES (#{id}, #{name}, #{age})")
+        int insertBak(User user);
+
+        @Select("SELECT COUNT(*) FROM t_user_bak")
+        long countBak();
+
+        @Select("SELECT COUNT(*) FROM t_user")
+        long count();
+    }
+
+}
@@ -1,13 +1,85 @@
 package cn.slibs.test;
 
 import cn.slibs.base.page.v3.Page;
+import cn.slibs.spring.page.CountEstimator;
+import cn.slibs.spring.page.CountMode;
+import cn.slibs.spring.page.CountStrategy;
+import cn.slibs.spring.page.Keyset;
+import cn.slibs.spring.page.KeysetPage;
+import cn.slibs.spring.page.KeysetPageV2;
+import cn.slibs.spring.page.KeysetPageV3;
+import cn.slibs.spring.page.KeysetRequest;
+import cn.slibs.spring.page.KeysetSeek;
+import cn.slibs.spring.page.PageIterator;
+import cn.slibs.spring.page.PageQuery;
+import cn.slibs.spring.page.PageV2;
+import cn.slibs.spring.page.PageV3;
 import cn.slibs.spring.page.Pages;
+import com.github.pagehelper.PageInfo;
+import com.github.pagehelper.PageInterceptor;
+import com.iofairy.except.GeneralException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class PageTest {
+    static UnpooledDataSource dataSource = new UnpooledDataSource("org.h2.Driver", "jdbc:h2:mem:page;DB_CLOSE_DELAY=-1", "sa", "");
+    static SqlSessionTemplate sqlSessionTemplate;
+
+    @BeforeAll
+    static void createTable() throws Exception {
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(ItemMapper.class);
+        PageInterceptor pageInterceptor = new PageInterceptor();
+        pageInterceptor.setProperties(new Properties());
+        configuration.addInterceptor(pageInterceptor);
+        sqlSessionTemplate = new SqlSessionTemplate(new SqlSessionFactoryBuilder().build(configuration));
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS t_item");
+            statement.execute("CREATE TABLE t_item (id BIGINT PRIMARY KEY, score INT, category VARCHAR(16))");
+            statement.execute("CREATE INDEX idx_item_score ON t_item (score DESC, id)");
+            for (int i = 1; i <= 95; i++) {
+                statement.execute("INSERT INTO t_item VALUES (" + i + ", " + (i % 7) + ", '" + (i % 2 == 0 ? "even" : "odd") + "')");
+            }
+        }
+    }
+
     @Test
     void testToPage() {
         List<String> datas = new ArrayList<>();
@@ -22,4 +94,302 @@ public class PageTest {
         System.out.println(page2);
         System.out.println(page3);
     }
+
+    @Test
+    void testToPageWithoutPageInfo() {
+        com.github.pagehelper.Page<Item> pageHelperPage = new com.github.pagehelper.Page<>(3, 10);
+        pageHelperPage.setTotal(35);
+        pageHelperPage.add(new Item(21L, 1, "odd"));
+        pageHelperPage.add(new Item(22L, 2, "even"));
+        List<Item> list = new ArrayList<>(pageHelperPage);
+
+        for (List<Item> data : Arrays.asList(pageHelperPage, list, new ArrayList<Item>())) {
+            PageInfo<Item> pageInfo = new PageInfo<>(data);
+            Page<Item> page = Pages.toPageV3(data);
+            assertEquals(Arrays.asList(pageInfo.getPageSize(), pageInfo.getPageNum(), pageInfo.getTotal(), pageInfo.getPages()),
+                    Arrays.asList(page.getPageSize(), page.getPageNum(), page.getTotal(), page.getPages()));
+            assertSame(data, page.getData());
+        }
+
+        // 映射视图：不复制数据，访问时才转换
+        AtomicInteger mapped = new AtomicInteger();
+        Page<String> names = Pages.toPage(pageHelperPage, item -> {
+            mapped.incrementAndGet();
+            return item.getId() + ":" + item.getCategory();
+        });
+        assertEquals(35, names.getTotal());
+        assertEquals(4, names.getPages());
+        assertEquals(0, mapped.get());
+        assertEquals(Arrays.asList("21:odd", "22:even"), names.getData());
+        assertEquals(2, mapped.get());
+        assertThrows(UnsupportedOperationException.class, () -> names.getData().add("x"));
+
+        cn.slibs.base.page.v2.Page<Long> ids = Pages.toPageV2(null, Item::getId);
+        assertEquals(0, ids.getTotal());
+        assertTrue(ids.getData().isEmpty());
+    }
+
+    @Test
+    void testKeyset() {
+        ItemMapper itemMapper = sqlSessionTemplate.getMapper(ItemMapper.class);
+        Keyset<Item> keyset = Keyset.<Item>build().desc("score", Item::getScore).asc("id", Item::getId);
+
+        List<Item> expected = itemMapper.selectAll("odd");
+        List<Item> actual = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            KeysetPage<Item> page = Pages.keyset(keyset, KeysetRequest.of(10, cursor), seek -> itemMapper.selectPage("odd", seek));
+            assertTrue(page.getData().size() <= 10);
+            actual.addAll(page.getData());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(48, expected.size());
+        assertEquals(expected, actual);
+        assertEquals(5, pages);
+
+        // 游标通过 swagger 分页类返回给调用方后可继续请求下一页
+        actual.clear();
+        cursor = null;
+        do {
+            KeysetPageV3<Item> page = Pages.keyset(keyset, KeysetRequest.of(10, cursor), seek -> itemMapper.selectPage("odd", seek)).toPageV3();
+            assertNull(page.getTotal());
+            assertEquals(page.getNextCursor() != null, page.getHasNext());
+            actual.addAll(page.getData());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(expected, actual);
+        KeysetPageV2<Item> firstPage = Pages.keyset(keyset, KeysetRequest.of(10), seek -> itemMapper.selectPage("odd", seek)).toPageV2();
+        assertEquals(expected.subList(10, 20), Pages.keyset(keyset, KeysetRequest.of(10, firstPage.getNextCursor()), seek -> itemMapper.selectPage("odd", seek)).getData());
+
+        // 数据量恰好为每页数量的整数倍时，最后一页没有下一页的游标
+        KeysetPage<Item> all = Pages.keyset(keyset, KeysetRequest.of(48), seek -> itemMapper.selectPage("odd", seek));
+        assertFalse(all.hasNext());
+        assertEquals(48, all.toPageV3().getData().size());
+
+        assertThrows(IllegalArgumentException.class, () -> Pages.keyset(keyset, KeysetRequest.of(10, "not-a-cursor"), seek -> itemMapper.selectPage("odd", seek)));
+        String singleKeyCursor = Pages.keyset(Keyset.<Item>build().asc("id", Item::getId), KeysetRequest.of(10), seek -> itemMapper.selectPage("odd", seek)).getNextCursor();
+        assertThrows(IllegalArgumentException.class, () -> Pages.keyset(keyset, KeysetRequest.of(10, singleKeyCursor), seek -> itemMapper.selectPage("odd", seek)));
+        assertThrows(IllegalArgumentException.class, () -> Keyset.<Item>build().asc("id; DROP TABLE t_item", Item::getId));
+    }
+
+    @Test
+    void testCountStrategy() throws Exception {
+        ItemMapper itemMapper = sqlSessionTemplate.getMapper(ItemMapper.class);
+        Map<String, Object> odd = Collections.singletonMap("category", "odd");
+
+        PageV3<Item> exact = CountStrategy.of(CountMode.EXACT).pageV3(PageQuery.of(sqlSessionTemplate, ItemMapper.class, "selectAll", odd), 2, 10);
+        assertEquals(48, exact.getTotal());
+        assertEquals(5, exact.getPages());
+        assertEquals(CountMode.EXACT, exact.getCountMode());
+        assertTrue(exact.getHasNext());
+        assertEquals(itemMapper.selectAll("odd").subList(10, 20), exact.getData());
+
+        // 缓存有效期内，新增的数据不影响总数，直到缓存失效
+        CountStrategy cached = CountStrategy.of(CountMode.CACHED).setCacheMaxSize(1);
+        AtomicInteger queries = new AtomicInteger();
+        PageQuery<Item> query = PageQuery.of("oddItems", () -> {
+            queries.incrementAndGet();
+            return itemMapper.selectAll("odd");
+        });
+        assertEquals(CountMode.EXACT, cached.pageV3(query, 1, 10).getCountMode());
+        try {
+            execute("INSERT INTO t_item VALUES (1001, 1, 'odd')");
+            PageV2<Item> page = cached.pageV2(query, 5, 10);
+            assertEquals(CountMode.CACHED, page.getCountMode());
+            assertEquals(48, page.getTotal());
+            assertEquals(9, page.getData().size());
+            assertEquals(3, queries.get());
+
+            cached.invalidate("oddItems");
+            assertEquals(49, cached.pageV3(query, 1, 10).getTotal());
+            // 超过数量上限时淘汰最久未使用的总数
+            cached.pageV3(PageQuery.of("evenItems", () -> itemMapper.selectAll("even")), 1, 10);
+            assertEquals(1, cached.getCacheSize());
+            assertEquals(CountMode.EXACT, cached.pageV3(query, 1, 10).getCountMode());
+        } finally {
+            execute("DELETE FROM t_item WHERE id = 1001");
+        }
+
+        // 不统计总数
+        CountStrategy hasNext = CountStrategy.of(CountMode.HAS_NEXT);
+        PageV3<Item> page4 = hasNext.pageV3(query, 4, 10);
+        assertTrue(page4.getHasNext());
+        assertNull(page4.getTotal());
+        assertNull(page4.getPages());
+        assertEquals(10, page4.getData().size());
+        PageV3<Item> page5 = hasNext.pageV3(query, 5, 10);
+        assertFalse(page5.getHasNext());
+        assertEquals(8, page5.getData().size());
+
+        // 估算的行数不小于阈值时使用估算值，否则统计精确的总数
+        CountStrategy approximate = CountStrategy.of(CountMode.APPROXIMATE).setApproximateThreshold(1000).setEstimator((connection, sql, parameterHandler) -> {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT COUNT(*) * 100 FROM (" + sql + ")")) {
+                parameterHandler.setParameters(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }
+        });
+        PageV3<Item> estimated = approximate.pageV3(PageQuery.of(sqlSessionTemplate, ItemMapper.class, "selectAll", odd), 1, 10);
+        assertEquals(CountMode.APPROXIMATE, estimated.getCountMode());
+        assertEquals(4800, estimated.getTotal());
+        assertEquals(480, estimated.getPages());
+        approximate.setApproximateThreshold(10000);
+        assertEquals(CountMode.EXACT, approximate.pageV3(PageQuery.of(sqlSessionTemplate, ItemMapper.class, "selectAll", odd), 1, 10).getCountMode());
+        // 按 lambda 查询不支持估算
+        assertEquals(CountMode.EXACT, approximate.setApproximateThreshold(0).pageV3(query, 1, 10).getCountMode());
+    }
+
+    @Test
+    void testExplainEstimator() throws Exception {
+        ParameterHandler parameterHandler = new ParameterHandler() {
+            @Override
+            public Object getParameterObject() {
+                return null;
+            }
+
+            @Override
+            public void setParameters(PreparedStatement ps) {
+            }
+        };
+        String sql = "SELECT * FROM t_item WHERE category = ?";
+        try (Connection connection = dataSource.getConnection()) {
+            // MySQL：扫描的行数按 filtered 折算为满足条件的行数
+            assertEquals(10000L, CountEstimator.EXPLAIN.estimate(explainConnection(connection, "MySQL", "SELECT 100000 AS \"rows\", 10.0 AS filtered"), sql, parameterHandler));
+            // 多表（关联、子查询、派生表）的执行计划、没有 filtered 列、rows 为 NULL 时无法估算
+            assertNull(CountEstimator.EXPLAIN.estimate(explainConnection(connection, "MySQL", "SELECT 100000 AS \"rows\", 10.0 AS filtered UNION ALL SELECT 5, 100.0"), sql, parameterHandler));
+            assertNull(CountEstimator.EXPLAIN.estimate(explainConnection(connection, "MariaDB", "SELECT 100000 AS \"rows\""), sql, parameterHandler));
+            assertNull(CountEstimator.EXPLAIN.estimate(explainConnection(connection, "MySQL", "SELECT CAST(NULL AS BIGINT) AS \"rows\", 100.0 AS filtered"), sql, parameterHandler));
+            assertEquals(1234L, CountEstimator.EXPLAIN.estimate(explainConnection(connection, "PostgreSQL", "SELECT '[{\"Plan\": {\"Node Type\": \"Seq Scan\", \"Plan Rows\": 1234}}]'"), sql, parameterHandler));
+            assertNull(CountEstimator.EXPLAIN.estimate(connection, sql, parameterHandler));
+        }
+    }
+
+    /**
+     * 模拟指定数据库的连接：{@code EXPLAIN} 语句替换为 {@code explainSql}
+     */
+    static Connection explainConnection(Connection connection, String databaseProductName, String explainSql) {
+        DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(PageTest.class.getClassLoader(), new Class<?>[]{DatabaseMetaData.class},
+                (proxy, method, args) -> method.getName().equals("getDatabaseProductName") ? databaseProductName : null);
+        return (Connection) Proxy.newProxyInstance(PageTest.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getMetaData")) return metaData;
+            if (method.getName().equals("prepareStatement") && ((String) args[0]).startsWith("EXPLAIN")) {
+                return connection.prepareStatement(explainSql);
+            }
+            return method.invoke(connection, args);
+        });
+    }
+
+    @Test
+    void testConcurrentCount() throws Exception {
+        ItemMapper itemMapper = sqlSessionTemplate.getMapper(ItemMapper.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // 统计总数与查询数据互相等待，顺序执行时会超时
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            PageQuery<Item> query = PageQuery.of("oddItems", () -> {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return itemMapper.selectAll("odd");
+            });
+            CountStrategy concurrent = CountStrategy.of(CountMode.EXACT).setExecutor(executor);
+            PageV3<Item> page = concurrent.pageV3(query, 2, 10);
+            assertEquals(48, page.getTotal());
+            assertEquals(itemMapper.selectAll("odd").subList(10, 20), page.getData());
+
+            PageQuery<Item> failed = PageQuery.of("failed", () -> {
+                throw new IllegalStateException("query failed");
+            });
+            assertThrows(IllegalStateException.class, () -> concurrent.pageV3(failed, 1, 10));
+
+            // 事务中按顺序执行
+            AtomicInteger threads = new AtomicInteger();
+            CountStrategy inTransaction = CountStrategy.of(CountMode.EXACT).setExecutor(command -> {
+                threads.incrementAndGet();
+                executor.execute(command);
+            });
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                assertEquals(48, inTransaction.pageV3(PageQuery.of("oddItems", () -> itemMapper.selectAll("odd")), 1, 10).getTotal());
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+            assertEquals(0, threads.get());
+            inTransaction.pageV3(PageQuery.of("oddItems", () -> itemMapper.selectAll("odd")), 1, 10);
+            assertEquals(1, threads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testPageIterator() throws Exception {
+        ItemMapper itemMapper = sqlSessionTemplate.getMapper(ItemMapper.class);
+        List<Item> expected = itemMapper.selectAll("odd");
+        Keyset<Item> keyset = Keyset.<Item>build().desc("score", Item::getScore).asc("id", Item::getId);
+
+        try (Stream<Item> items = PageIterator.of(keyset, seek -> itemMapper.selectPage("odd", seek), 10).setPrefetch(2).stream()) {
+            assertEquals(expected, items.collect(Collectors.toList()));
+        }
+
+        List<Integer> pageSizes = new ArrayList<>();
+        try (PageIterator<Item> pages = PageIterator.of(PageQuery.of(sqlSessionTemplate, ItemMapper.class, "selectAll", Collections.singletonMap("category", "odd")), 12)) {
+            pages.forEachRemaining(page -> pageSizes.add(page.size()));
+        }
+        assertEquals(Arrays.asList(12, 12, 12, 12), pageSizes);
+
+        // 提前结束遍历：最多预取 prefetch + 1 页，关闭后不再查询
+        AtomicInteger fetched = new AtomicInteger();
+        PageIterator<Item> pages = PageIterator.of(PageQuery.of("oddItems", () -> {
+            fetched.incrementAndGet();
+            return itemMapper.selectAll("odd");
+        }), 5);
+        assertEquals(5, pages.next().size());
+        Thread.sleep(300);
+        pages.close();
+        int fetchedOnClose = fetched.get();
+        assertTrue(fetchedOnClose <= 3, "fetched: " + fetchedOnClose);
+        assertFalse(pages.hasNext());
+        Thread.sleep(100);
+        assertEquals(fetchedOnClose, fetched.get());
+
+        PageIterator<Item> failed = PageIterator.of(PageQuery.of("failed", () -> {
+            throw new IllegalStateException("query failed");
+        }), 5);
+        assertThrows(GeneralException.class, failed::hasNext);
+        failed.close();
+    }
+
+    static void execute(String sql) throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Long id;
+        private Integer score;
+        private String category;
+    }
+
+    public interface ItemMapper {
+        @Select("<script>SELECT * FROM t_item WHERE category = #{category}" +
+                "<if test='keyset.seek != null'> AND ${keyset.seek}</if>" +
+                " ORDER BY ${keyset.orderBy} LIMIT #{keyset.limit}</script>")
+        List<Item> selectPage(@Param("category") String category, @Param("keyset") KeysetSeek keyset);
+
+        @Select("SELECT * FROM t_item WHERE category = #{category} ORDER BY score DESC, id ASC")
+        List<Item> selectAll(@Param("category") String category);
+    }
 }
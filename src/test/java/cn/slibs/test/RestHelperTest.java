@@ -1,12 +1,28 @@
 package cn.slibs.test;
 
+import cn.slibs.spring.http.AsyncRestHelper;
 import cn.slibs.spring.http.RestHelper;
+import com.sun.net.httpserver.HttpServer;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 
 public class RestHelperTest {
     @Test
@@ -19,4 +35,57 @@ public class RestHelperTest {
         System.out.println(document);
 
     }
+
+    @Test
+    void testAsyncRestHelper() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(10));
+        server.createContext("/", exchange -> {
+            if (!exchange.getRequestURI().getPath().equals("/slow")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            String host = "127.0.0.1:" + server.getAddress().getPort();
+            AsyncRestHelper asyncRestHelper = AsyncRestHelper.build(new RestTemplate(), executor, 2);
+
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                futures.add(asyncRestHelper.getForString("http://" + host + "/slow"));
+            }
+            assertTrue(asyncRestHelper.getRunningCount(host) <= 2);
+            for (CompletableFuture<String> future : futures) {
+                assertEquals("ok", future.join());
+            }
+            assertEquals(2, maxRunning.get());
+            assertEquals(0, asyncRestHelper.getRunningCount(host));
+            assertEquals(0, asyncRestHelper.getPendingCount(host));
+
+            CompletionException e = assertThrows(CompletionException.class, () -> asyncRestHelper.getForString("http://" + host + "/missing").join());
+            assertTrue(e.getCause() instanceof HttpClientErrorException.NotFound);
+            assertThrows(IllegalArgumentException.class, () -> asyncRestHelper.getForString("/slow"));
+        } finally {
+            executor.shutdown();
+            server.stop(0);
+        }
+    }
 }